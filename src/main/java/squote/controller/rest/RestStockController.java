@@ -2,16 +2,15 @@ package squote.controller.rest;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
-import com.mashape.unirest.http.HttpResponse;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import squote.SquoteConstants;
 import squote.domain.*;
-import squote.domain.repository.DailyAssetSummaryRepository;
 import squote.domain.repository.FundRepository;
 import squote.domain.repository.HoldingStockRepository;
 import squote.domain.repository.StockQueryRepository;
@@ -19,10 +18,13 @@ import squote.scheduletask.StockTradingTask;
 import squote.security.AuthenticationService;
 import squote.service.*;
 
+import javax.annotation.PreDestroy;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static squote.service.MarketReportService.pre;
@@ -43,9 +45,20 @@ public class RestStockController {
 	@Autowired FundRepository fundRepo;
 	@Autowired AuthenticationService authenticationService;
 	@Autowired BinanceAPIService binanceAPIService;
-	@Autowired DailyAssetSummaryRepository dailyAssetSummaryRepository;
+	@Autowired DailyAssetSummaryCache dailyAssetSummaryCache;
 	@Autowired StockTradingTask stockTradingTask;
 	@Autowired YahooFinanceService yahooFinanceService;
+	@Autowired QuoteService quoteService;
+
+	@Value("${fullquote.sourceTimeoutMillis:3000}") long sourceTimeoutMillis = 3000;
+	@Value("${fullquote.quoteCacheMillis:3000}") long quoteCacheMillis = 3000;
+
+	private final ExecutorService fullQuoteExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("fullquote-", 0).factory());
+
+	@PreDestroy
+	public void shutdown() {
+		fullQuoteExecutor.shutdownNow();
+	}
 
 	@RequestMapping("/holding/list")
 	public Iterable<HoldingStock> listHolding() {
@@ -100,8 +113,8 @@ public class RestStockController {
 	}
 
 	@RequestMapping(method = RequestMethod.GET, value = "/indexquotes")
-	public StockQuote[] listIndexQuotes() throws ExecutionException, InterruptedException {
-		return webParserService.getIndexQuotes().get().getBody();
+	public StockQuote[] listIndexQuotes() {
+		return quoteService.getIndexQuotes().toArray(new StockQuote[0]);
 	}
 
 	@RequestMapping(method = RequestMethod.GET, value = "/save/query")
@@ -127,26 +140,35 @@ public class RestStockController {
 	}
 
 	@RequestMapping("/fullquote")
-	public Map<String, Object> quote(@RequestParam(value="codes", required=false, defaultValue="") String codes) throws ExecutionException, InterruptedException {
+	public Map<String, Object> quote(@RequestParam(value="codes", required=false, defaultValue="") String codes) {
 		String userId = authenticationService.getUserId().get();
 		log.info("quote: codes [{}] for userId [{}]", codes, userId);
 		Map<String, Object> resultMap = new HashMap<>();
 		codes = retrieveCodes(codes);
 
+		// sources not depending on the codes start before the db queries
+		var cryptoQuotesFuture = withTimeout("crypto quotes",
+				CompletableFuture.supplyAsync(binanceAPIService::getAllPrices, fullQuoteExecutor), Map.<String, StockQuote>of());
+		var indexesFuture = withTimeout("index quotes",
+				CompletableFuture.supplyAsync(quoteService::getIndexQuotes, fullQuoteExecutor), List.<StockQuote>of());
+
 		List<HoldingStock> holdingStocks = Lists.newArrayList(holdingStockRepo.findByUserIdOrderByDate(userId));
 		List<Fund> funds = fundRepo.findByUserId(userId);
 		Set<String> codeSet = uniqueStockCodes(codes, holdingStocks, funds);
 		Map<Market, Set<String>> separatedCodes = separateStockCodesByMarket(codeSet);
-		Future<HttpResponse<StockQuote[]>> hkStockQuotesFuture = separatedCodes.get(Market.HK).isEmpty() ? null : webParserService.getRealTimeQuotes(separatedCodes.get(Market.HK));
+		var hkCodes = separatedCodes.get(Market.HK);
+		var hkQuotesFuture = hkCodes.isEmpty() ? CompletableFuture.completedFuture(Map.<String, StockQuote>of())
+				: withTimeout("HK quotes", CompletableFuture.supplyAsync(() -> quoteService.getQuotes(hkCodes, quoteCacheMillis), fullQuoteExecutor), Map.<String, StockQuote>of());
 		Set<String> USStockCodes = separatedCodes.get(Market.US);
-		yahooFinanceService.subscribeToSymbols(USStockCodes.toArray(new String[0]));
+		yahooFinanceService.touchSymbols(USStockCodes.toArray(new String[0]));     // keep them streaming for the yahoo source
+		var usQuotesFuture = USStockCodes.isEmpty() ? CompletableFuture.completedFuture(Map.<String, StockQuote>of())
+				: withTimeout("US quotes", CompletableFuture.supplyAsync(() -> quoteService.getQuotes(USStockCodes, quoteCacheMillis), fullQuoteExecutor), Map.<String, StockQuote>of());
 
 		// After all concurrent jobs submitted
-		Map<String, StockQuote> allQuotes = hkStockQuotesFuture == null ? new HashMap<>() : collectAllStockQuotes(hkStockQuotesFuture.get().getBody());
-		allQuotes.putAll(binanceAPIService.getAllPrices());
-		allQuotes.putAll(getUSStockQuotes(USStockCodes));
-		Future<HttpResponse<StockQuote[]>> indexFutures = webParserService.getIndexQuotes();
-		List<StockQuote> indexes = Arrays.asList(indexFutures.get().getBody());
+		Map<String, StockQuote> allQuotes = collectAllStockQuotes(hkQuotesFuture.join().values().toArray(new StockQuote[0]));
+		allQuotes.putAll(cryptoQuotesFuture.join());
+		allQuotes.putAll(usQuotesFuture.join());
+		List<StockQuote> indexes = indexesFuture.join();
 		funds.forEach( f -> f.calculateNetProfit(allQuotes) );
 		holdingStocks.sort(Comparator.comparing(HoldingStock::getDate));
 
@@ -165,27 +187,20 @@ public class RestStockController {
 		return resultMap;
 	}
 
-	private Map<String, ? extends StockQuote> getUSStockQuotes(Set<String> usStockCodes) {
-		if (usStockCodes.isEmpty()) return Collections.emptyMap();
-
-		return usStockCodes.stream()
-				.flatMap(code -> yahooFinanceService.getLatestTicker(code).stream())
-				.collect(Collectors.toMap(
-						StockQuote::getStockCode,
-						quote -> quote,
-						(existing, replacement) -> existing)
-				);
+	/**
+	 * A slow or failed source leaves its part of the page empty instead of failing the page
+	 */
+	private <T> CompletableFuture<T> withTimeout(String source, CompletableFuture<T> future, T fallback) {
+		return future.orTimeout(sourceTimeoutMillis, TimeUnit.MILLISECONDS)
+				.exceptionally(e -> {
+					log.warn("fullquote: cannot get {}: {}", source, e.toString());
+					return fallback;
+				});
 	}
 
 	@GetMapping("/summary/latest")
 	public ResponseEntity<Map<String, DailyAssetSummary>> getLatestSummaries(@RequestParam List<String> symbols) {
-		Map<String, DailyAssetSummary> summaryMap = new HashMap<>();
-		for (String symbol : symbols) {
-			Optional<DailyAssetSummary> summary = dailyAssetSummaryRepository.findTopBySymbolOrderByDateDesc(symbol);
-			summary.ifPresent(s -> summaryMap.put(symbol, s));
-		}
-
-		return ResponseEntity.ok(summaryMap);
+		return ResponseEntity.ok(dailyAssetSummaryCache.getLatest(symbols));
 	}
 
 	@GetMapping("/trading/enabledByMarket")
@@ -20,4 +20,6 @@ public class DailyAssetSummary {
         this.date = date;
         this.id = symbol + "-" + date.getTime();
     }
+
+    public String getId() { return id; }
 }
@@ -0,0 +1,80 @@
+package squote.domain;
+
+import org.springframework.data.annotation.Id;
+import thc.util.MathUtils;
+import thc.util.RollingStdDev;
+
+import java.util.*;
+
+/**
+ * Latest daily closes of a symbol with rolling stdDev of daily percentage change for each range.
+ * A range of n days covers the last n closes, same as MathUtils.calStdDev on those closes.
+ * Windows are updated in O(1) per close and re-baselined from closes every REBASELINE_ADDS closes,
+ * removing values from a Welford window leaves floating point error that would otherwise build up.
+ */
+public class DailyCloseSeries {
+    static final int REBASELINE_ADDS = 250;     // about a year of trading days
+
+    @Id
+    public String symbol;
+    public Date lastDate;
+    public List<Double> closes = new ArrayList<>();     // oldest first, at most max range + 1
+    public Map<Integer, RollingStdDev> windows = new HashMap<>();
+    public int addsSinceRebaseline;
+
+    public DailyCloseSeries() {}
+
+    public DailyCloseSeries(String symbol, Collection<Integer> ranges) {
+        this.symbol = symbol;
+        ranges.forEach(r -> windows.put(r, new RollingStdDev()));
+    }
+
+    public boolean hasRanges(Collection<Integer> ranges) {
+        return windows.keySet().equals(new HashSet<>(ranges));
+    }
+
+    public void add(Date date, double close) {
+        closes.add(close);
+        lastDate = date;
+
+        var values = closeValues();
+        var last = values.length - 1;
+        var change = MathUtils.percentageChange(values, last);
+        windows.forEach((range, window) -> {
+            if (!Double.isNaN(change)) window.add(change);
+            var evicted = MathUtils.percentageChange(values, last - range + 1);
+            if (!Double.isNaN(evicted)) window.remove(evicted);
+        });
+
+        var maxRange = windows.keySet().stream().mapToInt(r -> r).max().orElse(0);
+        while (closes.size() > maxRange + 1) closes.removeFirst();
+
+        if (++addsSinceRebaseline >= REBASELINE_ADDS) rebaselineWindows();
+    }
+
+    public Map<Integer, Double> stdDevs() {
+        var stdDevs = new HashMap<Integer, Double>();
+        windows.forEach((range, window) -> stdDevs.put(range, window.stdDev()));
+        return stdDevs;
+    }
+
+    /**
+     * Recompute the windows from the kept closes
+     */
+    void rebaselineWindows() {
+        addsSinceRebaseline = 0;
+        var values = closeValues();
+        windows.replaceAll((range, w) -> {
+            var window = new RollingStdDev();
+            for (int i = Math.max(1, values.length - range + 1); i < values.length; i++) {
+                var change = MathUtils.percentageChange(values, i);
+                if (!Double.isNaN(change)) window.add(change);
+            }
+            return window;
+        });
+    }
+
+    private double[] closeValues() {
+        return closes.stream().mapToDouble(d -> d).toArray();
+    }
+}
@@ -139,7 +139,8 @@ public class Fund {
 
 	private FundHolding increaseHolding(FundHolding fundHolding, BigDecimal qty, BigDecimal gross) {
 		return FundHolding.create(fundHolding.getCode(), fundHolding.getQuantity().add(qty), gross.add(fundHolding.getGross()))
-				.setLatestTradeTime(fundHolding.getLatestTradeTime());
+				.setLatestTradeTime(fundHolding.getLatestTradeTime())
+				.setLatestTradeId(fundHolding.getLatestTradeId());
 	}
 
 	private FundHolding decreaseHolding(FundHolding fundHolding, BigDecimal qty,
@@ -148,7 +149,8 @@ public class Fund {
 		return FundHolding.create(fundHolding.getCode(),
 						fundHolding.getQuantity().subtract(qty),
 						fundHolding.getGross().subtract(orgGross))
-				.setLatestTradeTime(fundHolding.getLatestTradeTime());
+				.setLatestTradeTime(fundHolding.getLatestTradeTime())
+				.setLatestTradeId(fundHolding.getLatestTradeId());
 	}
 
 	public Fund calculateNetProfit(Map<String, StockQuote> quoteMap) {
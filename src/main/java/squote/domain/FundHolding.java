@@ -14,6 +14,7 @@ public class FundHolding {
 	private final BigDecimal gross;
 	private final @DateTimeFormat(pattern="yyyy-MM-dd") Date date;
 	private long latestTradeTime;
+	private long latestTradeId;
 	
 	@Transient
 	private BigDecimal spotPrice;
@@ -69,4 +70,10 @@ public class FundHolding {
 		this.latestTradeTime = latestTradeTime;
 		return this;
 	}
+
+	public long getLatestTradeId() {return latestTradeId;	}
+	public FundHolding setLatestTradeId(long latestTradeId) {
+		this.latestTradeId = latestTradeId;
+		return this;
+	}
 }
@@ -0,0 +1,16 @@
+package squote.domain;
+
+import squote.SquoteConstants.Side;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * Projection of HoldingStock with the fields needed by the trading algo
+ */
+public interface HoldingLot {
+	Side getSide();
+	int getQuantity();
+	BigDecimal getGross();
+	Date getDate();
+}
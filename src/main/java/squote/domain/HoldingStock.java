@@ -4,24 +4,24 @@ import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.Transient;
-import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.format.annotation.DateTimeFormat;
 import squote.SquoteConstants;
 import squote.SquoteConstants.Side;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
-public class HoldingStock {
+public class HoldingStock implements HoldingLot {
 	@Id
     private String id;
 	
 	private String code;
 
-	@Indexed
 	private String userId;
 	private int quantity;
 	private BigDecimal gross;
@@ -30,6 +30,7 @@ public class HoldingStock {
 	private SquoteConstants.Side side;
 	private String fundName;
 	private String fillIds;
+	private List<String> fillIdList;	// fillIds split for indexed lookup
 	private BigDecimal fee;
 
 	@Transient
@@ -121,7 +122,17 @@ public class HoldingStock {
 	public String getFundName() { return fundName; }
 	public HoldingStock setFundName(String fundName) { this.fundName = fundName; return this; }
 	public String getFillIds() { return fillIds; }
-	public HoldingStock setFillIds(String fillIds) { this.fillIds = fillIds; return this; }
+	public HoldingStock setFillIds(String fillIds) {
+		this.fillIds = fillIds;
+		this.fillIdList = toFillIdList(fillIds);
+		return this;
+	}
+	public List<String> getFillIdList() { return fillIdList; }
+
+	public static List<String> toFillIdList(String fillIds) {
+		if (fillIds == null) return List.of();
+		return Arrays.stream(fillIds.split(",")).filter(id -> !id.isBlank()).toList();
+	}
 
 	public BigDecimal getFee() {return fee;}
 
@@ -1,12 +1,26 @@
 package squote.domain.repository;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.mongodb.repository.Aggregation;
+import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 import squote.domain.DailyAssetSummary;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface DailyAssetSummaryRepository extends CrudRepository<DailyAssetSummary, String> {
+public interface DailyAssetSummaryRepository extends MongoRepository<DailyAssetSummary, String> {
     Optional<DailyAssetSummary> findTopBySymbolOrderByDateDesc(String symbol);
+
+    /**
+     * Latest summary of each symbol in one query, symbols without summary are not in the result
+     */
+    @Aggregation(pipeline = {
+            "{ $match: { symbol: { $in: ?0 } } }",
+            "{ $sort: { symbol: 1, date: -1 } }",
+            "{ $group: { _id: '$symbol', latest: { $first: '$$ROOT' } } }",
+            "{ $replaceRoot: { newRoot: '$latest' } }"
+    })
+    List<DailyAssetSummary> findLatestBySymbolIn(Collection<String> symbols);
 }
@@ -0,0 +1,9 @@
+package squote.domain.repository;
+
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import squote.domain.DailyCloseSeries;
+
+@Repository
+public interface DailyCloseSeriesRepository extends CrudRepository<DailyCloseSeries, String> {
+}
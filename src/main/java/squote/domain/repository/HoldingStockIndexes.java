@@ -0,0 +1,64 @@
+package squote.domain.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+import squote.domain.HoldingStock;
+
+/**
+ * The indexes of the holdings collection, created at startup as no entity is mapped with @Document.
+ * The compound index also serves queries by userId alone. Then migrate holdings saved before fillIdList was introduced.
+ */
+@Component
+public class HoldingStockIndexes {
+	private static final Logger log = LoggerFactory.getLogger(HoldingStockIndexes.class);
+
+	public static final String USER_FUND_CODE_DATE = "userId_fundName_code_date";
+	public static final String FILL_ID_LIST = "fillIdList";
+
+	private final MongoTemplate mongoTemplate;
+	private final HoldingStockRepository holdingRepo;
+
+	@Autowired
+	public HoldingStockIndexes(MongoTemplate mongoTemplate, HoldingStockRepository holdingRepo) {
+		this.mongoTemplate = mongoTemplate;
+		this.holdingRepo = holdingRepo;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void onReady() {
+		ensureIndexes();
+		backfillFillIdList();
+	}
+
+	public void ensureIndexes() {
+		var indexOps = mongoTemplate.indexOps(HoldingStock.class);
+		indexOps.ensureIndex(new Index()
+				.on("userId", Sort.Direction.ASC)
+				.on("fundName", Sort.Direction.ASC)
+				.on("code", Sort.Direction.ASC)
+				.on("date", Sort.Direction.ASC)
+				.named(USER_FUND_CODE_DATE));
+		indexOps.ensureIndex(new Index().on("fillIdList", Sort.Direction.ASC).named(FILL_ID_LIST));
+		log.info("HoldingStock indexes ensured");
+	}
+
+	/**
+	 * Once per startup instead of on every sync, nothing is left to backfill after the first run
+	 */
+	public int backfillFillIdList() {
+		var holdings = holdingRepo.findByFillIdsIsNotNullAndFillIdListIsNull();
+		if (holdings.isEmpty()) return 0;
+
+		holdings.forEach(h -> h.setFillIds(h.getFillIds()));
+		holdingRepo.saveAll(holdings);
+		log.info("Backfilled fillIdList of {} holdings", holdings.size());
+		return holdings.size();
+	}
+}
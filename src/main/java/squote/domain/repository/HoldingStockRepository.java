@@ -1,16 +1,19 @@
 package squote.domain.repository;
 
-import org.springframework.data.repository.CrudRepository;
-import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
+import squote.domain.HoldingLot;
 import squote.domain.HoldingStock;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface HoldingStockRepository extends PagingAndSortingRepository<HoldingStock, String>, CrudRepository<HoldingStock, String> {
+public interface HoldingStockRepository extends MongoRepository<HoldingStock, String> {
 	List<HoldingStock> findByUserIdOrderByDate(String userId);
+	List<HoldingLot> findByUserIdAndFundNameAndCodeOrderByDate(String userId, String fundName, String code);
 	Optional<HoldingStock> findTopByFundNameOrderByDateDesc(String fundName);
-	boolean existsByFillIdsLike(String fillId);
+	List<HoldingStock> findByFillIdListIn(Collection<String> fillIds);
+	List<HoldingStock> findByFillIdsIsNotNullAndFillIdListIsNull();
 }
@@ -0,0 +1,44 @@
+package squote.playground;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import squote.domain.AlgoConfig;
+import squote.service.AlgoBacktest;
+import squote.service.DailyQuoteStore;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+public class AlgoBacktestSweep {
+    private static Logger log = LoggerFactory.getLogger(AlgoBacktestSweep.class);
+
+    private static final String file = "historical-quote/historical-quote-2800.json";
+    private static final String symbol = "2800";
+    private static final AlgoConfig template = new AlgoConfig("2800", 0, null, 20, 1, 80000.0, false, 500);
+    private static final int[] stdDevRanges = IntStream.rangeClosed(5, 30).toArray();
+    private static final double[] stdDevMultipliers = IntStream.rangeClosed(10, 40).mapToDouble(i -> i * 0.05).toArray();
+
+    public static void main(String[] args) throws IOException {
+        // args[0]: directory of the quote store, imported from the json resource on first run
+        var store = new DailyQuoteStore(Path.of(args.length > 0 ? args[0] : System.getProperty("java.io.tmpdir"), "squote-quotes"));
+        if (store.size(symbol) == 0) {
+            try (var inputStream = AlgoBacktestSweep.class.getClassLoader().getResourceAsStream(file)) {
+                store.importJson(symbol, inputStream);
+            }
+        }
+        var quotes = store.read(symbol).toQuotes();
+        var backtest = new AlgoBacktest(quotes, IntStream.of(stdDevRanges).boxed().toList());
+        var configs = AlgoBacktest.grid(template, stdDevRanges, stdDevMultipliers);
+
+        var start = System.currentTimeMillis();
+        var results = backtest.sweep(configs, Runtime.getRuntime().availableProcessors());
+        log.info("{} combinations over {} quotes in {}ms", configs.size(), quotes.size(), System.currentTimeMillis() - start);
+
+        results.stream()
+                .sorted(Comparator.comparingDouble(AlgoBacktest.Result::realizedProfit).reversed())
+                .limit(20)
+                .forEach(r -> log.info("{}", r));
+    }
+}
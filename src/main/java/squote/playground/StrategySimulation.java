@@ -1,10 +1,10 @@
 package squote.playground;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import squote.domain.DailyStockQuote;
+import thc.util.MathUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -60,6 +60,7 @@ public class StrategySimulation {
         log.info("total quotes={}, start on={}", quotes.size(), quotes.get(0).date());
         var context = new Context();
         context.basePrice = quotes.get(STD_DEV_RANGE).close();
+        var stdDevs = MathUtils.rollingStdDevs(quotes.stream().mapToDouble(DailyStockQuote::close).toArray(), STD_DEV_RANGE)[0];
 
         for (int i = STD_DEV_RANGE; i < quotes.size(); i++)
         {
@@ -139,30 +140,13 @@ public class StrategySimulation {
             }
             if (!executed) context.noExecutionDay++;
 //            log.info("{}: basePrice={}, holdings={} ({}:{}), earning={}", dateString, String.format("%.2f", context.basePrice), context.holdingPrices.size(), context.totalBuy, context.totalSell, String.format("%.0f", context.earning));
-            context.latestStdDev = calStdDev(quotes.subList(i- STD_DEV_RANGE, i).stream().map(DailyStockQuote::close).toList());
+            context.latestStdDev = stdDevs[i - 1];     // closes of [i-STD_DEV_RANGE, i)
             context.maxHoldingAmount = Math.max(context.maxHoldingAmount, context.holdingAmount());
         }
         log.info("No Execution day={}", context.noExecutionDay);
         log.info("Final context={}", context);
     }
 
-    public static double calStdDev(List<Double> data) {
-        DescriptiveStatistics stats = new DescriptiveStatistics();
-        for (int i = 1; i < data.size(); i++) {
-            if (data.get(i) == 0 || data.get(i-1) == 0) continue;
-            var change = calculatePercentageChange(data.get(i-1), data.get(i));
-            stats.addValue(change);
-        }
-        return stats.getStandardDeviation();
-    }
-
-    public static double calculatePercentageChange(double originalValue, double newValue) {
-        if (originalValue == 0) {
-            throw new IllegalArgumentException("Original value cannot be zero.");
-        }
-        return ((newValue - originalValue) / originalValue) * 100;
-    }
-
     private static List<DailyStockQuote> loadJsonFromResourcesFile(String filename) throws IOException {
         ObjectMapper objectMapper = new ObjectMapper();
         try (InputStream inputStream = StrategySimulation.class.getClassLoader().getResourceAsStream(filename)) {
@@ -4,21 +4,27 @@ import com.mashape.unirest.http.exceptions.UnirestException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import squote.domain.DailyAssetSummary;
-import squote.domain.DailyStockQuote;
+import squote.domain.DailyCloseSeries;
+import squote.domain.Market;
 import squote.domain.repository.DailyAssetSummaryRepository;
+import squote.domain.repository.DailyCloseSeriesRepository;
+import squote.service.DailyAssetSummaryCache;
 import squote.service.WebParserRestService;
-import thc.util.MathUtils;
 
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @Component
 public class CalculateDailySummaryTask {
@@ -28,67 +34,111 @@ public class CalculateDailySummaryTask {
     @Value(value = "${calculatedailysummarytask.stdDevRange}") List<Integer> stdDevRanges;
     @Value(value = "${calculatedailysummarytask.hkCodes}") List<String> hkCodes;
     @Value(value = "${calculatedailysummarytask.usCodes}") List<String> usCodes;
+    @Value(value = "${calculatedailysummarytask.concurrency:8}") int concurrency = 8;
 
     public static DateTimeFormatter rangeQuoteDateFormatter = DateTimeFormatter.ofPattern("yyyyMMdd");
 
     final DailyAssetSummaryRepository dailyAssetSummaryRepo;
+    final DailyCloseSeriesRepository dailyCloseSeriesRepo;
     final WebParserRestService webService;
+    final DailyAssetSummaryCache dailyAssetSummaryCache;
+    final ApplicationEventPublisher eventPublisher;
 
-    public CalculateDailySummaryTask(DailyAssetSummaryRepository dailyAssetSummaryRepo, WebParserRestService webService) {
+    public CalculateDailySummaryTask(DailyAssetSummaryRepository dailyAssetSummaryRepo, DailyAssetSummaryCache dailyAssetSummaryCache, DailyCloseSeriesRepository dailyCloseSeriesRepo,
+                                     WebParserRestService webService, ApplicationEventPublisher eventPublisher) {
         this.dailyAssetSummaryRepo = dailyAssetSummaryRepo;
+        this.dailyAssetSummaryCache = dailyAssetSummaryCache;
+        this.dailyCloseSeriesRepo = dailyCloseSeriesRepo;
         this.webService = webService;
+        this.eventPublisher = eventPublisher;
     }
 
     @Scheduled(cron = "0 0 18 * * MON-FRI", zone = "Asia/Hong_Kong")
     public void executeTask() {
-        innerExecute(hkCodes);
+        innerExecute(Market.HK, hkCodes);
     }
 
     @Scheduled(cron = "0 0 1 * * TUE-SAT", zone = "America/New_York")
     public void executeTaskForUS() {
-        innerExecute(usCodes);
+        innerExecute(Market.US, usCodes);
     }
 
-    public void innerExecute(List<String> codes) {
-        if (!enabled) {
-            log.info("Task disabled");
-            return;
-        }
-
+    /**
+     * Always signal completion, dependent tasks run with the previous summaries if this one is disabled or failed
+     */
+    public void innerExecute(Market market, List<String> codes) {
         try {
+            if (!enabled) {
+                log.info("Task disabled");
+                return;
+            }
+
             processStocks(codes);
         } catch (Exception e) {
             log.error("Unexpected exception!", e);
+        } finally {
+            eventPublisher.publishEvent(new DailySummaryCalculatedEvent(market));
         }
     }
 
-    private void processStocks(List<String> codes) throws ExecutionException, InterruptedException, UnirestException {
+    private void processStocks(List<String> codes) throws InterruptedException {
         log.info("processStocks: stdDevRange={}, codes={}", stdDevRanges, codes);
-        var maxStdDevRange = stdDevRanges.stream().mapToInt(s -> s).max().orElse(20);
-        var formatter = DateTimeFormatter.ofPattern("yyyyMMdd");
-        String fromDate = LocalDate.now().minusDays((long) (maxStdDevRange * 1.5)).format(formatter);   // take care holiday
-        String toDate = LocalDate.now().plusDays(1).format(formatter);
         var today = Date.from(LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant());
 
-        for (String symbol : codes) {
-            log.info("Processing code: {}, {}-{}", symbol, fromDate, toDate);
-            var symbols = symbol.split("\\.");
-            var marketCode = symbols.length > 1 ? symbols[1] : "HK";
-            var quotes = webService.getQuotesInRange(symbols[0], marketCode, fromDate, toDate).getBody();
-            var closingPrices = Arrays.stream(quotes).mapToDouble(DailyStockQuote::close).boxed().toList();
-            var summary = new DailyAssetSummary(symbol, today);
-
-            for (int stdDevRange : stdDevRanges) {
-                var closingPricesSubList = closingPrices.stream()
-                        .skip(Math.max(0, closingPrices.size() - stdDevRange))
-                        .toList();
-                var stdDev = MathUtils.calStdDev(closingPricesSubList);
-                log.info("stdDev of {} days: {}", stdDevRange, stdDev);
-                summary.stdDevs.put(stdDevRange, stdDev);
-            }
+        var futures = new ArrayList<Future<DailyAssetSummary>>();
+        try (var executor = Executors.newFixedThreadPool(Math.max(1, concurrency), Thread.ofVirtual().name("daily-summary-", 0).factory())) {
+            for (String symbol : codes)
+                futures.add(executor.submit(() -> summarize(symbol, today)));
+        }
 
-            dailyAssetSummaryRepo.save(summary);
-            log.info("Saved: {} for {}", symbol, today);
+        var summaries = new ArrayList<DailyAssetSummary>();
+        for (var future : futures) {
+            try {
+                summaries.add(future.get());
+            } catch (ExecutionException e) {
+                log.error("Cannot calculate daily summary", e.getCause());
+            }
         }
+        if (summaries.isEmpty()) return;
+
+        dailyAssetSummaryRepo.deleteAllById(summaries.stream().map(DailyAssetSummary::getId).toList());     // rerun on the same day
+        dailyAssetSummaryRepo.insert(summaries);
+        dailyAssetSummaryCache.put(summaries);
+        log.info("Saved {} summaries for {}", summaries.size(), today);
+    }
+
+    private DailyAssetSummary summarize(String symbol, Date today) throws UnirestException {
+        var summary = new DailyAssetSummary(symbol, today);
+        summary.stdDevs.putAll(updateCloseSeries(symbol).stdDevs());
+        log.info("stdDevs of {}: {}", symbol, summary.stdDevs);
+        return summary;
+    }
+
+    /**
+     * Fetch only the bars after the persisted series, or maxStdDevRange*1.5 days to rebuild it
+     */
+    private DailyCloseSeries updateCloseSeries(String symbol) throws UnirestException {
+        var series = dailyCloseSeriesRepo.findById(symbol)
+                .filter(s -> s.hasRanges(stdDevRanges) && s.lastDate != null)
+                .orElseGet(() -> new DailyCloseSeries(symbol, stdDevRanges));
+        var lastDate = series.lastDate;
+        var maxStdDevRange = stdDevRanges.stream().mapToInt(s -> s).max().orElse(20);
+        var from = lastDate == null
+                ? LocalDate.now().minusDays((long) (maxStdDevRange * 1.5))     // take care holiday
+                : LocalDate.ofInstant(lastDate.toInstant(), ZoneId.systemDefault()).plusDays(1);
+        if (from.isAfter(LocalDate.now())) return series;
+
+        String fromDate = from.format(rangeQuoteDateFormatter);
+        String toDate = LocalDate.now().plusDays(1).format(rangeQuoteDateFormatter);
+        log.info("Processing code: {}, {}-{}", symbol, fromDate, toDate);
+        var symbols = symbol.split("\\.");
+        var marketCode = symbols.length > 1 ? symbols[1] : "HK";
+        var quotes = webService.getQuotesInRange(symbols[0], marketCode, fromDate, toDate).getBody();
+        Arrays.stream(quotes)
+                .filter(q -> lastDate == null || q.date().after(lastDate))
+                .forEach(q -> series.add(q.date(), q.close()));
+
+        dailyCloseSeriesRepo.save(series);
+        return series;
     }
 }
@@ -0,0 +1,8 @@
+package squote.scheduletask;
+
+import squote.domain.Market;
+
+/**
+ * Published by CalculateDailySummaryTask when the daily summaries of a market are saved
+ */
+public record DailySummaryCalculatedEvent(Market market) {}
@@ -5,4 +5,8 @@ import squote.service.FutuAPIClient;
 @FunctionalInterface
 public interface FutuAPIClientFactory {
     FutuAPIClient build(FutuClientConfig futuClientConfig);
+
+    default void release(FutuAPIClient futuAPIClient) {
+        futuAPIClient.close();
+    }
 }
@@ -0,0 +1,77 @@
+package squote.scheduletask;
+
+import com.futu.openapi.FTAPI_Conn_Qot;
+import com.futu.openapi.FTAPI_Conn_Trd;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import squote.service.FutuAPIClient;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps one connected FutuAPIClient per FutuClientConfig across task cycles, so the
+ * connect handshake and trade unlock are only paid when a connection is (re)opened.
+ */
+@Component
+public class FutuAPIClientPool implements FutuAPIClientFactory {
+    protected final Logger log = LoggerFactory.getLogger(getClass());
+
+    @Value(value = "${futuOpendRsaKey}") String rsaKey;
+
+    private final Map<FutuClientConfig, FutuAPIClient> clients = new ConcurrentHashMap<>();
+    private final Map<FutuClientConfig, ReentrantLock> connectLocks = new ConcurrentHashMap<>();
+
+    FutuAPIClientFactory connector = (futuClientConfig) -> new FutuAPIClient(futuClientConfig, new FTAPI_Conn_Trd(), new FTAPI_Conn_Qot(), rsaKey, true);
+
+    @Override
+    public FutuAPIClient build(FutuClientConfig futuClientConfig) {
+        // connect under a lock rather than ConcurrentHashMap.compute, which would pin a virtual thread while blocking
+        var lock = connectLocks.computeIfAbsent(futuClientConfig, k -> new ReentrantLock());
+        lock.lock();
+        try {
+            var client = clients.get(futuClientConfig);
+            if (client != null && client.isConnected()) return client;
+
+            if (client != null) {
+                log.warn("Futu connection for fund {} is disconnected, reconnecting", futuClientConfig.fundName());
+                client.close();
+            }
+            client = connector.build(futuClientConfig);
+            clients.put(futuClientConfig, client);
+            return client;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void release(FutuAPIClient futuAPIClient) {
+        // keep the connection open for the next cycle
+    }
+
+    @Scheduled(fixedDelay = 60000, initialDelay = 60000)
+    public void checkConnectionHealth() {
+        for (var config : clients.keySet()) {
+            try {
+                build(config);
+            } catch (Exception e) {
+                log.error("Cannot reconnect Futu connection for fund {}", config.fundName(), e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        clients.values().forEach(FutuAPIClient::close);
+        clients.clear();
+        log.info("FutuAPIClientPool shutdown");
+    }
+
+    int size() { return clients.size(); }
+}
@@ -1,57 +1,84 @@
 package squote.scheduletask;
 
-import com.futu.openapi.FTAPI_Conn_Qot;
-import com.futu.openapi.FTAPI_Conn_Trd;
 import org.apache.commons.lang3.exception.ExceptionUtils;
-import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import squote.domain.AlgoConfig;
+import squote.domain.Execution;
+import squote.domain.Fund;
 import squote.domain.Market;
 import squote.domain.StockQuote;
 import squote.domain.repository.FundRepository;
 import squote.domain.repository.TaskConfigRepository;
 import squote.service.FutuAPIClient;
+import squote.service.IBrokerAPIClient;
 import squote.service.StockTradingAlgoService;
 import squote.service.TelegramAPIClient;
-import squote.service.TiingoAPIClient;
+import squote.service.TradeBook;
+import squote.service.YahooFinanceService;
+import squote.service.QuoteService;
 
-import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Component
 public class StockTradingTask {
     protected final Logger log = LoggerFactory.getLogger(getClass());
 
     @Value("#{${stocktradingtask.enabled}}") public Map<String, Boolean> enabledByMarket;
-    @Value(value = "${futuOpendRsaKey}") String rsaKey;
     @Value(value = "${futuClientConfigsJson}") String clientConfigJson;
+    @Value(value = "${stocktradingtask.fundConcurrency:4}") int fundConcurrency = 4;
+    @Value(value = "${stocktradingtask.tickTrigger.enabled:false}") boolean tickTriggerEnabled = false;
+    @Value(value = "${stocktradingtask.tickTrigger.stdDevFraction:0.5}") double tickTriggerStdDevFraction = 0.5;
+    @Value(value = "${stocktradingtask.tickTrigger.debounceMillis:60000}") long tickTriggerDebounceMillis = 60000;
+    @Autowired(required = false) YahooFinanceService yahooFinanceService;
 
     final FundRepository fundRepo;
     private final StockTradingAlgoService algoService;
     final TelegramAPIClient telegramAPIClient;
-    final TiingoAPIClient tiingoAPIClient;
+    final QuoteService quoteService;
     final TaskConfigRepository taskConfigRepo;
 
-    public FutuAPIClientFactory futuAPIClientFactory = (futuClientConfig) -> new FutuAPIClient(futuClientConfig, new FTAPI_Conn_Trd(), new FTAPI_Conn_Qot(), rsaKey, true);
+    final FutuAPIClientFactory futuAPIClientFactory;
+    private final Map<String, TradeBook> tradeBooks = new ConcurrentHashMap<>();
+    private final Map<String, ReentrantLock> fundLocks = new ConcurrentHashMap<>();
+    private final Set<String> fillReprocessPending = ConcurrentHashMap.newKeySet();
+    private final Map<String, TickTrigger> tickTriggers = new ConcurrentHashMap<>();
+    private final Map<String, Double> tickThresholds = new ConcurrentHashMap<>();     // percent by code, no Mongo read on the tick thread
+    private final Set<String> tickTriggerRunning = ConcurrentHashMap.newKeySet();
+
+    record TickTrigger(double referencePrice, double thresholdPercent, long triggeredAt) {}
 
     @Autowired
     public StockTradingTask(
             FundRepository fundRepo, TaskConfigRepository taskConfigRepo,
             StockTradingAlgoService algoService,
             TelegramAPIClient telegramAPIClient,
-            TiingoAPIClient tiingoAPIClient) {
+            QuoteService quoteService,
+            FutuAPIClientFactory futuAPIClientFactory) {
         this.fundRepo = fundRepo;
         this.algoService = algoService;
         this.telegramAPIClient = telegramAPIClient;
-        this.tiingoAPIClient = tiingoAPIClient;
+        this.quoteService = quoteService;
         this.taskConfigRepo = taskConfigRepo;
+        this.futuAPIClientFactory = futuAPIClientFactory;
+    }
+
+    @PostConstruct
+    public void registerTickTrigger() {
+        if (!tickTriggerEnabled || yahooFinanceService == null) return;
+
+        Thread.ofVirtual().name("tick-thresholds").start(() -> refreshTickThresholds(Market.US));
+        yahooFinanceService.addTickerListener(t -> onTick(t.getId() + "." + Market.US, t.getPrice()));
+        log.info("Tick triggered trading enabled: stdDevFraction={}, debounceMillis={}", tickTriggerStdDevFraction, tickTriggerDebounceMillis);
     }
 
     private boolean isMarketDisabled(Market market) {
@@ -60,7 +87,6 @@ public class StockTradingTask {
     
     @Scheduled(cron = "30 30-55/5 9 * * MON-FRI", zone = "Asia/Hong_Kong")
     @Scheduled(cron = "30 */5 10-15 * * MON-FRI", zone = "Asia/Hong_Kong")
-    @Scheduled(cron = "0 5 18 * * MON-FRI", zone = "Asia/Hong_Kong")    // adjust the price after daily std dev calculated
     public void executeHK() {
         if (isMarketDisabled(Market.HK)) { log.info("HK trading task disabled");
             return;
@@ -69,6 +95,12 @@ public class StockTradingTask {
         innerExecute(Market.HK);
     }
 
+    @EventListener
+    public void onDailySummaryCalculated(DailySummaryCalculatedEvent event) {
+        if (event.market() == Market.HK) executeHK();   // adjust the price after daily std dev calculated
+        else if (tickTriggerEnabled) refreshTickThresholds(event.market());     // innerExecute refreshes HK
+    }
+
     @Scheduled(cron = "30 */5 4-19 * * MON-FRI", zone = "America/New_York")
     public void executeUS() {
         if (isMarketDisabled(Market.US)) {
@@ -82,43 +114,161 @@ public class StockTradingTask {
     public void innerExecute(Market market) {
         try {
             log.info("Starting stock trading task for market: {}", market);
+            tickTriggers.keySet().removeIf(code -> Market.getMarketByStockCode(code) == market);    // repriced, track from next tick
+            if (tickTriggerEnabled) refreshTickThresholds(market);
             var futuClientConfigs = FutuClientConfig.parseFutuClientConfigs(clientConfigJson);
             var lastExecutionTime = getLastExecutionTime(market);
 
-            for (var fund : fundRepo.findAll()) {
-                if (fund.getAlgoConfigs().isEmpty()) continue;
+            try (var executor = Executors.newFixedThreadPool(Math.max(1, fundConcurrency), Thread.ofVirtual().name("trading-fund-", 0).factory())) {
+                for (var fund : fundRepo.findAll()) {
+                    var algoConfigsMatchMarket = fund.getAlgoConfigs().values().stream()
+                            .filter(c -> market.equals(Market.getMarketByStockCode(c.code())))
+                            .toList();
+                    if (algoConfigsMatchMarket.isEmpty()) continue;
+
+                    executor.submit(() -> processFund(fund, market, algoConfigsMatchMarket, futuClientConfigs.get(fund.name), lastExecutionTime));
+                }
+            }
+        } catch (Exception e) {
+            sendUnexpectedException(market, e);
+        }
+    }
+
+    private void processFund(Fund fund, Market market, List<AlgoConfig> algoConfigs, FutuClientConfig clientConfig, Date lastExecutionTime) {
+        var fundName = fund.name;
+        log.info("Start process fund [{}]", fundName);
+        if (clientConfig == null) {
+            log.warn("cannot find client config for fund: {}", fundName);
+            return;
+        }
+
+        FutuAPIClient futuAPIClient = null;
+        var lock = fundLocks.computeIfAbsent(fundName, k -> new ReentrantLock());
+        lock.lock();
+        try {
+            futuAPIClient = futuAPIClientFactory.build(clientConfig);
+            unlockTrade(futuAPIClient, clientConfig.unlockCode());
+            var tradeBook = getTradeBook(futuAPIClient, clientConfig);
+
+            var quotes = getStockQuotes(algoConfigs, tradeBook, fundName);
+            var snapshot = algoService.newCycleSnapshot(fund, tradeBook);
+            for (var c : algoConfigs) {
+                algoService.processSingleSymbol(snapshot, market, c,
+                        clientConfig,
+                        quotes.get(c.code()),
+                        lastExecutionTime);
+            }
+        } catch (Exception e) {
+            sendUnexpectedException(market, e);
+        } finally {
+            lock.unlock();
+            if (futuAPIClient != null) futuAPIClientFactory.release(futuAPIClient);
+        }
+    }
+
+    /**
+     * Called under the fund lock. Subscribe outside ConcurrentHashMap.compute, a blocking call in
+     * there pins the virtual thread to its carrier.
+     */
+    private TradeBook getTradeBook(FutuAPIClient futuAPIClient, FutuClientConfig clientConfig) {
+        var book = tradeBooks.get(clientConfig.fundName());
+        if (book != null && book.brokerAPIClient() == futuAPIClient && !book.isConnectionLost()) return book;
+        if (book != null) book.close();     // re-subscribe and re-seed, the old book must not react to pushes anymore
+
+        var newBook = TradeBook.subscribe(futuAPIClient);
+        newBook.addFillListener(fill -> onFill(fill, clientConfig));
+        tradeBooks.put(clientConfig.fundName(), newBook);
+        return newBook;
+    }
+
+    void onFill(Execution fill, FutuClientConfig clientConfig) {
+        var market = fill.getMarket();
+        // only this code is reprocessed, a pending fill of another code in the fund must not swallow it
+        var pendingKey = clientConfig.fundName() + "/" + fill.getCode();
+        if (isMarketDisabled(market) || !fillReprocessPending.add(pendingKey)) return;
 
-                var algoConfigsMatchMarket = fund.getAlgoConfigs().values().stream()
-                        .filter(c -> market.equals(Market.getMarketByStockCode(c.code())))
+        Thread.ofVirtual().name("trading-fill-" + pendingKey).start(() -> {
+            fillReprocessPending.remove(pendingKey);
+            fundRepo.findByUserIdAndName(clientConfig.fundUserId(), clientConfig.fundName()).ifPresent(fund -> {
+                var algoConfigs = fund.getAlgoConfigs().values().stream()
+                        .filter(c -> c.code().equals(fill.getCode()))
                         .toList();
-                if (algoConfigsMatchMarket.isEmpty()) continue;
-
-                var fundName = fund.name;
-                log.info("Start process fund [{}]", fundName);
-                var clientConfig = futuClientConfigs.get(fundName);
-                if (clientConfig == null) {
-                    log.warn("cannot find client config for fund: {}", fundName);
-                    continue;
+                if (algoConfigs.isEmpty()) return;
+
+                log.info("Reprocess {} in fund [{}] on fill {}", fill.getCode(), fund.name, fill);
+                processFund(fund, market, algoConfigs, clientConfig, getLastExecutionTime(market));
+            });
+        });
+    }
+
+    void onTick(String code, double price) {
+        if (price <= 0 || isMarketDisabled(Market.getMarketByStockCode(code))) return;
+
+        var trigger = tickTriggers.get(code);
+        if (trigger == null) {
+            var thresholdPercent = tickThresholds.get(code);
+            if (thresholdPercent != null) tickTriggers.put(code, new TickTrigger(price, thresholdPercent, 0));
+            return;
+        }
+
+        var movePercent = Math.abs(price - trigger.referencePrice()) / trigger.referencePrice() * 100;
+        if (movePercent < trigger.thresholdPercent()
+                || System.currentTimeMillis() - trigger.triggeredAt() < tickTriggerDebounceMillis
+                || !tickTriggerRunning.add(code)) return;
+
+        Thread.ofVirtual().name("trading-tick-" + code).start(() -> {
+            try {
+                log.info("{} moved {}% to {} from {}, threshold {}%", code, movePercent, price, trigger.referencePrice(), trigger.thresholdPercent());
+                processSymbol(code);
+                tickTriggers.put(code, new TickTrigger(price, tickThresholds.getOrDefault(code, trigger.thresholdPercent()), System.currentTimeMillis()));
+            } catch (Exception e) {
+                sendUnexpectedException(Market.getMarketByStockCode(code), e);
+            } finally {
+                tickTriggerRunning.remove(code);
+            }
+        });
+    }
+
+    /**
+     * Tick threshold of each code of the market, the smallest stdDev fraction among the algo configs of the code.
+     * Codes without stdDev are not tracked.
+     */
+    void refreshTickThresholds(Market market) {
+        try {
+            var thresholds = new HashMap<String, Double>();
+            for (var fund : fundRepo.findAll()) {
+                for (var c : fund.getAlgoConfigs().values()) {
+                    if (Market.getMarketByStockCode(c.code()) != market) continue;
+                    algoService.getStdDev(c.code(), c.stdDevRange())
+                            .ifPresent(stdDev -> thresholds.merge(c.code(), stdDev * tickTriggerStdDevFraction, Math::min));
                 }
-                FutuAPIClient futuAPIClient = futuAPIClientFactory.build(clientConfig);
-                unlockTrade(futuAPIClient, clientConfig.unlockCode());
-
-                var usQuotes = getUSStockQuote(algoConfigsMatchMarket, fundName);
-                algoConfigsMatchMarket.forEach(c ->
-                        algoService.processSingleSymbol(fund, market, c,
-                                clientConfig, futuAPIClient,
-                                usQuotes.get(Market.getBaseCodeFromTicker(c.code())),
-                                lastExecutionTime)
-                );
-                futuAPIClient.close();
             }
+            tickThresholds.keySet().removeIf(code -> Market.getMarketByStockCode(code) == market && !thresholds.containsKey(code));
+            tickThresholds.putAll(thresholds);
+            log.info("Tick thresholds of {}: {}", market, thresholds);
         } catch (Exception e) {
-            log.error("Unexpected exception!" ,e);
-            var message = String.format("StockTradingTask - %s: Unexpected exception: %s \n %s", market, e.getMessage(), ExceptionUtils.getStackTrace(e));
-            telegramAPIClient.sendMessage(message);
+            log.error("Cannot refresh tick thresholds of {}", market, e);
+        }
+    }
+
+    private void processSymbol(String code) {
+        var market = Market.getMarketByStockCode(code);
+        var futuClientConfigs = FutuClientConfig.parseFutuClientConfigs(clientConfigJson);
+        var lastExecutionTime = getLastExecutionTime(market);
+        for (var fund : fundRepo.findAll()) {
+            var algoConfigs = fund.getAlgoConfigs().values().stream()
+                    .filter(c -> c.code().equals(code))
+                    .toList();
+            if (!algoConfigs.isEmpty()) processFund(fund, market, algoConfigs, futuClientConfigs.get(fund.name), lastExecutionTime);
         }
     }
 
+    private void sendUnexpectedException(Market market, Exception e) {
+        log.error("Unexpected exception!" ,e);
+        var message = String.format("StockTradingTask - %s: Unexpected exception: %s \n %s", market, e.getMessage(), ExceptionUtils.getStackTrace(e));
+        telegramAPIClient.sendMessage(message);
+    }
+
     Date getLastExecutionTime(Market market) {
         var config = taskConfigRepo.findById(SyncStockExecutionsTask.class.toString());
         if (config.isEmpty()) return new Date();
@@ -128,26 +278,16 @@ public class StockTradingTask {
                 .getOrDefault(market, new Date());
     }
 
-    @NotNull
-    private Map<String, StockQuote> getUSStockQuote(List<AlgoConfig> algoConfigsMatchMarket, String fundName) {
-        var usStockCodes = algoConfigsMatchMarket.stream()
-                .map(AlgoConfig::code)
-                .filter(Market::isUSStockCode)
-                .map(Market::getBaseCodeFromTicker)
-                .distinct().toList();
-
-        var usQuotes = new HashMap<String, StockQuote>();
-
-        if (usStockCodes.isEmpty()) return usQuotes;
+    /**
+     * Prefetch quotes of all symbols of the fund, HK from the broker first
+     */
+    private Map<String, StockQuote> getStockQuotes(List<AlgoConfig> algoConfigsMatchMarket, IBrokerAPIClient brokerAPIClient, String fundName) {
+        var codes = algoConfigsMatchMarket.stream().map(AlgoConfig::code).distinct().toList();
+        if (codes.isEmpty()) return Map.of();
 
-        try {
-            var quotes = tiingoAPIClient.getPrices(usStockCodes).get();
-            quotes.forEach(quote -> usQuotes.put(quote.getStockCode(), quote));
-            log.info("Fetched {} quotes from Tiingo for fund {}: {}", quotes.size(), fundName, usStockCodes);
-        } catch (Exception e) {
-            log.warn("Failed to fetch quotes from Tiingo for fund {}. Exception={}", fundName, e.getMessage());
-        }
-        return usQuotes;
+        var quotes = quoteService.getQuotes(codes, brokerAPIClient);
+        log.info("Fetched {} quotes for fund {}: {}", quotes.size(), fundName, codes);
+        return quotes;
     }
 
     public void unlockTrade(FutuAPIClient futuAPIClient, String code) {
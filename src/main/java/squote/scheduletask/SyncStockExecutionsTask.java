@@ -1,8 +1,6 @@
 package squote.scheduletask;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.futu.openapi.FTAPI_Conn_Qot;
-import com.futu.openapi.FTAPI_Conn_Trd;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
@@ -19,6 +17,10 @@ import squote.service.*;
 
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Component
 public class SyncStockExecutionsTask {
@@ -27,10 +29,10 @@ public class SyncStockExecutionsTask {
 
     @Value("#{${syncstockexecutionstask.enabled}}") public Map<String, Boolean> enabledByMarket;
     @Value(value = "${syncstockexecutionstask.userId}") String userId;
-    @Value(value = "${futuOpendRsaKey}") String rsaKey;
     @Value(value = "${futuClientConfigsJson}") String clientConfigJson;
     @Value(value = "${syncstockexecutionstask.summaryEmailAddress}") String summaryEmailAddress;
     @Value(value = "${syncstockexecutionstask.sendTelegram}") boolean sendTelegram;
+    @Value(value = "${syncstockexecutionstask.accountConcurrency:4}") int accountConcurrency = 4;
 
     @Autowired HoldingStockRepository holdingRepo;
     @Autowired TaskConfigRepository taskConfigRepo;
@@ -42,7 +44,11 @@ public class SyncStockExecutionsTask {
     HKMarketFeesCalculator hkFeeCalculator = new HKMarketFeesCalculator();
     USMarketFeesCalculator usFeeCalculator = new USMarketFeesCalculator();
 
-    public FutuAPIClientFactory futuAPIClientFactory = (futuClientConfig) -> new FutuAPIClient(futuClientConfig, new FTAPI_Conn_Trd(), new FTAPI_Conn_Qot(), rsaKey, true);
+    @Autowired FutuAPIClientFactory futuAPIClientFactory;
+
+    private final Map<String, ReentrantLock> fundLocks = new ConcurrentHashMap<>();
+
+    record AccountSyncResult(StringBuilder logs, List<String> messages, List<Execution> executions, boolean succeeded) {}
 
     @Scheduled(cron = "0 5 17 * * MON-SAT", zone = "Asia/Hong_Kong")
     public void executeHK() {
@@ -79,77 +85,155 @@ public class SyncStockExecutionsTask {
     public void sync(Market market) {
         var mapper = new ObjectMapper();
         StringBuilder logs = new StringBuilder("Start SyncStockExecutionsTask for market: " + market + "\n\n");
-        FutuAPIClient futuAPIClient = null;
         try {
             var futuClientConfigs = mapper.readValue(clientConfigJson, FutuClientConfig[].class);
             var fromDate = getFromDate(market);
 
-            for (var config : futuClientConfigs) {
-                if (config.markets()==null || !config.markets().contains(market)) continue;
-
-                logs.append(String.format("Process config=%s\n\nFund snapshot before:\n%s\n\n", config, fundRepo.findByUserIdAndName(userId, config.fundName())));
-                futuAPIClient = futuAPIClientFactory.build(config);
-
-                logs.append(String.format("Get executions for accountId=%s since %s\n\n", config.accountId(), fromDate));
-                var executions = futuAPIClient.getRecentExecutions(fromDate, market).values().stream()
-                        .sorted(Comparator.comparingLong(Execution::getTime))
-                        .toList();
-                for (var exec : executions) {
-                    logs.append(String.format("\nProcess execution=%s\n", exec));
-                    if (exec.getMarket() != market) {
-                        logs.append(String.format("%s!=%s Skip processing\n", exec.getMarket(), market));
-                        continue;
-                    }
-
-                    if (holdingRepo.existsByFillIdsLike(exec.getFillIds())) {
-                        logs.append("Fill id exists. Skip processing\n");
-                        continue;
-                    }
-
-                    var holding = HoldingStock.from(exec, userId);
-                    var stockMarket = Market.getMarketByStockCode(holding.getCode());
-                    var fees = (stockMarket == Market.US)
-                        ? usFeeCalculator.totalFee(holding, Broker.FUTU.calculateCommission)
-                        : hkFeeCalculator.totalFee(holding, false, Broker.FUTU.calculateCommission);
-                    holding.setFee(fees);
-                    var fund = updateFundService.updateFundByHolding(userId, config.fundName(), holding, fees);
-                    fundRepo.save(fund);
-                    holdingRepo.save(holding);
-
-                    logHoldingProcessed(config, logs, holding, fees, fund);
+            var results = new ArrayList<Future<AccountSyncResult>>();
+            try (var executor = Executors.newFixedThreadPool(Math.max(1, accountConcurrency), Thread.ofVirtual().name("sync-account-", 0).factory())) {
+                for (var config : futuClientConfigs) {
+                    if (config.markets()==null || !config.markets().contains(market)) continue;
+                    results.add(executor.submit(() -> syncAccount(config, market, fromDate)));
                 }
-                futuAPIClient.close();
+            }
 
-                saveLastExecutionTime(logs, market, fromDate, executions);
-                logs.append(String.format("Fund snapshot after:\n%s\n\n", fundRepo.findByUserIdAndName(userId, config.fundName())));
+            // merge in config order
+            var executions = new ArrayList<Execution>();
+            var allSucceeded = true;
+            for (var future : results) {
+                var result = future.get();
+                logs.append(result.logs());
+                result.messages().forEach(this::sendTelegram);
+                executions.addAll(result.executions());
+                allSucceeded &= result.succeeded();
             }
+
+            if (allSucceeded)
+                saveLastExecutionTime(logs, market, fromDate, executions);
+            else
+                logs.append("Not all accounts synced, keep last execution time\n\n");
         } catch (Exception e) {
             var message = String.format("SyncStockExecutionsTask: Unexpected exception: %s \n %s", e.getMessage(), ExceptionUtils.getStackTrace(e));
             logs.append(String.format("ERROR, stop execute\n\n%s", message));
             sendTelegram(message);
         } finally {
-            if (futuAPIClient != null) futuAPIClient.close();
-
             var logsString = logs.toString();
             log.info(logsString);
             sendSummaryEmail(logsString);
         }
     }
 
-    private void logHoldingProcessed(FutuClientConfig config, StringBuilder logs, HoldingStock holding, BigDecimal fees, Fund fund) {
+    private AccountSyncResult syncAccount(FutuClientConfig config, Market market, Date fromDate) {
+        var logs = new StringBuilder();
+        var messages = new ArrayList<String>();
+        FutuAPIClient futuAPIClient = null;
+        try {
+            futuAPIClient = futuAPIClientFactory.build(config);
+            logs.append(String.format("Get executions for accountId=%s since %s\n\n", config.accountId(), fromDate));
+            var executions = futuAPIClient.getRecentExecutions(fromDate, market).values().stream()
+                    .sorted(Comparator.comparingLong(Execution::getTime))
+                    .toList();
+            futuAPIClientFactory.release(futuAPIClient);
+            futuAPIClient = null;
+
+            var lock = fundLocks.computeIfAbsent(config.fundName(), k -> new ReentrantLock());
+            lock.lock();
+            try {
+                applyExecutions(config, market, executions, logs, messages);
+            } finally {
+                lock.unlock();
+            }
+            return new AccountSyncResult(logs, messages, executions, true);
+        } catch (Exception e) {
+            var message = String.format("SyncStockExecutionsTask: Unexpected exception for accountId=%s: %s \n %s", config.accountId(), e.getMessage(), ExceptionUtils.getStackTrace(e));
+            logs.append(String.format("ERROR, stop execute accountId=%s\n\n%s\n\n", config.accountId(), message));
+            messages.add(message);
+            return new AccountSyncResult(logs, messages, List.of(), false);
+        } finally {
+            if (futuAPIClient != null) futuAPIClientFactory.release(futuAPIClient);
+        }
+    }
+
+    private void applyExecutions(FutuClientConfig config, Market market, List<Execution> executions, StringBuilder logs, List<String> messages) {
+        var fund = fundRepo.findByUserIdAndName(userId, config.fundName()).orElseThrow();
+        logs.append(String.format("Process config=%s\n\nFund snapshot before:\n%s\n\n", config, fund));
+
+        var existingFillIds = findExistingFillIds(executions);
+        var newHoldings = new ArrayList<HoldingStock>();
+        var holdingMessages = new ArrayList<String>();
+        for (var exec : executions) {
+            logs.append(String.format("\nProcess execution=%s\n", exec));
+            if (exec.getMarket() != market) {
+                logs.append(String.format("%s!=%s Skip processing\n", exec.getMarket(), market));
+                continue;
+            }
+
+            if (HoldingStock.toFillIdList(exec.getFillIds()).stream().anyMatch(existingFillIds::contains)) {
+                logs.append("Fill id exists. Skip processing\n");
+                continue;
+            }
+
+            var holding = HoldingStock.from(exec, userId);
+            var stockMarket = Market.getMarketByStockCode(holding.getCode());
+            var fees = (stockMarket == Market.US)
+                ? usFeeCalculator.totalFee(holding, Broker.FUTU.calculateCommission)
+                : hkFeeCalculator.totalFee(holding, false, Broker.FUTU.calculateCommission);
+            holding.setFee(fees);
+            fund = updateFundService.updateFundByHolding(fund, holding, fees);
+            newHoldings.add(holding);
+            existingFillIds.addAll(holding.getFillIdList());
+
+            holdingMessages.add(logHoldingProcessed(config, logs, holding, fees, fund));
+        }
+        persist(fund, newHoldings, logs);
+        messages.addAll(holdingMessages);
+        logs.append(String.format("Fund snapshot after:\n%s\n\n", fund));
+    }
+
+    /**
+     * One indexed query for all fill ids of the executions
+     */
+    private Set<String> findExistingFillIds(List<Execution> executions) {
+        var fillIds = executions.stream()
+                .flatMap(e -> HoldingStock.toFillIdList(e.getFillIds()).stream())
+                .toList();
+        var existing = new HashSet<String>();
+        if (fillIds.isEmpty()) return existing;
+
+        holdingRepo.findByFillIdListIn(fillIds).forEach(h -> existing.addAll(h.getFillIdList()));
+        return existing;
+    }
+
+    /**
+     * All holdings of a fund in one bulk insert, then the fund. Inserted holdings are removed if the fund
+     * cannot be saved, so the next sync applies the same executions again instead of skipping them.
+     */
+    private void persist(Fund fund, List<HoldingStock> holdings, StringBuilder logs) {
+        if (holdings.isEmpty()) return;
+
+        holdingRepo.insert(holdings);
+        try {
+            fundRepo.save(fund);
+        } catch (RuntimeException e) {
+            holdingRepo.deleteAll(holdings);
+            throw e;
+        }
+        logs.append(String.format("Saved %d holdings and fund %s\n\n", holdings.size(), fund.name));
+    }
+
+    private String logHoldingProcessed(FutuClientConfig config, StringBuilder logs, HoldingStock holding, BigDecimal fees, Fund fund) {
         logs.append(String.format("created holding=%s\n", holding));
         logs.append(String.format("update with holding to fund %s:%s with fee %s\n", 
                 userId, config.fundName(), fees));
         logs.append(String.format("updated fund profit=%s\n\n", fund.getProfit()));
 
-        var message = String.format("""
+        return String.format("""
 Created holding for %s
 %s %s %d@%.2f (%.2f)
 fee=%.2f profit=%.2f""",
                 fund.name,
                 holding.getSide(), holding.getCode(), holding.getQuantity(), holding.getPrice(), holding.getGross(),
                 fees, fund.getProfit());
-        sendTelegram(message);
     }
 
     private void sendTelegram(String message) {
@@ -0,0 +1,130 @@
+package squote.service;
+
+import squote.domain.AlgoConfig;
+import squote.domain.DailyStockQuote;
+import squote.service.StockTradingAlgoService.Execution;
+import thc.util.MathUtils;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static squote.SquoteConstants.Side.BUY;
+import static squote.SquoteConstants.Side.SELL;
+
+/**
+ * Replays the StockTradingAlgoService pricing rules (AlgoPricing) over daily quotes.
+ * Each day the orders are priced from the base execution, the previous day's stdDev and the open,
+ * and filled if the day's low / high reaches them, at most one fill per side per day.
+ * The first position is bought at the open of the first day with a full stdDev window.
+ */
+public class AlgoBacktest {
+    public record Result(AlgoConfig config, double realizedProfit, double maxDrawdown, double finalEquity,
+                         int buys, int sells, double maxHoldingAmount) {
+        @Override
+        public String toString() {
+            return String.format("range=%d multiplier=%.2f profit=%.2f drawdown=%.2f equity=%.2f buys=%d sells=%d maxHolding=%.2f",
+                    config.stdDevRange(), config.stdDevMultiplier(), realizedProfit, maxDrawdown, finalEquity, buys, sells, maxHoldingAmount);
+        }
+    }
+
+    private final List<DailyStockQuote> quotes;
+    private final Map<Integer, double[]> stdDevsByRange = new HashMap<>();
+
+    /**
+     * stdDevs of all ranges are calculated once and shared by every run
+     */
+    public AlgoBacktest(List<DailyStockQuote> quotes, Collection<Integer> stdDevRanges) {
+        this.quotes = List.copyOf(quotes);
+        var closes = quotes.stream().mapToDouble(DailyStockQuote::close).toArray();
+        var ranges = stdDevRanges.stream().distinct().mapToInt(r -> r).toArray();
+        var stdDevs = MathUtils.rollingStdDevs(closes, ranges);
+        for (int r = 0; r < ranges.length; r++) stdDevsByRange.put(ranges[r], stdDevs[r]);
+    }
+
+    public static List<AlgoConfig> grid(AlgoConfig template, int[] stdDevRanges, double[] stdDevMultipliers) {
+        var configs = new ArrayList<AlgoConfig>();
+        for (var range : stdDevRanges)
+            for (var multiplier : stdDevMultipliers)
+                configs.add(new AlgoConfig(template.code(), template.quantity(), template.basePrice(), range, multiplier,
+                        template.grossAmount(), template.sellOnly(), template.lotSize()));
+        return configs;
+    }
+
+    /**
+     * Results in the order of configs
+     */
+    public List<Result> sweep(List<AlgoConfig> configs, int parallelism) {
+        var pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(() -> configs.parallelStream().map(this::run).toList()).join();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public Result run(AlgoConfig config) {
+        var stdDevs = stdDevsByRange.get(config.stdDevRange());
+        if (stdDevs == null) throw new IllegalArgumentException("stdDevRange not calculated: " + config.stdDevRange());
+
+        var buys = new ArrayList<Execution>();
+        var sells = new ArrayList<Execution>();
+        double cash = 0, realizedProfit = 0, peakEquity = 0, maxDrawdown = 0, maxHoldingAmount = 0;
+        int position = 0, buyCount = 0, sellCount = 0;
+        double lastClose = 0;
+
+        for (int i = config.stdDevRange(); i < quotes.size(); i++) {
+            var quote = quotes.get(i);
+            if (quote.open() == 0 || quote.high() == 0 || quote.low() == 0) continue;
+
+            var base = AlgoPricing.findBaseExecution(buys, sells, (sell, buy) -> {});
+            if (base.isEmpty() && buys.isEmpty() && sells.isEmpty()) {
+                var first = new Execution(config.code(), BUY, 0, quote.open(), false, quote.date());
+                var quantity = AlgoPricing.orderQuantity(BUY, first, config, quote.open());
+                if (quantity <= 0) throw new IllegalArgumentException("Cannot decide buy quantity of " + config);
+                base = Optional.of(new Execution(config.code(), BUY, quantity, quote.open(), false, quote.date()));
+                buys.add(base.get());
+                position += quantity;
+                cash -= quantity * quote.open();
+                buyCount++;
+            }
+            if (base.isEmpty()) break;  // unexpected executions, the live algo stops too
+
+            var baseExec = base.get();
+            var stdDev = stdDevs[i - 1];
+            if (baseExec.side() == BUY) {
+                var target = AlgoPricing.targetPrice(SELL, baseExec, stdDev, config.stdDevMultiplier(), quote.open());
+                if (quote.high() >= target) {
+                    var price = Math.max(target, quote.open());
+                    var quantity = AlgoPricing.orderQuantity(SELL, baseExec, config, target);
+                    sells.add(new Execution(config.code(), SELL, quantity, price, false, new Date(quote.date().getTime() + 1)));
+                    sells.sort(AlgoPricing.EXECUTION_ORDER);
+                    position -= quantity;
+                    cash += quantity * price;
+                    realizedProfit += (price - baseExec.price()) * quantity;
+                    sellCount++;
+                }
+            }
+            if (!config.sellOnly()) {
+                var target = AlgoPricing.targetPrice(BUY, baseExec, stdDev, config.stdDevMultiplier(), quote.open());
+                var quantity = AlgoPricing.orderQuantity(BUY, baseExec, config, target);
+                if (quantity > 0 && quote.low() <= target) {
+                    var price = Math.min(target, quote.open());
+                    buys.add(new Execution(config.code(), BUY, quantity, price, false, quote.date()));
+                    buys.sort(AlgoPricing.EXECUTION_ORDER);
+                    position += quantity;
+                    cash -= quantity * price;
+                    buyCount++;
+                }
+            }
+
+            lastClose = quote.close();
+            var holdingAmount = position * lastClose;
+            var equity = cash + holdingAmount;
+            peakEquity = Math.max(peakEquity, equity);
+            maxDrawdown = Math.max(maxDrawdown, peakEquity - equity);
+            maxHoldingAmount = Math.max(maxHoldingAmount, holdingAmount);
+        }
+
+        return new Result(config, realizedProfit, maxDrawdown, cash + position * lastClose, buyCount, sellCount, maxHoldingAmount);
+    }
+}
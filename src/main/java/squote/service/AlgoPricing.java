@@ -0,0 +1,103 @@
+package squote.service;
+
+import squote.SquoteConstants.Side;
+import squote.domain.AlgoConfig;
+import squote.service.StockTradingAlgoService.Execution;
+import thc.util.TradingUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+
+import static squote.SquoteConstants.Side.BUY;
+import static squote.SquoteConstants.Side.SELL;
+
+/**
+ * Pricing rules of StockTradingAlgoService without logging or IO, shared with AlgoBacktest
+ */
+public final class AlgoPricing {
+    static final Map<String, Double> tickSizes = Map.of("2800", 0.02, "code1", 0.02);
+
+    public static final Comparator<Execution> EXECUTION_ORDER = Comparator.comparingDouble(Execution::price)
+            .thenComparing(Execution::date);
+
+    private AlgoPricing() {}
+
+    public static double tickSize(String code) {
+        return tickSizes.getOrDefault(code, 0.01);  // default US to 0.01
+    }
+
+    public static double targetPrice(Side orderSide, Execution baseExec, double stdDev, double stdDevMultiplier, double marketPrice) {
+        var basePrice = baseExec.price();
+        var modifiedStdDevPercentage = Math.min((stdDev * stdDevMultiplier / 100), 0.02618); // 0.01618 ^ 2
+        var targetPrice = orderSide == SELL ? basePrice * (1 + modifiedStdDevPercentage) : basePrice / (1 + modifiedStdDevPercentage);
+
+        // handle target price far from market price
+        if (orderSide == BUY) {
+            var priceAdjustmentFactor = 1 + (modifiedStdDevPercentage / 2);
+            if (baseExec.side() == BUY) {
+                while (targetPrice > marketPrice) {
+                    targetPrice = targetPrice / priceAdjustmentFactor;
+                }
+            } else {
+                var minBuyPrice = marketPrice / (1 + stdDev / 100);   // choose stdDev explicitly
+                while (targetPrice < minBuyPrice) {
+                    targetPrice = targetPrice * priceAdjustmentFactor;
+                }
+            }
+        }
+
+        var tickSize = tickSize(baseExec.code());
+        targetPrice = orderSide == BUY ? Math.floor(targetPrice / tickSize) * tickSize : Math.ceil(targetPrice / tickSize) * tickSize;
+        return (double) Math.round(targetPrice * 1000) / 1000;
+    }
+
+    public static int orderQuantity(Side orderSide, Execution baseExec, AlgoConfig algoConfig, double targetPrice) {
+        if (orderSide == SELL) return baseExec.quantity();
+
+        // BUY orders
+        if (algoConfig.grossAmount() != null && algoConfig.grossAmount() > 0) {
+            if (algoConfig.lotSize() > 0)
+                return TradingUtils.roundToLotSize(algoConfig.grossAmount() / targetPrice, algoConfig.lotSize());
+            return (int) Math.floor(algoConfig.grossAmount() / targetPrice);
+        }
+        if (algoConfig.quantity() > 0) return algoConfig.quantity();
+        return baseExec.quantity();
+    }
+
+    /**
+     * Latest buy not yet sold, or the last sell if all buys are sold. Executions must be sorted by EXECUTION_ORDER.
+     * onUnexpected receives (sell, buy) when a sell is not above the buy it should close.
+     */
+    public static Optional<Execution> findBaseExecution(List<Execution> buyExecutions, List<Execution> sellExecutions,
+                                                        BiConsumer<Execution, Execution> onUnexpected) {
+        if (buyExecutions.isEmpty() && sellExecutions.isEmpty()) return Optional.empty();
+        if (sellExecutions.isEmpty()) return buyExecutions.stream().findFirst();
+        if (buyExecutions.isEmpty() && sellExecutions.size() == 1) return Optional.ofNullable(sellExecutions.getFirst());
+
+        int buyIndex = 0, sellIndex = 0;
+        var cloneBuyExecutions = new ArrayList<>(buyExecutions);
+        var cloneSellExecutions = new ArrayList<>(sellExecutions);
+
+        while (buyIndex < buyExecutions.size()) {
+            if (sellExecutions.get(sellIndex).price() > buyExecutions.get(buyIndex).price()) {
+                if (sellExecutions.get(sellIndex).date().after(buyExecutions.get(buyIndex).date())) {
+                    cloneBuyExecutions.remove(buyIndex);
+                    cloneSellExecutions.remove(sellIndex);
+                    if (cloneBuyExecutions.isEmpty() && cloneSellExecutions.isEmpty()) return Optional.ofNullable(sellExecutions.getFirst());
+                    return findBaseExecution(cloneBuyExecutions, cloneSellExecutions, onUnexpected);
+                } else {
+                    buyIndex++;
+                }
+            } else {
+                onUnexpected.accept(sellExecutions.get(sellIndex), buyExecutions.get(buyIndex));
+                return Optional.empty();
+            }
+        }
+
+        return Optional.empty();
+    }
+}
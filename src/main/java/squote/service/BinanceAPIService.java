@@ -1,5 +1,6 @@
 package squote.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.knowm.xchange.Exchange;
 import org.knowm.xchange.ExchangeFactory;
 import org.knowm.xchange.ExchangeSpecification;
@@ -7,19 +8,29 @@ import org.knowm.xchange.binance.BinanceExchange;
 import org.knowm.xchange.binance.dto.trade.BinanceTradeHistoryParams;
 import org.knowm.xchange.currency.CurrencyPair;
 import org.knowm.xchange.dto.Order;
-import org.knowm.xchange.dto.marketdata.Ticker;
-import org.knowm.xchange.dto.marketdata.Trade;
-import org.knowm.xchange.service.marketdata.MarketDataService;
+import org.knowm.xchange.dto.trade.UserTrade;
 import org.knowm.xchange.service.trade.TradeService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import squote.domain.Execution;
 import squote.domain.StockQuote;
 
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 import static org.knowm.xchange.currency.CurrencyPair.BTC_USDT;
@@ -29,13 +40,43 @@ import static squote.SquoteConstants.Side.SELL;
 public class BinanceAPIService {
 	protected final Logger log = LoggerFactory.getLogger(getClass());
 
+	private static final List<CurrencyPair> PRICE_PAIRS = List.of(BTC_USDT,
+			new CurrencyPair("MANA", "USDT"),
+			new CurrencyPair("DOGE", "USDT"),
+			new CurrencyPair("UNI", "USDT"),
+			new CurrencyPair("SAND", "USDT"),
+			new CurrencyPair("DOT", "USDT"),
+			new CurrencyPair("ADA", "USDT"),
+			new CurrencyPair("SHIB", "USDT"));
+	private static final List<String> QUOTE_CURRENCIES = List.of("USDT", "BUSD", "USDC", "FDUSD", "BTC", "ETH", "BNB");
+	private static final List<String> PRICE_SYMBOLS = PRICE_PAIRS.stream().map(p -> p.getBase().getCurrencyCode() + p.getCounter().getCurrencyCode()).toList();
+	private static final int TRADE_PAGE_SIZE = 1000;
+	private static final String TICKER_PRICE_URL = "https://api.binance.com/api/v3/ticker/price?symbols=";
+
+	@Value("${binance.priceCacheMillis:5000}") long priceCacheMillis = 5000;
+
+	private record Prices(Map<String, StockQuote> quotes, long receivedAt) {}
+
+	/**
+	 * Last price by symbol of the requested symbols
+	 */
+	interface TickerPriceClient {
+		Map<String, BigDecimal> getPrices(List<String> symbols) throws IOException;
+	}
+
 	private final TradeService tradeService;
-	private final MarketDataService marketDataService;
+	private final TickerPriceClient tickerPriceClient;
+	private final ReentrantLock pricesLock = new ReentrantLock();
+	private volatile Prices prices;
 
 	// for testing
 	public BinanceAPIService() {
-		tradeService = null;
-		marketDataService = null;
+		this((TradeService) null, null);
+	}
+
+	BinanceAPIService(TradeService tradeService, TickerPriceClient tickerPriceClient) {
+		this.tradeService = tradeService;
+		this.tickerPriceClient = tickerPriceClient;
 	}
 
 	public BinanceAPIService(String apiKey, String secret) {
@@ -44,52 +85,120 @@ public class BinanceAPIService {
 		exSpec.setSecretKey(secret);
 		Exchange exchange = ExchangeFactory.INSTANCE.createExchange(exSpec);
 		tradeService = exchange.getTradeService();
-		marketDataService = exchange.getMarketDataService();
+		var httpClient = HttpClient.newHttpClient();
+		tickerPriceClient = symbols -> requestTickerPrices(httpClient, symbols);
 	}
 
 	public List<Execution> getMyTrades(String code) {
-        try {
-            var trades = tradeService.getTradeHistory(new BinanceTradeHistoryParams()).getTrades();
-			log.info("My trades for {}: {}", code, trades);
-			return trades.stream().map(this::toExecution).collect(Collectors.toList());
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+		return getMyTrades(code, 0);
 	}
 
-	private Execution toExecution(Trade trade) {
-		return new Execution()
+	/**
+	 * Trades of the symbol with id after lastTradeId, 0 for the whole history, paged from the oldest.
+	 * The trade id is set to the fillIds of the execution.
+	 */
+	public List<Execution> getMyTrades(String code, long lastTradeId) {
+		var pair = toCurrencyPair(code);
+		if (pair.isEmpty()) {
+			log.warn("Skip trades of {}, unknown quote currency", code);
+			return List.of();
+		}
+
+		try {
+			var executions = new ArrayList<Execution>();
+			var params = new BinanceTradeHistoryParams(pair.get());
+			params.setLimit(TRADE_PAGE_SIZE);
+			var fromId = lastTradeId;
+			while (true) {
+				params.setStartId(String.valueOf(fromId));	// inclusive
+				var trades = tradeService.getTradeHistory(params).getUserTrades();
+				var pageFromId = fromId;
+				for (var trade : trades) {
+					var id = Long.parseLong(trade.getId());
+					if (id <= lastTradeId) continue;
+					executions.add(toExecution(code, trade));
+					fromId = Math.max(fromId, id + 1);
+				}
+				if (trades.size() < TRADE_PAGE_SIZE || fromId == pageFromId) break;
+			}
+			log.info("{} trades of {} after trade id {}", executions.size(), code, lastTradeId);
+			return executions;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private Execution toExecution(String code, UserTrade trade) {
+		var execution = new Execution()
 				.setPrice(trade.getPrice())
 				.setQuantity(trade.getOriginalAmount())
 				.setQuoteQuantity(trade.getPrice().multiply(trade.getOriginalAmount()))
 				.setSide(trade.getType() == Order.OrderType.BID ? BUY : SELL)
-				.setCode(trade.getInstrument().toString())
+				.setCode(code)
 				.setTime(trade.getTimestamp().getTime());
+		execution.setOrderId(trade.getOrderId());
+		execution.setFillIds(trade.getId());
+		return execution;
+	}
+
+	/**
+	 * Binance symbol, e.g. BTCUSDT, or a pair, e.g. BTC/USDT. Empty if the quote currency is unknown.
+	 */
+	static Optional<CurrencyPair> toCurrencyPair(String code) {
+		if (code.contains("/")) return Optional.of(new CurrencyPair(code));
+		return QUOTE_CURRENCIES.stream()
+				.filter(counter -> code.endsWith(counter) && code.length() > counter.length())
+				.findFirst()
+				.map(counter -> new CurrencyPair(code.substring(0, code.length() - counter.length()), counter));
 	}
 
+	/**
+	 * Prices of the listed pairs from one request of only those symbols, shared for priceCacheMillis.
+	 * Concurrent callers wait for one request, the last prices are returned if it fails.
+	 */
 	public Map<String, StockQuote> getAllPrices() {
-		var pairs = List.of(BTC_USDT,
-				new CurrencyPair("MANA", "USDT"),
-				new CurrencyPair("DOGE", "USDT"),
-				new CurrencyPair("UNI", "USDT"),
-				new CurrencyPair("SAND", "USDT"),
-				new CurrencyPair("DOT", "USDT"),
-				new CurrencyPair("ADA", "USDT"),
-				new CurrencyPair("SHIB", "USDT"));
-		return pairs.stream().map(pair -> {
-            try {
-                return marketDataService.getTicker(pair);
-            } catch (IOException e) {
-                log.error(e.getMessage(), e);
-				return null;
-            }
-        }).filter(Objects::nonNull)
-				.map(this::toStockQuote)
-				.collect(Collectors.toMap(StockQuote::getStockCode, v -> v));
+		var cached = prices;
+		if (cached != null && System.currentTimeMillis() - cached.receivedAt() < priceCacheMillis) return cached.quotes();
+
+		pricesLock.lock();
+		try {
+			cached = prices;
+			if (cached != null && System.currentTimeMillis() - cached.receivedAt() < priceCacheMillis) return cached.quotes();
+
+			var quotes = tickerPriceClient.getPrices(PRICE_SYMBOLS).entrySet().stream()
+					.filter(e -> PRICE_SYMBOLS.contains(e.getKey()) && e.getValue() != null)
+					.collect(Collectors.toUnmodifiableMap(Map.Entry::getKey,
+							e -> new StockQuote(e.getKey()).setPrice(e.getValue().toPlainString())));
+			prices = new Prices(quotes, System.currentTimeMillis());
+			return quotes;
+		} catch (IOException | RuntimeException e) {
+			log.error("Cannot get prices: {}", e.getMessage(), e);
+			return cached == null ? Map.of() : cached.quotes();
+		} finally {
+			pricesLock.unlock();
+		}
 	}
 
-	private StockQuote toStockQuote(Ticker ticker) {
-		return new StockQuote(ticker.getInstrument().getBase().getCurrencyCode() + ticker.getInstrument().getCounter().getCurrencyCode())
-				.setPrice(ticker.getLast().toPlainString());
+	/**
+	 * GET /api/v3/ticker/price with a symbols list, XChange only offers one symbol or all tickers
+	 */
+	private static Map<String, BigDecimal> requestTickerPrices(HttpClient httpClient, List<String> symbols) throws IOException {
+		var symbolsParam = symbols.stream().map(s -> "\"" + s + "\"").collect(Collectors.joining(",", "[", "]"));
+		var request = HttpRequest.newBuilder(URI.create(TICKER_PRICE_URL + URLEncoder.encode(symbolsParam, StandardCharsets.UTF_8)))
+				.timeout(Duration.ofSeconds(10))
+				.GET().build();
+		try {
+			var response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+			if (response.statusCode() != 200)
+				throw new IOException("Ticker price request failed " + response.statusCode() + ": " + response.body());
+
+			var prices = new HashMap<String, BigDecimal>();
+			for (var node : new ObjectMapper().readTree(response.body()))
+				prices.put(node.get("symbol").asText(), new BigDecimal(node.get("price").asText()));
+			return prices;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while requesting ticker prices", e);
+		}
 	}
 }
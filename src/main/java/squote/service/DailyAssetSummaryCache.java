@@ -0,0 +1,87 @@
+package squote.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import squote.domain.DailyAssetSummary;
+import squote.domain.repository.DailyAssetSummaryRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Latest DailyAssetSummary per symbol. Summaries change once a day, CalculateDailySummaryTask
+ * writes through with put, so reads only go to Mongo the first time a symbol is asked.
+ * Symbols come from request parameters, so the cache is bounded and a missing summary is only
+ * remembered for the codes the task calculates, which put replaces once calculated.
+ */
+@Service
+public class DailyAssetSummaryCache {
+    static final int MAX_SYMBOLS = 1000;
+
+    @Value(value = "${calculatedailysummarytask.hkCodes}") List<String> hkCodes = List.of();
+    @Value(value = "${calculatedailysummarytask.usCodes}") List<String> usCodes = List.of();
+
+    final DailyAssetSummaryRepository dailyAssetSummaryRepo;
+
+    private final Cache<String, Optional<DailyAssetSummary>> latestBySymbol = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SYMBOLS)
+            .build();   // empty for configured symbols without summary
+
+    public DailyAssetSummaryCache(DailyAssetSummaryRepository dailyAssetSummaryRepo) {
+        this.dailyAssetSummaryRepo = dailyAssetSummaryRepo;
+    }
+
+    public Optional<DailyAssetSummary> getLatest(String symbol) {
+        var summary = latestBySymbol.getIfPresent(symbol);
+        if (summary != null) return summary;
+
+        return cache(symbol, dailyAssetSummaryRepo.findTopBySymbolOrderByDateDesc(symbol));
+    }
+
+    /**
+     * Symbols without summary are not in the result. The symbols not cached are loaded in one query.
+     */
+    public Map<String, DailyAssetSummary> getLatest(Collection<String> symbols) {
+        var found = new HashMap<String, Optional<DailyAssetSummary>>();
+        var misses = new ArrayList<String>();
+        for (var symbol : symbols) {
+            var cached = latestBySymbol.getIfPresent(symbol);
+            if (cached == null) misses.add(symbol);
+            else found.put(symbol, cached);
+        }
+
+        if (!misses.isEmpty()) {
+            var loaded = dailyAssetSummaryRepo.findLatestBySymbolIn(misses).stream()
+                    .collect(Collectors.toMap(s -> s.symbol, s -> s, (a, b) -> a.date.after(b.date) ? a : b));
+            misses.forEach(symbol -> found.put(symbol, cache(symbol, Optional.ofNullable(loaded.get(symbol)))));
+        }
+
+        var summaries = new LinkedHashMap<String, DailyAssetSummary>();
+        symbols.forEach(symbol -> found.get(symbol).ifPresent(s -> summaries.put(symbol, s)));
+        return summaries;
+    }
+
+    public void put(Collection<DailyAssetSummary> summaries) {
+        summaries.forEach(s -> latestBySymbol.asMap().merge(s.symbol, Optional.of(s),
+                (cached, latest) -> cached.isPresent() && cached.get().date.after(s.date) ? cached : latest));
+    }
+
+    private Optional<DailyAssetSummary> cache(String symbol, Optional<DailyAssetSummary> summary) {
+        if (summary.isEmpty() && !isConfigured(symbol)) return summary;
+
+        var cached = latestBySymbol.asMap().putIfAbsent(symbol, summary);
+        return cached != null ? cached : summary;
+    }
+
+    private boolean isConfigured(String symbol) {
+        return hkCodes.contains(symbol) || usCodes.contains(symbol);
+    }
+}
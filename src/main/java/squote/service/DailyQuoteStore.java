@@ -0,0 +1,202 @@
+package squote.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mashape.unirest.http.exceptions.UnirestException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import squote.domain.DailyStockQuote;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToDoubleFunction;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Daily bars stored column by column, one file of primitives per column under dir/symbol.
+ * Read by memory mapping, so a scan costs no parsing. Append only bars after the last stored date.
+ * The date column is written last and decides the bar count, a partial append is truncated on the next append.
+ */
+public class DailyQuoteStore {
+    private static final Logger log = LoggerFactory.getLogger(DailyQuoteStore.class);
+
+    private enum Column { open, high, low, close, adjClose, volume, date }     // date last, the commit marker
+
+    private static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;    // fixed, the files stay readable on another platform
+
+    private static final DateTimeFormatter rangeQuoteDateFormatter = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final Path dir;
+    private final Map<String, ReentrantLock> appendLocks = new ConcurrentHashMap<>();
+
+    public DailyQuoteStore(Path dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Mapped view of the bars stored when called, later appends are not visible
+     */
+    public record Bars(String symbol, int size, LongBuffer dates, DoubleBuffer opens, DoubleBuffer highs, DoubleBuffer lows,
+                       DoubleBuffer closes, DoubleBuffer adjCloses, LongBuffer volumes) {
+        public long date(int i) { return dates.get(i); }
+        public double open(int i) { return opens.get(i); }
+        public double high(int i) { return highs.get(i); }
+        public double low(int i) { return lows.get(i); }
+        public double close(int i) { return closes.get(i); }
+        public double adjClose(int i) { return adjCloses.get(i); }
+        public long volume(int i) { return volumes.get(i); }
+
+        public double[] closeArray() {
+            var values = new double[size];
+            closes.get(0, values);
+            return values;
+        }
+
+        public DailyStockQuote quote(int i) {
+            return new DailyStockQuote(new Date(date(i)), open(i), close(i), high(i), low(i), (int) volume(i), adjClose(i));
+        }
+
+        public List<DailyStockQuote> toQuotes() {
+            var quotes = new ArrayList<DailyStockQuote>(size);
+            for (int i = 0; i < size; i++) quotes.add(quote(i));
+            return quotes;
+        }
+    }
+
+    public Bars read(String symbol) throws IOException {
+        var size = size(symbol);
+        var buffers = new EnumMap<Column, ByteBuffer>(Column.class);
+        for (var column : Column.values()) buffers.put(column, map(symbol, column, size));
+
+        return new Bars(symbol, size,
+                buffers.get(Column.date).asLongBuffer(),
+                buffers.get(Column.open).asDoubleBuffer(),
+                buffers.get(Column.high).asDoubleBuffer(),
+                buffers.get(Column.low).asDoubleBuffer(),
+                buffers.get(Column.close).asDoubleBuffer(),
+                buffers.get(Column.adjClose).asDoubleBuffer(),
+                buffers.get(Column.volume).asLongBuffer());
+    }
+
+    public int size(String symbol) throws IOException {
+        var file = columnFile(symbol, Column.date);
+        return Files.exists(file) ? (int) (Files.size(file) / Long.BYTES) : 0;
+    }
+
+    public Optional<Date> lastDate(String symbol) throws IOException {
+        var size = size(symbol);
+        if (size == 0) return Optional.empty();
+        return Optional.of(new Date(lastDateMillis(symbol, size)));
+    }
+
+    /**
+     * @return number of bars appended, bars not after the last stored date are skipped
+     */
+    public int append(String symbol, Collection<DailyStockQuote> quotes) throws IOException {
+        var lock = appendLocks.computeIfAbsent(symbol, k -> new ReentrantLock());
+        lock.lock();
+        try {
+            Files.createDirectories(dir.resolve(symbol));
+            var size = size(symbol);
+            var lastDate = size == 0 ? Long.MIN_VALUE : lastDateMillis(symbol, size);
+            var newQuotes = quotes.stream()
+                    .filter(q -> q.date().getTime() > lastDate)
+                    .sorted(Comparator.comparing(DailyStockQuote::date))
+                    .toList();
+            if (newQuotes.isEmpty()) return 0;
+
+            for (var column : Column.values())
+                writeColumn(symbol, column, size, newQuotes);
+            return newQuotes.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Import the JSON array format of resources/historical-quote
+     */
+    public int importJson(String symbol, InputStream inputStream) throws IOException {
+        var objectMapper = new ObjectMapper();
+        DailyStockQuote[] quotes = objectMapper.readValue(inputStream, DailyStockQuote[].class);
+        var appended = append(symbol, Arrays.asList(quotes));
+        log.info("Imported {} bars of {}", appended, symbol);
+        return appended;
+    }
+
+    /**
+     * Fetch the bars after the last stored date, or since fromDate for a new symbol
+     */
+    public int importFromWeb(String symbol, WebParserRestService webService, LocalDate fromDate) throws IOException, UnirestException {
+        var from = lastDate(symbol)
+                .map(d -> LocalDate.ofInstant(d.toInstant(), ZoneId.systemDefault()).plusDays(1))
+                .orElse(fromDate);
+        if (from.isAfter(LocalDate.now())) return 0;
+
+        var symbols = symbol.split("\\.");
+        var marketCode = symbols.length > 1 ? symbols[1] : "HK";
+        var quotes = webService.getQuotesInRange(symbols[0], marketCode,
+                from.format(rangeQuoteDateFormatter), LocalDate.now().plusDays(1).format(rangeQuoteDateFormatter)).getBody();
+        var appended = append(symbol, Arrays.asList(quotes));
+        log.info("Imported {} bars of {} from {}", appended, symbol, from);
+        return appended;
+    }
+
+    private long lastDateMillis(String symbol, int size) throws IOException {
+        return map(symbol, Column.date, size).getLong((size - 1) * Long.BYTES);
+    }
+
+    private void writeColumn(String symbol, Column column, int size, List<DailyStockQuote> quotes) throws IOException {
+        var buffer = ByteBuffer.allocate(quotes.size() * Long.BYTES).order(BYTE_ORDER);
+        for (var quote : quotes) {
+            switch (column) {
+                case date -> buffer.putLong(quote.date().getTime());
+                case volume -> buffer.putLong(quote.volume());
+                default -> buffer.putDouble(valueOf(column).applyAsDouble(quote));
+            }
+        }
+        buffer.flip();
+
+        try (var channel = FileChannel.open(columnFile(symbol, column), CREATE, WRITE)) {
+            channel.truncate((long) size * Long.BYTES);     // drop a partial append
+            var position = (long) size * Long.BYTES;
+            while (buffer.hasRemaining()) position += channel.write(buffer, position);
+            channel.force(false);
+        }
+    }
+
+    private static ToDoubleFunction<DailyStockQuote> valueOf(Column column) {
+        return switch (column) {
+            case open -> DailyStockQuote::open;
+            case high -> DailyStockQuote::high;
+            case low -> DailyStockQuote::low;
+            case close -> DailyStockQuote::close;
+            case adjClose -> DailyStockQuote::adjClose;
+            default -> throw new IllegalArgumentException("Not a double column: " + column);
+        };
+    }
+
+    private ByteBuffer map(String symbol, Column column, int size) throws IOException {
+        if (size == 0) return ByteBuffer.allocate(0).order(BYTE_ORDER);
+        try (var channel = FileChannel.open(columnFile(symbol, column), READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, (long) size * Long.BYTES).order(BYTE_ORDER);
+        }
+    }
+
+    private Path columnFile(String symbol, Column column) {
+        return dir.resolve(symbol).resolve(column + ".col");
+    }
+}
@@ -13,7 +13,14 @@ import java.text.SimpleDateFormat;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
 
 import static squote.SquoteConstants.Side.BUY;
 import static squote.SquoteConstants.Side.SELL;
@@ -22,12 +29,15 @@ public class FutuAPIClient implements FTSPI_Trd, FTSPI_Qot, FTSPI_Conn, IBrokerA
 	protected final Logger log = LoggerFactory.getLogger(getClass());
 	private final FTAPI_Conn_Trd futuConnTrd;
 	private final FTAPI_Conn_Qot futuConnQot;
-	private long errorCode = -1;
-	private final Map<Integer, Object> resultMap = new ConcurrentHashMap<>();
+	private volatile long errorCode = -1;
+	private final PendingResults trdPendingResults = new PendingResults();
+	private final PendingResults qotPendingResults = new PendingResults();
 	private final FutuClientConfig clientConfig;
+	private final List<TradeUpdateListener> tradeUpdateListeners = new CopyOnWriteArrayList<>();
 
 	int timeoutSeconds = 30;
-	private int onInitConnectCount = 0;
+	private volatile int onInitConnectCount = 0;
+	private volatile boolean tradeUnlocked = false;
 	List<Integer> pendingOrderStatuses = List.of(
 			TrdCommon.OrderStatus.OrderStatus_Unknown_VALUE,
 			TrdCommon.OrderStatus.OrderStatus_Unsubmitted_VALUE,
@@ -88,31 +98,70 @@ public class FutuAPIClient implements FTSPI_Trd, FTSPI_Qot, FTSPI_Conn, IBrokerA
 	@Override
 	public void onDisconnect(FTAPI_Conn client, long errorCode) {
 		this.errorCode = errorCode;
+		this.tradeUnlocked = false;
 		log.info("onDisconnect: code={}", errorCode);
+		tradeUpdateListeners.forEach(TradeUpdateListener::onConnectionLost);
+	}
+
+	@Override
+	public void onReply_SubAccPush(FTAPI_Conn client, int seq, TrdSubAccPush.Response response) {
+		if (response.getRetType() != 0) {
+			log.error("SubAccPush failed: {}", response.getRetMsg());
+			complete(client, seq, false);
+			return;
+		}
+
+		log.info("Seq[{}] SubAccPush result={}", seq, response.getRetMsg());
+		complete(client, seq, true);
+	}
+
+	@Override
+	public void onPush_UpdateOrder(FTAPI_Conn client, TrdUpdateOrder.Response response) {
+		if (response.getRetType() != 0) {
+			log.error("UpdateOrder push failed: {}", response.getRetMsg());
+			return;
+		}
+
+		var order = response.getS2C().getOrder();
+		var pending = pendingOrderStatuses.contains(order.getOrderStatus());
+		tradeUpdateListeners.forEach(l -> l.onOrderUpdate(toOrder(order), pending));
+	}
+
+	@Override
+	public void onPush_UpdateOrderFill(FTAPI_Conn client, TrdUpdateOrderFill.Response response) {
+		if (response.getRetType() != 0) {
+			log.error("UpdateOrderFill push failed: {}", response.getRetMsg());
+			return;
+		}
+
+		var fill = toExecution(response.getS2C().getOrderFill());
+		tradeUpdateListeners.forEach(l -> l.onFill(fill));
 	}
 
 	@Override
 	public void onReply_GetAccList(FTAPI_Conn client, int seq, TrdGetAccList.Response response) {
 		if (response.getRetType() != 0) {
 			log.error("GetAccList failed: {}", response.getRetMsg());
-			resultMap.put(seq, null);
+			complete(client, seq, null);
+			return;
 		}
 
 		var accountList = response.getS2C().getAccListList();
 		log.info("{} account returned", accountList.size());
-		resultMap.put(seq, accountList);
+		complete(client, seq, accountList);
 	}
 
 	@Override
 	public void onReply_GetOrderFillList(FTAPI_Conn client, int seq, TrdGetOrderFillList.Response response) {
 		if (response.getRetType() != 0) {
 			log.error("TrdGetOrderFillList failed: {}", response.getRetMsg());
-			resultMap.put(seq, null);
+			complete(client, seq, null);
+			return;
 		}
 
 		var executions = response.getS2C().getOrderFillListList();
 		log.info("Seq[{}] {} order returned", seq, executions.size());
-		resultMap.put(seq, executions);
+		complete(client, seq, executions);
 	}
 
 	public void close() {
@@ -124,23 +173,25 @@ public class FutuAPIClient implements FTSPI_Trd, FTSPI_Qot, FTSPI_Conn, IBrokerA
 	public void onReply_GetHistoryOrderFillList(FTAPI_Conn client, int seq, TrdGetHistoryOrderFillList.Response response) {
 		if (response.getRetType() != 0) {
 			log.error("GetHistoryOrderFillList failed: {}", response.getRetMsg());
-			resultMap.put(seq, null);
+			complete(client, seq, null);
+			return;
 		}
 		var executions = response.getS2C().getOrderFillListList();
 		log.info("Seq[{}] {} execution returned", seq, executions.size());
-		resultMap.put(seq, executions);
+		complete(client, seq, executions);
 	}
 
 	@Override
 	public void onReply_GetOrderList(FTAPI_Conn client, int seq, TrdGetOrderList.Response response) {
 		if (response.getRetType() != 0) {
 			log.error("TrdGetOrderList failed: {}", response.getRetMsg());
-			resultMap.put(seq, null);
+			complete(client, seq, null);
+			return;
 		}
 
 		var orders = response.getS2C().getOrderListList();
 		log.info("Seq[{}] {} orders returned", seq, orders.size());
-		resultMap.put(seq, orders);
+		complete(client, seq, orders);
 	}
 
 	@Override
@@ -149,7 +200,7 @@ public class FutuAPIClient implements FTSPI_Trd, FTSPI_Qot, FTSPI_Conn, IBrokerA
 		if (response.getRetType() != 0) {
 			log.error("TrdPlaceOrder failed: {}", response.getRetMsg());
 		}
-		resultMap.put(seq, result);
+		complete(client, seq, result);
 	}
 
 	@Override
@@ -158,49 +209,65 @@ public class FutuAPIClient implements FTSPI_Trd, FTSPI_Qot, FTSPI_Conn, IBrokerA
 		if (response.getRetType() != 0) {
 			log.error("TrdModifyOrder failed: {}", response.getRetMsg());
 		}
-		resultMap.put(seq, result);
+		complete(client, seq, result);
 	}
 
 	@Override
 	public void onReply_UnlockTrade(FTAPI_Conn client, int seq, TrdUnlockTrade.Response response) {
 		if (response.getRetType() != 0) {
 			log.error("UnlockTrade failed: {}", response.getRetMsg());
-			resultMap.put(seq, false);
+			complete(client, seq, false);
+			return;
 		}
 
 		log.info("Seq[{}] unlock trade result={}", seq, response.getRetMsg());
-		resultMap.put(seq, true);
+		complete(client, seq, true);
 	}
 
 	@Override
 	public void onReply_GetSecuritySnapshot(FTAPI_Conn client, int seq, QotGetSecuritySnapshot.Response response) {
 		if (response.getRetType() != 0) {
 			log.error("QotGetSecuritySnapshot failed: {}", response.getRetMsg());
-			resultMap.put(seq, null);
+			complete(client, seq, null);
+			return;
 		}
 
 		log.info("Seq[{}] QotGetSecuritySnapshot result={}", seq, response.getRetMsg());
-		resultMap.put(seq, response.getS2C().getSnapshotList(0));
+		complete(client, seq, response.getS2C().getSnapshotListList());
 	}
 
 	public boolean unlockTrade(String code) {
+		if (tradeUnlocked && isConnected()) {
+			log.info("Trade already unlocked");
+			return true;
+		}
+
 		TrdUnlockTrade.C2S c2s = TrdUnlockTrade.C2S.newBuilder()
 				.setPwdMD5(code)
 				.setUnlock(true)
 				.setSecurityFirm(TrdCommon.SecurityFirm.SecurityFirm_FutuSecurities_VALUE)
 				.build();
 		TrdUnlockTrade.Request req = TrdUnlockTrade.Request.newBuilder().setC2S(c2s).build();
-		int seq = futuConnTrd.unlockTrade(req);
-		log.info("Seq[{}] Send unlockTrade", seq);
+		tradeUnlocked = Boolean.TRUE.equals(getResult(futuConnTrd, () -> futuConnTrd.unlockTrade(req), "unlockTrade"));
+		return tradeUnlocked;
+	}
 
-		return (boolean) getResult(seq);
+	@Override
+	public boolean subscribeTradeUpdates(TradeUpdateListener listener) {
+		var c2s = TrdSubAccPush.C2S.newBuilder().addAccIDList(clientConfig.accountId()).build();
+		var req = TrdSubAccPush.Request.newBuilder().setC2S(c2s).build();
+		var subscribed = Boolean.TRUE.equals(getResult(futuConnTrd, () -> futuConnTrd.subAccPush(req), "subAccPush"));
+		if (subscribed) tradeUpdateListeners.add(listener);
+		return subscribed;
 	}
 
-	public Map<String, Execution> getStockTodayExecutions(Market market) {
-		int seq = sendGetTodayOrderFillRequest(toTrdMarket(market));
-		log.info("Seq[{}] Send getTodayOrderFillList", seq);
+	@Override
+	public void unsubscribeTradeUpdates(TradeUpdateListener listener) {
+		tradeUpdateListeners.remove(listener);
+	}
 
-		var result = (List<TrdCommon.OrderFill>) getResult(seq);
+	public Map<String, Execution> getStockTodayExecutions(Market market) {
+		var result = (List<TrdCommon.OrderFill>) getResult(futuConnTrd, () -> sendGetTodayOrderFillRequest(toTrdMarket(market)), "getTodayOrderFillList");
 		var executions = new HashMap<String, Execution>();
 		for (var exec : Objects.requireNonNull(result))
 			executions.merge(Long.toString(exec.getOrderID()),
@@ -239,10 +306,8 @@ public class FutuAPIClient implements FTSPI_Trd, FTSPI_Qot, FTSPI_Conn, IBrokerA
 	@Override
 	public Map<String, Execution> getHistoricalExecutions(Date fromDate, Market market) {
 		fromDate = new Date(fromDate.getTime() + 1000); // +1 second as Futu filter execution by >= fromDate
-		int seq = sendGetHistoryOrderFillRequest(fromDate, toTrdMarket(market));
-		log.info("Seq[{}] Send getHistoryOrderFillList", seq);
-
-		var result = (List<TrdCommon.OrderFill>) getResult(seq);
+		var from = fromDate;
+		var result = (List<TrdCommon.OrderFill>) getResult(futuConnTrd, () -> sendGetHistoryOrderFillRequest(from, toTrdMarket(market)), "getHistoryOrderFillList");
 		var executions = new HashMap<String, Execution>();
 		for (var exec : Objects.requireNonNull(result))
 			executions.merge(Long.toString(exec.getOrderID()),
@@ -252,39 +317,42 @@ public class FutuAPIClient implements FTSPI_Trd, FTSPI_Qot, FTSPI_Conn, IBrokerA
 	}
 
 	public PlaceOrderResponse placeOrder(SquoteConstants.Side side, String code, int quantity, double price) {
-		int seq = placeOrderRequest(side, code, quantity, price);
-		log.info("Seq[{}] Send placeOrder", seq);
-		return (PlaceOrderResponse) getResult(seq);
+		return await(placeOrderAsync(side, code, quantity, price), "placeOrder");
+	}
+
+	public CompletableFuture<PlaceOrderResponse> placeOrderAsync(SquoteConstants.Side side, String code, int quantity, double price) {
+		return resultAsync(futuConnTrd, () -> placeOrderRequest(side, code, quantity, price), "placeOrder");
 	}
 
 	public CancelOrderResponse cancelOrder(long orderId, String code) {
+		return await(cancelOrderAsync(orderId, code), "cancelOrder");
+	}
+
+	public CompletableFuture<CancelOrderResponse> cancelOrderAsync(long orderId, String code) {
 		var market = Market.getMarketByStockCode(code);
-		int seq = cancelOrderRequest(orderId, toTrdMarket(market));
-		log.info("Seq[{}] Send cancelOrder", seq);
-		return (CancelOrderResponse) getResult(seq);
+		return resultAsync(futuConnTrd, () -> cancelOrderRequest(orderId, toTrdMarket(market)), "cancelOrder");
 	}
 
 	@Override
 	public List<Order> getPendingOrders(Market market) {
-		int seq = sendGetOrderRequest(toTrdMarket(market));
-		log.info("Seq[{}] Send getPendingOrders", seq);
+		return Objects.requireNonNullElse(await(getPendingOrdersAsync(market), "getPendingOrders"), List.of());
+	}
 
-		var result = (List<TrdCommon.Order>) getResult(seq);
-		if (result == null) return Collections.emptyList();
-		return result.stream()
-				.peek(o -> log.info("order received [{}]", o.toString().replaceAll("\n", " ")))
-				.filter(o -> pendingOrderStatuses.contains(o.getOrderStatus()))
-				.map(this::toOrder)
-                .filter(o -> Market.getMarketByStockCode(o.code()) == market) // futu return orders regarding market
-                .toList();
+	public CompletableFuture<List<Order>> getPendingOrdersAsync(Market market) {
+		return this.<List<TrdCommon.Order>>resultAsync(futuConnTrd, () -> sendGetOrderRequest(toTrdMarket(market)), "getPendingOrders").thenApply(result -> {
+			if (result == null) return Collections.emptyList();
+			return result.stream()
+					.peek(o -> log.info("order received [{}]", o.toString().replaceAll("\n", " ")))
+					.filter(o -> pendingOrderStatuses.contains(o.getOrderStatus()))
+					.map(this::toOrder)
+					.filter(o -> Market.getMarketByStockCode(o.code()) == market) // futu return orders regarding market
+					.toList();
+		});
 	}
 
     public Map<Currency, Double> getAvailableFunds() {
-        int seq = sendTrdGetFunds();
-        log.info("Seq[{}] sendTrdGetFunds", seq);
-
         var funds = new HashMap<Currency, Double>();
-        var result = (TrdCommon.Funds) getResult(seq);
+        var result = (TrdCommon.Funds) getResult(futuConnTrd, this::sendTrdGetFunds, "getFunds");
         if (result == null) return funds;
 
         result.getCashInfoListList()
@@ -306,12 +374,13 @@ public class FutuAPIClient implements FTSPI_Trd, FTSPI_Qot, FTSPI_Conn, IBrokerA
     public void onReply_GetFunds(FTAPI_Conn client, int seq, TrdGetFunds.Response response) {
         if (response.getRetType() != 0) {
             log.error("TrdGetFunds failed: {}", response.getRetMsg());
-            resultMap.put(seq, null);
+            complete(client, seq, null);
+            return;
         }
 
         var funds = response.getS2C().getFunds();
         log.info("Funds returned");
-        resultMap.put(seq, funds);
+        complete(client, seq, funds);
     }
 
     private int sendTrdGetFunds() {
@@ -329,17 +398,47 @@ public class FutuAPIClient implements FTSPI_Trd, FTSPI_Qot, FTSPI_Conn, IBrokerA
     }
 
 	public StockQuote getStockQuote(String code) {
-		int seq = requestQuoteSnapshot(code);
-		log.info("Seq[{}] Send requestQuoteSnapshot", seq);
+		return await(getStockQuoteAsync(code), "getStockQuote");
+	}
 
-		var result = (QotGetSecuritySnapshot.Snapshot) getResult(seq);
-		if (result == null) return null;
+	public CompletableFuture<StockQuote> getStockQuoteAsync(String code) {
+		return getStockQuotesAsync(List.of(code)).thenApply(quotes -> quotes.get(code));
+	}
 
+	/**
+	 * One snapshot request per market
+	 */
+	@Override
+	public Map<String, StockQuote> getStockQuotes(Collection<String> codes) {
+		var futures = codes.stream().distinct()
+				.collect(Collectors.groupingBy(Market::getMarketByStockCode))
+				.values().stream()
+				.map(this::getStockQuotesAsync)
+				.toList();
+
+		var quotes = new HashMap<String, StockQuote>();
+		futures.forEach(f -> Optional.ofNullable(await(f, "getStockQuotes")).ifPresent(quotes::putAll));
+		return quotes;
+	}
+
+	public CompletableFuture<Map<String, StockQuote>> getStockQuotesAsync(List<String> codes) {
+		var codeByFutuCode = codes.stream().collect(Collectors.toMap(this::toFutuCode, c -> c, (a, b) -> a));
+		return this.<List<QotGetSecuritySnapshot.Snapshot>>resultAsync(futuConnQot, () -> requestQuoteSnapshot(codes), "requestQuoteSnapshot for " + codes).thenApply(result -> {
+			if (result == null) return Map.of();
+
+			return result.stream()
+					.filter(s -> codeByFutuCode.containsKey(s.getBasic().getSecurity().getCode()))
+					.collect(Collectors.toMap(s -> codeByFutuCode.get(s.getBasic().getSecurity().getCode()),
+							s -> toStockQuote(codeByFutuCode.get(s.getBasic().getSecurity().getCode()), s)));
+		});
+	}
+
+	private StockQuote toStockQuote(String code, QotGetSecuritySnapshot.Snapshot snapshot) {
 		var quote = new StockQuote(code);
-		quote.setPrice(String.valueOf(result.getBasic().getCurPrice()));
-		quote.setHigh(String.valueOf(result.getBasic().getHighPrice()));
-		quote.setLow(String.valueOf(result.getBasic().getLowPrice()));
-		quote.setLastUpdate(result.getBasic().getUpdateTime());
+		quote.setPrice(String.valueOf(snapshot.getBasic().getCurPrice()));
+		quote.setHigh(String.valueOf(snapshot.getBasic().getHighPrice()));
+		quote.setLow(String.valueOf(snapshot.getBasic().getLowPrice()));
+		quote.setLastUpdate(snapshot.getBasic().getUpdateTime());
 		return quote;
 	}
 
@@ -446,10 +545,7 @@ public class FutuAPIClient implements FTSPI_Trd, FTSPI_Qot, FTSPI_Conn, IBrokerA
 		// user id is mandatory but it can be any value
 		TrdGetAccList.C2S c2s = TrdGetAccList.C2S.newBuilder().setUserID(1).build();
         TrdGetAccList.Request request = TrdGetAccList.Request.newBuilder().setC2S(c2s).build();
-        int seq = futuConnTrd.getAccList(request);
-		log.info("Seq[{}] Send getAccList", seq);
-
-		var result = (List<TrdCommon.TrdAcc>) getResult(seq);
+		var result = (List<TrdCommon.TrdAcc>) getResult(futuConnTrd, () -> futuConnTrd.getAccList(request), "getAccList");
 		return result.stream().filter(a ->
 				(
 						a.getAccType() == TrdCommon.TrdAccType.TrdAccType_Margin_VALUE || a.getAccType() == TrdCommon.TrdAccType.TrdAccType_Cash_VALUE)
@@ -495,13 +591,16 @@ public class FutuAPIClient implements FTSPI_Trd, FTSPI_Qot, FTSPI_Conn, IBrokerA
 		return futuConnTrd.placeOrder(req);
 	}
 
-	private int requestQuoteSnapshot(String code) {
-		QotCommon.Security sec = QotCommon.Security.newBuilder()
-				.setMarket(QotCommon.QotMarket.QotMarket_HK_Security_VALUE)
-				.setCode(String.format("%05d", Integer.parseInt(code)))
-				.build();
+	private int requestQuoteSnapshot(List<String> codes) {
+		var qotMarket = switch (Market.getMarketByStockCode(codes.getFirst())) {
+			case HK -> QotCommon.QotMarket.QotMarket_HK_Security_VALUE;
+			case US -> QotCommon.QotMarket.QotMarket_US_Security_VALUE;
+		};
+		var securities = codes.stream()
+				.map(c -> QotCommon.Security.newBuilder().setMarket(qotMarket).setCode(toFutuCode(c)).build())
+				.toList();
 		QotGetSecuritySnapshot.C2S c2s = QotGetSecuritySnapshot.C2S.newBuilder()
-				.addSecurityList(sec)
+				.addAllSecurityList(securities)
 				.build();
 		QotGetSecuritySnapshot.Request req = QotGetSecuritySnapshot.Request.newBuilder().setC2S(c2s).build();
 		return futuConnQot.getSecuritySnapshot(req);
@@ -536,23 +635,69 @@ public class FutuAPIClient implements FTSPI_Trd, FTSPI_Qot, FTSPI_Conn, IBrokerA
 		return futuConnTrd.getOrderList(req);
 	}
 
-	private Object getResult(int seq) {
-		Instant timeout = Instant.now().plusSeconds(timeoutSeconds);
-		while (timeout.isAfter(Instant.now())) {
-			var result = resultMap.get(seq);
-			if (result != null) {
-				return resultMap.remove(seq);
-			}
+	/**
+	 * Each connection numbers its own seqs, so the results waiting for a reply are kept per connection
+	 */
+	private record PendingResults(ReentrantLock lock, Map<Integer, CompletableFuture<Object>> futures) {
+		PendingResults() {
+			this(new ReentrantLock(), new ConcurrentHashMap<>());
+		}
+	}
 
-			try {
-				Thread.sleep(500);
-			} catch (InterruptedException e) {
-				log.error("Seq[{}] unexpected exception", seq, e);
-			}
+	private PendingResults pendingResults(FTAPI_Conn conn) {
+		return conn == futuConnQot ? qotPendingResults : trdPendingResults;
+	}
+
+	/**
+	 * Send under the connection lock, so the future is registered before the reply of the seq is looked up
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> CompletableFuture<T> resultAsync(FTAPI_Conn conn, IntSupplier request, String operation) {
+		var pending = pendingResults(conn);
+		var future = new CompletableFuture<Object>();
+		int seq;
+		pending.lock().lock();
+		try {
+			seq = request.getAsInt();
+			pending.futures().put(seq, future);
+		} finally {
+			pending.lock().unlock();
+		}
+		log.info("Seq[{}] Send {}", seq, operation);
+
+		return future.orTimeout(timeoutSeconds, TimeUnit.SECONDS)
+				.whenComplete((result, e) -> pending.futures().remove(seq, future))
+				.thenApply(result -> (T) result);
+	}
+
+	private void complete(FTAPI_Conn conn, int seq, Object result) {
+		var pending = pendingResults(conn);
+		CompletableFuture<Object> future;
+		pending.lock().lock();	// wait for the sender registering the seq
+		try {
+			future = pending.futures().get(seq);
+		} finally {
+			pending.lock().unlock();
 		}
 
-		log.error("Seq[{}] Cannot get result", seq);
-		return null;
+		if (future == null) {
+			log.warn("Seq[{}] reply nobody is waiting for, dropped", seq);
+			return;
+		}
+		future.complete(result);
+	}
+
+	private <T> T await(CompletableFuture<T> future, String operation) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			log.error("{} cannot get result", operation, e.getCause());
+			return null;
+		}
+	}
+
+	private Object getResult(FTAPI_Conn conn, IntSupplier request, String operation) {
+		return await(resultAsync(conn, request, operation), operation);
 	}
 
 	public List<FlowSummaryInfo> getFlowSummary(Date date, Market market) {
@@ -570,23 +715,22 @@ public class FutuAPIClient implements FTSPI_Trd, FTSPI_Qot, FTSPI_Conn, IBrokerA
 		var c2s = TrdFlowSummary.C2S.newBuilder().setHeader(header)
 				.setClearingDate(dateStr).build();
 		var req = TrdFlowSummary.Request.newBuilder().setC2S(c2s).build();
-		int seqNo = futuConnTrd.getFlowSummary(req);
-		log.info("Send TrdFlowSummary for market {} on date {}: seqNo={}", market, dateStr, seqNo);
-		return (List<FlowSummaryInfo>) getResult(seqNo);
+		return (List<FlowSummaryInfo>) getResult(futuConnTrd, () -> futuConnTrd.getFlowSummary(req), "TrdFlowSummary for " + market + " on " + dateStr);
 	}
 
 	@Override
 	public void onReply_GetFlowSummary(FTAPI_Conn client, int seq, TrdFlowSummary.Response response) {
 		if (response.getRetType() != 0) {
 			log.error("GetFlowSummary failed: {}", response.getRetMsg());
-			resultMap.put(seq, new ArrayList<FlowSummaryInfo>());
+			complete(client, seq, new ArrayList<FlowSummaryInfo>());
+			return;
 		}
 
 		var flows = response.getS2C().getFlowSummaryInfoListList().stream()
 				.map(this::mapToFlowSummaryInfo)
 				.toList();
 		log.info("{} flow returned", flows.size());
-		resultMap.put(seq, flows);
+		complete(client, seq, flows);
 	}
 
 	private FlowSummaryInfo mapToFlowSummaryInfo(TrdFlowSummary.FlowSummaryInfo flowSummaryInfo) {
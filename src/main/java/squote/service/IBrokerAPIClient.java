@@ -6,14 +6,29 @@ import squote.domain.Market;
 import squote.domain.Order;
 import squote.domain.StockQuote;
 
+import java.util.Collection;
 import java.util.Currency;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public interface IBrokerAPIClient {
     List<Order> getPendingOrders(Market market);
     StockQuote getStockQuote(String code);
+
+    /**
+     * Get quotes of multiple stocks, implementations may batch them into fewer requests
+     * @return map of quotes keyed by code, codes without quote are absent
+     */
+    default Map<String, StockQuote> getStockQuotes(Collection<String> codes) {
+        var quotes = new HashMap<String, StockQuote>();
+        for (var code : codes) {
+            var quote = getStockQuote(code);
+            if (quote != null) quotes.put(code, quote);
+        }
+        return quotes;
+    }
     Map<String, Execution> getStockTodayExecutions(Market market);
     PlaceOrderResponse placeOrder(SquoteConstants.Side side, String code, int quantity, double price);
     CancelOrderResponse cancelOrder(long orderId, String code);
@@ -37,6 +52,21 @@ public interface IBrokerAPIClient {
      */
     Map<String, Execution> getHistoricalExecutions(Date fromDate, Market market);
 
+    /**
+     * Subscribe to order status and fill events pushed by the broker
+     * @param listener receives the pushed events, possibly on a broker callback thread
+     * @return false if the broker does not push trade updates or the subscription failed
+     */
+    default boolean subscribeTradeUpdates(TradeUpdateListener listener) { return false; }
+
+    default void unsubscribeTradeUpdates(TradeUpdateListener listener) {}
+
+    interface TradeUpdateListener {
+        void onOrderUpdate(Order order, boolean pending);
+        void onFill(Execution fill);
+        default void onConnectionLost() {}
+    }
+
     record PlaceOrderResponse(long orderId, long errorCode, String message) {}
     record CancelOrderResponse(long errorCode, String message) {}
     Map<Currency, Double> getAvailableFunds();
@@ -0,0 +1,298 @@
+package squote.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import squote.domain.Market;
+import squote.domain.StockQuote;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * One entry point for HK and US stock quotes.
+ * Sources of a market are tried from the lowest average latency. A source not answering within hedgeDelayMillis
+ * is hedged by the next one, a failed or partial answer falls back to the next one at once.
+ * The freshest quote of each symbol is kept and served within cacheMillis. Only display callers get it as the
+ * last resort when all sources fail, the trading path gets no quote and skips the symbol.
+ */
+@Service
+public class QuoteService {
+    private static final Logger log = LoggerFactory.getLogger(QuoteService.class);
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    @Value("${quoteservice.hedgeDelayMillis:300}") long hedgeDelayMillis = 300;
+    @Value("${quoteservice.timeoutMillis:5000}") long timeoutMillis = 5000;
+    @Value("${quoteservice.cacheMillis:1000}") long cacheMillis = 1000;
+    @Value("${quoteservice.indexCacheMillis:5000}") long indexCacheMillis = 5000;
+
+    /**
+     * Blocking fetch, called on a virtual thread. Codes not found are left out of the result.
+     */
+    public interface QuoteSource {
+        String name();
+        Map<String, StockQuote> fetch(List<String> codes) throws Exception;
+    }
+
+    public record SourceStats(String source, long requests, long failures, long timeouts, double avgLatencyMillis, long lastSuccessMillis) {}
+
+    private record Entry(StockQuote quote, String source, long receivedAt) {}
+
+    private record IndexQuotes(List<StockQuote> quotes, long receivedAt) {}
+
+    private static class Stats {
+        final LongAdder requests = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder timeouts = new LongAdder();
+        volatile double avgLatencyMillis;
+        volatile long lastSuccessMillis;
+
+        synchronized void addLatency(long millis) {     // no blocking inside
+            avgLatencyMillis = avgLatencyMillis == 0 ? millis : avgLatencyMillis + LATENCY_WEIGHT * (millis - avgLatencyMillis);
+        }
+    }
+
+    private final Map<Market, List<QuoteSource>> sourcesByMarket = new EnumMap<>(Market.class);
+    private final Map<String, Stats> statsBySource = new ConcurrentHashMap<>();
+    private final Map<String, Entry> latestQuotes = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("quote-source-", 0).factory());
+    private final WebParserRestService webParserRestService;
+    private final ReentrantLock indexLock = new ReentrantLock();
+    private volatile IndexQuotes indexQuotes;
+
+    public QuoteService(YahooFinanceService yahooFinanceService, TiingoAPIClient tiingoAPIClient, WebParserRestService webParserRestService) {
+        this.webParserRestService = webParserRestService;
+        sourcesByMarket.put(Market.US, List.of(yahooSource(yahooFinanceService), tiingoSource(tiingoAPIClient)));
+        sourcesByMarket.put(Market.HK, List.of(webParserSource(webParserRestService)));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public Map<String, StockQuote> getQuotes(Collection<String> codes) {
+        return getQuotes(codes, null, cacheMillis, false);
+    }
+
+    /**
+     * @param brokerAPIClient tried first for HK codes, null to skip
+     * @return quotes by the requested codes, codes without any quote are left out
+     */
+    public Map<String, StockQuote> getQuotes(Collection<String> codes, IBrokerAPIClient brokerAPIClient) {
+        return getQuotes(codes, brokerAPIClient, cacheMillis, false);
+    }
+
+    /**
+     * For display, quotes fetched by any caller within maxAgeMillis are served without a remote call.
+     * The last quote of any age is served if no source answers.
+     */
+    public Map<String, StockQuote> getQuotes(Collection<String> codes, long maxAgeMillis) {
+        return getQuotes(codes, null, maxAgeMillis, true);
+    }
+
+    private Map<String, StockQuote> getQuotes(Collection<String> codes, IBrokerAPIClient brokerAPIClient, long maxAgeMillis, boolean lastQuoteIfNoAnswer) {
+        var now = System.currentTimeMillis();
+        var quotes = new HashMap<String, StockQuote>();
+        var codesByMarket = new EnumMap<Market, List<String>>(Market.class);
+        for (var code : new LinkedHashSet<>(codes)) {
+            var entry = latestQuotes.get(code);
+            if (entry != null && now - entry.receivedAt() < maxAgeMillis) quotes.put(code, entry.quote());
+            else codesByMarket.computeIfAbsent(Market.getMarketByStockCode(code), k -> new ArrayList<>()).add(code);
+        }
+
+        var fetches = codesByMarket.entrySet().stream()
+                .map(e -> race(sources(e.getKey(), brokerAPIClient), e.getValue()))
+                .toList();
+        fetches.forEach(f -> quotes.putAll(f.join()));
+        if (!lastQuoteIfNoAnswer) return quotes;
+
+        codesByMarket.values().stream().flatMap(List::stream)
+                .filter(code -> !quotes.containsKey(code) && latestQuotes.containsKey(code))
+                .forEach(code -> {
+                    var entry = latestQuotes.get(code);
+                    log.warn("No source answered for {}, use quote from {} of age {}ms", code, entry.source(), now - entry.receivedAt());
+                    quotes.put(code, entry.quote());
+                });
+        return quotes;
+    }
+
+    public Optional<StockQuote> getQuote(String code, IBrokerAPIClient brokerAPIClient) {
+        return Optional.ofNullable(getQuotes(List.of(code), brokerAPIClient).get(code));
+    }
+
+    /**
+     * Index quotes shared by all callers for indexCacheMillis, concurrent callers wait for one fetch.
+     * The last index quotes are returned if the fetch fails.
+     */
+    public List<StockQuote> getIndexQuotes() {
+        var cached = indexQuotes;
+        if (cached != null && System.currentTimeMillis() - cached.receivedAt() < indexCacheMillis) return cached.quotes();
+
+        indexLock.lock();
+        try {
+            cached = indexQuotes;
+            if (cached != null && System.currentTimeMillis() - cached.receivedAt() < indexCacheMillis) return cached.quotes();
+
+            var body = webParserRestService.getIndexQuotes().get(timeoutMillis, MILLISECONDS).getBody();
+            indexQuotes = new IndexQuotes(Arrays.asList(body), System.currentTimeMillis());
+            return indexQuotes.quotes();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return cached == null ? List.of() : cached.quotes();
+        } catch (Exception e) {
+            log.warn("Cannot get index quotes: {}", e.toString());
+            return cached == null ? List.of() : cached.quotes();
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    public Optional<Duration> getQuoteAge(String code) {
+        return Optional.ofNullable(latestQuotes.get(code))
+                .map(e -> Duration.ofMillis(System.currentTimeMillis() - e.receivedAt()));
+    }
+
+    public List<SourceStats> getSourceStats() {
+        return statsBySource.entrySet().stream()
+                .map(e -> new SourceStats(e.getKey(), e.getValue().requests.sum(), e.getValue().failures.sum(),
+                        e.getValue().timeouts.sum(), e.getValue().avgLatencyMillis, e.getValue().lastSuccessMillis))
+                .sorted(Comparator.comparing(SourceStats::source))
+                .toList();
+    }
+
+    private List<QuoteSource> sources(Market market, IBrokerAPIClient brokerAPIClient) {
+        var sources = new ArrayList<>(sourcesByMarket.get(market));
+        sources.sort(Comparator.comparingDouble(s -> stats(s.name()).avgLatencyMillis));
+        if (brokerAPIClient != null && market == Market.HK) sources.addFirst(brokerSource(brokerAPIClient));
+        return sources;
+    }
+
+    /**
+     * Completes when all codes are quoted, all sources are done or timeoutMillis passed, with the quotes got so far
+     */
+    private CompletableFuture<Map<String, StockQuote>> race(List<QuoteSource> sources, List<String> codes) {
+        if (sources.isEmpty()) return CompletableFuture.completedFuture(Map.of());
+
+        var quotes = new ConcurrentHashMap<String, StockQuote>();
+        var done = new CompletableFuture<Map<String, StockQuote>>();
+        var next = new AtomicInteger();
+        var running = new AtomicInteger();
+
+        var launcher = new Runnable() {
+            @Override
+            public void run() {
+                if (done.isDone()) return;
+                var i = next.getAndIncrement();
+                if (i >= sources.size()) return;
+
+                var source = sources.get(i);
+                var missing = codes.stream().filter(c -> !quotes.containsKey(c)).toList();
+                running.incrementAndGet();
+                fetch(source, missing).whenComplete((result, e) -> {
+                    if (result != null) result.forEach(quotes::putIfAbsent);
+                    running.decrementAndGet();
+                    if (quotes.keySet().containsAll(codes)) done.complete(quotes);
+                    else run();     // fall back
+                    if (next.get() >= sources.size() && running.get() == 0) done.complete(quotes);
+                });
+                if (i + 1 < sources.size())
+                    CompletableFuture.delayedExecutor(hedgeDelayMillis, MILLISECONDS, executor).execute(this);
+            }
+        };
+        launcher.run();
+        return done.completeOnTimeout(quotes, timeoutMillis, MILLISECONDS)
+                .thenApply(Map::copyOf);
+    }
+
+    private CompletableFuture<Map<String, StockQuote>> fetch(QuoteSource source, List<String> codes) {
+        var stats = stats(source.name());
+        stats.requests.increment();
+        var start = System.currentTimeMillis();
+        return CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return source.fetch(codes);
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                }, executor)
+                .orTimeout(timeoutMillis, MILLISECONDS)
+                .handle((result, e) -> {
+                    var latency = System.currentTimeMillis() - start;
+                    if (e != null) {
+                        var timeout = e instanceof TimeoutException || e.getCause() instanceof TimeoutException;
+                        (timeout ? stats.timeouts : stats.failures).increment();
+                        stats.addLatency(timeoutMillis);    // push it behind the other sources
+                        log.warn("Quote source {} failed for {} in {}ms: {}", source.name(), codes, latency, e.toString());
+                        return Map.<String, StockQuote>of();
+                    }
+
+                    stats.addLatency(latency);
+                    stats.lastSuccessMillis = System.currentTimeMillis();
+                    var quotes = result.entrySet().stream()
+                            .filter(q -> q.getValue() != null && q.getValue().hasPrice())
+                            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+                    quotes.forEach((code, quote) -> latestQuotes.put(code, new Entry(quote, source.name(), stats.lastSuccessMillis)));
+                    log.debug("Quote source {} answered {}/{} in {}ms", source.name(), quotes.size(), codes.size(), latency);
+                    return quotes;
+                });
+    }
+
+    private Stats stats(String source) {
+        return statsBySource.computeIfAbsent(source, k -> new Stats());
+    }
+
+    static QuoteSource source(String name, QuoteFetcher fetcher) {
+        return new QuoteSource() {
+            @Override public String name() { return name; }
+            @Override public Map<String, StockQuote> fetch(List<String> codes) throws Exception { return fetcher.fetch(codes); }
+        };
+    }
+
+    @FunctionalInterface
+    interface QuoteFetcher {
+        Map<String, StockQuote> fetch(List<String> codes) throws Exception;
+    }
+
+    private static QuoteSource yahooSource(YahooFinanceService yahooFinanceService) {
+        return source("yahoo", codes -> {
+            var quotes = new HashMap<String, StockQuote>();
+            codes.forEach(code -> yahooFinanceService.getFreshTicker(code).ifPresent(q -> quotes.put(code, q)));
+            return quotes;
+        });
+    }
+
+    private static QuoteSource tiingoSource(TiingoAPIClient tiingoAPIClient) {
+        return source("tiingo", codes -> {
+            var codeByTicker = codes.stream().collect(Collectors.toMap(Market::getBaseCodeFromTicker, c -> c, (a, b) -> a));
+            return tiingoAPIClient.getPrices(codeByTicker.keySet().stream().toList()).get().stream()
+                    .filter(q -> codeByTicker.containsKey(q.getStockCode()))
+                    .collect(Collectors.toMap(q -> codeByTicker.get(q.getStockCode()), q -> q, (a, b) -> a));
+        });
+    }
+
+    private static QuoteSource webParserSource(WebParserRestService webParserRestService) {
+        return source("webparser", codes -> {
+            var body = webParserRestService.getRealTimeQuotes(codes).get().getBody();
+            if (codes.size() == 1 && body.length == 1) return Map.of(codes.getFirst(), body[0]);
+
+            var codeByStockCode = codes.stream().collect(Collectors.toMap(c -> new StockQuote(c).getStockCode(), c -> c, (a, b) -> a));
+            return Arrays.stream(body)
+                    .filter(q -> codeByStockCode.containsKey(q.getStockCode()))
+                    .collect(Collectors.toMap(q -> codeByStockCode.get(q.getStockCode()), q -> q, (a, b) -> a));
+        });
+    }
+
+    private static QuoteSource brokerSource(IBrokerAPIClient brokerAPIClient) {
+        return source("broker", brokerAPIClient::getStockQuotes);
+    }
+}
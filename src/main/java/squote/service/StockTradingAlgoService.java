@@ -6,11 +6,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import squote.SquoteConstants.Side;
 import squote.domain.*;
-import squote.domain.repository.DailyAssetSummaryRepository;
 import squote.domain.repository.FundRepository;
 import squote.domain.repository.HoldingStockRepository;
 import squote.scheduletask.FutuClientConfig;
-import thc.util.TradingUtils;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -24,27 +22,23 @@ public class StockTradingAlgoService {
 
     double priceThresholdPercent = 0.0005;
 
-    final DailyAssetSummaryRepository dailyAssetSummaryRepo;
+    final DailyAssetSummaryCache dailyAssetSummaryCache;
     final FundRepository fundRepo;
     final HoldingStockRepository holdingStockRepository;
-    final WebParserRestService webParserRestService;
+    final QuoteService quoteService;
     final TelegramAPIClient telegramAPIClient;
-    final YahooFinanceService yahooFinanceService;
-    final Map<String, Double> tickSizes = Map.of("2800", 0.02, "code1", 0.02);
 
     @Autowired
-    public StockTradingAlgoService(DailyAssetSummaryRepository dailyAssetSummaryRepo,
+    public StockTradingAlgoService(DailyAssetSummaryCache dailyAssetSummaryCache,
                                    FundRepository fundRepo,
                                    HoldingStockRepository holdingStockRepository,
-                                   WebParserRestService webParserService,
-                                   TelegramAPIClient telegramAPIClient,
-                                   YahooFinanceService yahooFinanceService) {
-        this.dailyAssetSummaryRepo = dailyAssetSummaryRepo;
+                                   QuoteService quoteService,
+                                   TelegramAPIClient telegramAPIClient) {
+        this.dailyAssetSummaryCache = dailyAssetSummaryCache;
         this.fundRepo = fundRepo;
         this.telegramAPIClient = telegramAPIClient;
         this.holdingStockRepository = holdingStockRepository;
-        this.webParserRestService = webParserService;
-        this.yahooFinanceService = yahooFinanceService;
+        this.quoteService = quoteService;
     }
 
     public record Execution(String code, Side side, int quantity, double price, boolean isToday, Date date) {
@@ -54,7 +48,19 @@ public class StockTradingAlgoService {
         }
     }
 
+    public TradingCycleSnapshot newCycleSnapshot(Fund fund, IBrokerAPIClient brokerAPIClient) {
+        return new TradingCycleSnapshot(fund, brokerAPIClient, holdingStockRepository);
+    }
+
     public void processSingleSymbol(Fund fund, Market market, AlgoConfig algoConfig, FutuClientConfig clientConfig, IBrokerAPIClient brokerAPIClient, StockQuote providedQuote, Date lastExecutionDate) {
+        processSingleSymbol(newCycleSnapshot(fund, brokerAPIClient), market, algoConfig, clientConfig, providedQuote, lastExecutionDate);
+    }
+
+    /**
+     * Share the snapshot across symbols of the same fund in a cycle to fetch broker and holding state once
+     */
+    public void processSingleSymbol(TradingCycleSnapshot snapshot, Market market, AlgoConfig algoConfig, FutuClientConfig clientConfig, StockQuote providedQuote, Date lastExecutionDate) {
+        var fund = snapshot.fund();
         log.info("start process for {} in {}", algoConfig.code(), fund.name);
         var stdDev = getStdDev(algoConfig.code(), algoConfig.stdDevRange());
         if (stdDev.isEmpty()) {
@@ -62,53 +68,40 @@ public class StockTradingAlgoService {
             return;
         }
 
-        var stockQuote = providedQuote != null ? providedQuote : getStockQuote(algoConfig.code(), brokerAPIClient);
+        var stockQuote = providedQuote != null ? providedQuote : getStockQuote(algoConfig.code(), snapshot.brokerAPIClient());
         if (!stockQuote.hasPrice()) {
             log.error("Cannot find stock quote for {}, skip processing", algoConfig.code());
             return;
         }
 
-        var holdings = holdingStockRepository.findByUserIdOrderByDate(fund.userId)
-                .stream().filter(h -> h.getCode().equals(algoConfig.code()) && h.getFundName().equals(fund.name))
-                .toList();
-        var allTodayExecutions = brokerAPIClient.getRecentExecutions(lastExecutionDate, market).values()
+        var holdings = snapshot.holdings(algoConfig.code());
+        var allTodayExecutions = snapshot.recentExecutions(lastExecutionDate, market).values()
                 .stream()
                 .filter(e -> e.getCode().equals(algoConfig.code()))
                 .toList();
         log.info("{} holdings, {} T day executions", holdings.size(), allTodayExecutions.size());
-        var buyExecutions = sortExecutions(holdings, allTodayExecutions, BUY);
-        var sellExecutions = sortExecutions(holdings, allTodayExecutions, SELL);
+        var buyExecutions = sortExecutions(algoConfig.code(), holdings, allTodayExecutions, BUY);
+        var sellExecutions = sortExecutions(algoConfig.code(), holdings, allTodayExecutions, SELL);
 
         var latestExecutionTime = allTodayExecutions.stream().mapToLong(e -> e.getTime()).max().orElse(0L);
         findBaseExecution(buyExecutions, sellExecutions)
-                .ifPresent(exec -> processBaseExecution(brokerAPIClient, clientConfig, stdDev.get(), algoConfig.stdDevMultiplier(), exec, stockQuote, algoConfig, market, lastExecutionDate, latestExecutionTime));
+                .ifPresent(exec -> processBaseExecution(snapshot, clientConfig, stdDev.get(), algoConfig.stdDevMultiplier(), exec, stockQuote, algoConfig, market, lastExecutionDate, latestExecutionTime));
     }
 
     private StockQuote getStockQuote(String code, IBrokerAPIClient brokerAPIClient) {
-        try {
-            if (Market.isUSStockCode(code)) {
-                return yahooFinanceService.getLatestTicker(code).orElse(new StockQuote(code));
-            }
-
-            var quote = brokerAPIClient.getStockQuote(code);
-            if (quote == null)
-                quote = webParserRestService.getRealTimeQuotes(List.of(code)).get().getBody()[0];
-            return quote;
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        return quoteService.getQuote(code, brokerAPIClient).orElse(new StockQuote(code));
     }
 
-    private Optional<Double> getStdDev(String code, int stdDevRange) {
-        return dailyAssetSummaryRepo.findTopBySymbolOrderByDateDesc(code)
+    public Optional<Double> getStdDev(String code, int stdDevRange) {
+        return dailyAssetSummaryCache.getLatest(code)
                 .flatMap(summary -> Optional.ofNullable(summary.stdDevs.get(stdDevRange)));
     }
 
-    private void processBaseExecution(IBrokerAPIClient brokerAPIClient, FutuClientConfig config, double stdDev, double stdDevMultiplier, Execution execution, StockQuote stockQuote, AlgoConfig algoConfig, Market market, Date lastExecutionDate, long latestExecutionTime) {
+    private void processBaseExecution(TradingCycleSnapshot snapshot, FutuClientConfig config, double stdDev, double stdDevMultiplier, Execution execution, StockQuote stockQuote, AlgoConfig algoConfig, Market market, Date lastExecutionDate, long latestExecutionTime) {
         log.info("base price: {}", execution.price);    // used in test case
         log.info("process base execution: {}", execution);
 
-        var pendingOrders = brokerAPIClient.getPendingOrders(market);
+        var pendingOrders = snapshot.pendingOrders(market);
         var anyPartialFilledOrder = pendingOrders.stream()
                 .filter(o -> algoConfig.code().equals(o.code()))
                 .filter(Order::isPartialFilled).findFirst();
@@ -126,19 +119,19 @@ public class StockTradingAlgoService {
         if (algoConfig.sellOnly()) {
             log.info("sellOnly enabled for {}. Skip BUY order handling", algoConfig.code());
         } else {
-            handleOrderForBaseExecution(BUY, execution, pendingOrders, stdDev, stdDevMultiplier, brokerAPIClient, config, stockQuote, algoConfig, market, lastExecutionDate, latestExecutionTime);
+            handleOrderForBaseExecution(BUY, execution, pendingOrders, stdDev, stdDevMultiplier, snapshot, config, stockQuote, algoConfig, market, lastExecutionDate, latestExecutionTime);
         }
-        handleOrderForBaseExecution(SELL, execution, pendingOrders, stdDev, stdDevMultiplier, brokerAPIClient, config, stockQuote, algoConfig, market, lastExecutionDate, latestExecutionTime);
+        handleOrderForBaseExecution(SELL, execution, pendingOrders, stdDev, stdDevMultiplier, snapshot, config, stockQuote, algoConfig, market, lastExecutionDate, latestExecutionTime);
     }
 
     private void handleOrderForBaseExecution(Side pendingOrderSide, Execution baseExec, List<Order> pendingOrders,
-        double stdDev, double stdDevMultiplier, IBrokerAPIClient brokerAPIClient, FutuClientConfig clientConfig,
+        double stdDev, double stdDevMultiplier, TradingCycleSnapshot snapshot, FutuClientConfig clientConfig,
         StockQuote stockQuote, AlgoConfig algoConfig, Market market, Date lastExecutionDate, long latestExecutionTime) {
         log.info("handle {} order", pendingOrders);
         if (pendingOrderSide == SELL && baseExec.side == SELL) return;
 
         var stockCode = baseExec.code;
-        var targetPrice = calculateTargetPrice(pendingOrderSide, stockCode, baseExec, stdDev, stdDevMultiplier, Double.parseDouble(stockQuote.getPrice()));
+        var targetPrice = calculateTargetPrice(pendingOrderSide, baseExec, stdDev, stdDevMultiplier, Double.parseDouble(stockQuote.getPrice()));
         var quantity = calculateOrderQuantity(pendingOrderSide, baseExec, algoConfig, targetPrice);
 
         var matchedPendingOrders = pendingOrders.stream()
@@ -146,7 +139,7 @@ public class StockTradingAlgoService {
                 .toList();
         if (matchedPendingOrders.size() > 1) {
             matchedPendingOrders.forEach(o -> {
-                cancelOrder(brokerAPIClient, o.orderId(), stockCode);
+                cancelOrder(snapshot, o.orderId(), stockCode);
                 telegramAPIClient.sendMessage(String.format("Cancelled order due to multiple pending (%s): %s %s %s@%.2f", clientConfig.fundName(),
                         pendingOrderSide, stockCode, o.quantity(), o.price()));
             });
@@ -163,77 +156,41 @@ public class StockTradingAlgoService {
 
             var pendingOrderId = pendingOrder.orderId();
             log.info("pending order price {} over threshold {}. Going to cancel order id={}", pendingOrderPrice, targetPrice, pendingOrderId);
-            cancelOrder(brokerAPIClient, pendingOrderId, stockCode);
+            cancelOrder(snapshot, pendingOrderId, stockCode);
             telegramAPIClient.sendMessage(String.format("Cancelled order (%s): %s %s %s@%.2f", clientConfig.fundName(),
                     pendingOrder.side(), stockCode,pendingOrder.quantity(), pendingOrderPrice));
         }
 
-        if (hasNewExecutions(brokerAPIClient, market, lastExecutionDate, stockCode, latestExecutionTime)) {
+        if (hasNewExecutions(snapshot, market, lastExecutionDate, stockCode, latestExecutionTime)) {
             log.warn("New execution detected for {}. Skipping placement — will recalculate next cycle.", stockCode);
             telegramAPIClient.sendMessage(String.format("WARN (%s): Skipped %s order placement — new execution detected for %s",
                     clientConfig.fundName(), pendingOrderSide, stockCode));
             return;
         }
 
-        placeOrder(brokerAPIClient, clientConfig, stockCode, pendingOrderSide, targetPrice, quantity);
+        placeOrder(snapshot, clientConfig, stockCode, pendingOrderSide, targetPrice, quantity);
     }
 
-    private double calculateTargetPrice(Side orderSide, String code, Execution baseExec, double stdDev, double stdDevMultiplier, double marketPrice) {
-        var basePrice = baseExec.price;
-        var modifiedStdDevPercentage = Math.min((stdDev * stdDevMultiplier / 100), 0.02618); // 0.01618 ^ 2
-        var targetPrice = orderSide == SELL ? basePrice * (1 + modifiedStdDevPercentage) : basePrice / (1 + modifiedStdDevPercentage);
-
-        // handle target price far from market price
-        if (orderSide == BUY) {
-            var priceAdjustmentFactor = 1 + (modifiedStdDevPercentage / 2);
-            if (baseExec.side == BUY) {
-                while (targetPrice > marketPrice) {
-                    targetPrice = targetPrice / priceAdjustmentFactor;
-                }
-            } else {
-                var minBuyPrice = marketPrice / (1 + stdDev / 100);   // choose stdDev explicitly
-                while (targetPrice < minBuyPrice) {
-                    targetPrice = targetPrice * priceAdjustmentFactor;
-                }
-            }
-        }
-
-        var tickSize = tickSizes.getOrDefault(code, 0.01);  // default US to 0.01
-        targetPrice = orderSide == BUY ? Math.floor(targetPrice / tickSize) * tickSize : Math.ceil(targetPrice / tickSize) * tickSize;
-        targetPrice = (double) Math.round(targetPrice * 1000) / 1000;
-        log.info("{}: targetPrice={}, basePrice={}, stdDev={}, mktPx={}", orderSide, targetPrice, basePrice, stdDev, marketPrice);
+    private double calculateTargetPrice(Side orderSide, Execution baseExec, double stdDev, double stdDevMultiplier, double marketPrice) {
+        var targetPrice = AlgoPricing.targetPrice(orderSide, baseExec, stdDev, stdDevMultiplier, marketPrice);
+        log.info("{}: targetPrice={}, basePrice={}, stdDev={}, mktPx={}", orderSide, targetPrice, baseExec.price, stdDev, marketPrice);
         return targetPrice;
     }
 
     private int calculateOrderQuantity(Side orderSide, Execution baseExec, AlgoConfig algoConfig, double targetPrice) {
-        if (orderSide == SELL) return baseExec.quantity;
-        
-        // BUY orders
-        int quantity;
-        if (algoConfig.grossAmount() != null && algoConfig.grossAmount() > 0) {
-            if (algoConfig.lotSize() > 0) {
-                quantity = TradingUtils.roundToLotSize(algoConfig.grossAmount() / targetPrice, algoConfig.lotSize());
-            } else {
-                quantity = (int) Math.floor(algoConfig.grossAmount() / targetPrice);
-            }
-            log.info("Calculated buy quantity from grossAmount: {} / {} = {} (lotSize={})", algoConfig.grossAmount(), targetPrice, quantity, algoConfig.lotSize());
-        } else if (algoConfig.quantity() > 0) {
-            quantity = algoConfig.quantity();
-        } else {
-            quantity = baseExec.quantity;
-        }
-        log.info("Final buy quantity for {}: {}", baseExec.code, quantity);
+        var quantity = AlgoPricing.orderQuantity(orderSide, baseExec, algoConfig, targetPrice);
+        if (orderSide == BUY) log.info("Final buy quantity for {}: {} (grossAmount={}, lotSize={})", baseExec.code, quantity, algoConfig.grossAmount(), algoConfig.lotSize());
         return quantity;
     }
 
-    private void placeOrder(IBrokerAPIClient brokerAPIClient, FutuClientConfig config, String stockCode, Side side, double price, int quantity) {
+    private void placeOrder(TradingCycleSnapshot snapshot, FutuClientConfig config, String stockCode, Side side, double price, int quantity) {
         if (quantity <= 0) {
             log.info("Skipping order for {} - quantity is {}", stockCode, quantity);
             return;
         }
-        if (side == BUY && !hasAvailableFunds(brokerAPIClient, stockCode, side, price, quantity)) return;
+        if (side == BUY && !hasAvailableFunds(snapshot, stockCode, side, price, quantity)) return;
 
-        var placeOrderResponse = brokerAPIClient.placeOrder(side, stockCode, quantity, price);
+        var placeOrderResponse = snapshot.placeOrder(side, stockCode, quantity, price);
 
         if (placeOrderResponse.errorCode() > 0) {
             log.error("Cannot place order, error cod={}, message={}", placeOrderResponse.errorCode(), placeOrderResponse.message());
@@ -247,12 +204,12 @@ public class StockTradingAlgoService {
         telegramAPIClient.sendMessage(placedMessage);
     }
 
-    private boolean hasAvailableFunds(IBrokerAPIClient brokerAPIClient, String stockCode, Side side, double price, int quantity) {
+    private boolean hasAvailableFunds(TradingCycleSnapshot snapshot, String stockCode, Side side, double price, int quantity) {
         if (side != BUY) return true;
 
         var requiredCurrency = Market.getMarketByStockCode(stockCode).currency();
         var orderValue = price * quantity;
-        var availableAmount = brokerAPIClient.getAvailableFunds().getOrDefault(requiredCurrency, 0.0);
+        var availableAmount = snapshot.availableFunds().getOrDefault(requiredCurrency, 0.0);
 
         if (availableAmount < orderValue) {
             log.warn("Not enough cash for {} {}: required {}, available {}",
@@ -262,15 +219,15 @@ public class StockTradingAlgoService {
         return true;
     }
 
-    private boolean hasNewExecutions(IBrokerAPIClient brokerAPIClient, Market market, Date lastExecutionDate, String stockCode, long latestExecutionTime) {
-        return brokerAPIClient.getRecentExecutions(lastExecutionDate, market)
+    private boolean hasNewExecutions(TradingCycleSnapshot snapshot, Market market, Date lastExecutionDate, String stockCode, long latestExecutionTime) {
+        return snapshot.latestRecentExecutions(lastExecutionDate, market)
                 .values().stream()
                 .filter(e -> e.getCode().equals(stockCode))
                 .anyMatch(e -> e.getTime() > latestExecutionTime);
     }
 
-    private void cancelOrder(IBrokerAPIClient brokerAPIClient, long pendingOrderId, String code) {
-        var cancelOrderResponse = brokerAPIClient.cancelOrder(pendingOrderId, code);
+    private void cancelOrder(TradingCycleSnapshot snapshot, long pendingOrderId, String code) {
+        var cancelOrderResponse = snapshot.cancelOrder(pendingOrderId, code);
 
         if (cancelOrderResponse.errorCode() > 0) {
             String errorMessage = String.format("Cannot cancel order %s, error code=%s, message=%s",
@@ -288,31 +245,8 @@ public class StockTradingAlgoService {
     }
 
     private Optional<Execution> findBaseExecution(List<Execution> buyExecutions, List<Execution> sellExecutions) {
-        if (buyExecutions.isEmpty() && sellExecutions.isEmpty()) return Optional.empty();
-        if (sellExecutions.isEmpty()) return buyExecutions.stream().findFirst();
-        if (buyExecutions.isEmpty() && sellExecutions.size() == 1) return Optional.ofNullable(sellExecutions.getFirst());
-
-        int buyIndex = 0, sellIndex = 0;
-        var cloneBuyExecutions = new ArrayList<>(buyExecutions);
-        var cloneSellExecutions = new ArrayList<>(sellExecutions);
-
-        while (buyIndex < buyExecutions.size()) {
-            if (sellExecutions.get(sellIndex).price > buyExecutions.get(buyIndex).price) {
-                if (sellExecutions.get(sellIndex).date.after(buyExecutions.get(buyIndex).date)) {
-                    cloneBuyExecutions.remove(buyIndex);
-                    cloneSellExecutions.remove(sellIndex);
-                    if (cloneBuyExecutions.isEmpty() && cloneSellExecutions.isEmpty()) return Optional.ofNullable(sellExecutions.getFirst());
-                    return findBaseExecution(cloneBuyExecutions, cloneSellExecutions);
-                } else {
-                    buyIndex++;
-                }
-            } else {
-                log.error("Unexpected executions: {} < {}", sellExecutions.get(sellIndex), buyExecutions.get(buyIndex));
-                return Optional.empty();
-            }
-        }
-
-        return Optional.empty();
+        return AlgoPricing.findBaseExecution(buyExecutions, sellExecutions,
+                (sell, buy) -> log.error("Unexpected executions: {} < {}", sell, buy));
     }
 
     private void printExecutions(String title, List<Execution> executions) {
@@ -320,27 +254,24 @@ public class StockTradingAlgoService {
         executions.forEach(execution -> log.info("{}@{} at {}", execution.quantity, execution.price, execution.date));
     }
 
-    private List<Execution> sortExecutions(List<HoldingStock> holdings,
+    private List<Execution> sortExecutions(String code, List<HoldingLot> holdings,
                                            List<squote.domain.Execution> allTodayExecutions,
                                            Side side) {
-        List<Execution> executions = getExecutionsBySide(holdings, side);
+        List<Execution> executions = getExecutionsBySide(code, holdings, side);
         List<Execution> todayExecutions = allTodayExecutions.stream()
                 .filter(e -> e.getSide() == side)
                 .map(this::toExecution)
                 .toList();
         executions.addAll(todayExecutions);
-        executions.sort(
-                Comparator.comparingDouble(Execution::price)
-                        .thenComparing(Execution::date)
-        );
+        executions.sort(AlgoPricing.EXECUTION_ORDER);
         printExecutions(side + " executions:", executions);
         return executions;
     }
 
-    private List<Execution> getExecutionsBySide(List<HoldingStock> holdings, Side side) {
+    private List<Execution> getExecutionsBySide(String code, List<HoldingLot> holdings, Side side) {
         return holdings.stream()
                 .filter(h -> h.getSide() == side)
-                .map(this::toExecution)
+                .map(h -> toExecution(code, h))
                 .collect(Collectors.toList());
     }
 
@@ -351,8 +282,8 @@ public class StockTradingAlgoService {
                 true, new Date(e.getTime()));
     }
 
-    private Execution toExecution(HoldingStock holding) {
-        return new Execution(holding.getCode(), holding.getSide(),
+    private Execution toExecution(String code, HoldingLot holding) {
+        return new Execution(code, holding.getSide(),
                 holding.getQuantity(),
                 holding.getGross().doubleValue() / (holding.getQuantity()),
                 false, holding.getDate());
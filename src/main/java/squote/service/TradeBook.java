@@ -0,0 +1,201 @@
+package squote.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import squote.SquoteConstants;
+import squote.domain.Execution;
+import squote.domain.Market;
+import squote.domain.Order;
+import squote.domain.StockQuote;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory fills and pending orders of one broker account.
+ * Seeded from the broker once per market, then kept up to date by pushed trade updates.
+ * Falls back to the broker when push is not available or the connection is lost,
+ * a book that lost its connection is replaced by a new subscription with close.
+ */
+public class TradeBook implements IBrokerAPIClient, IBrokerAPIClient.TradeUpdateListener {
+    protected final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final IBrokerAPIClient brokerAPIClient;
+    private final Map<String, Execution> fills = new ConcurrentHashMap<>();    // key by fill ids
+    private final Set<String> knownFillIds = ConcurrentHashMap.newKeySet();
+    private final Map<Long, Order> pendingOrders = new ConcurrentHashMap<>();
+    private final Set<Long> closedOrderIds = ConcurrentHashMap.newKeySet();
+    private final Map<Market, Date> fillsSeededFrom = new ConcurrentHashMap<>();
+    private final Set<Market> ordersSeeded = ConcurrentHashMap.newKeySet();
+    private final List<Consumer<Execution>> fillListeners = new CopyOnWriteArrayList<>();
+    private final ReentrantLock seedLock = new ReentrantLock();     // not synchronized, seeding blocks on the broker
+    private volatile boolean live;
+    private volatile boolean connectionLost;
+
+    private TradeBook(IBrokerAPIClient brokerAPIClient) {
+        this.brokerAPIClient = brokerAPIClient;
+    }
+
+    public static TradeBook subscribe(IBrokerAPIClient brokerAPIClient) {
+        var book = new TradeBook(brokerAPIClient);
+        book.live = brokerAPIClient.subscribeTradeUpdates(book);
+        book.log.info("trade book live={}", book.live);
+        return book;
+    }
+
+    public boolean isLive() { return live; }
+
+    public boolean isConnectionLost() { return connectionLost; }
+
+    /**
+     * Stop receiving pushed updates, e.g. when replaced by a new book
+     */
+    public void close() {
+        brokerAPIClient.unsubscribeTradeUpdates(this);
+    }
+
+    public IBrokerAPIClient brokerAPIClient() { return brokerAPIClient; }
+
+    public void addFillListener(Consumer<Execution> listener) {
+        fillListeners.add(listener);
+    }
+
+    @Override
+    public void onOrderUpdate(Order order, boolean pending) {
+        log.info("order update: {} pending={}", order, pending);
+        if (pending) {
+            if (!closedOrderIds.contains(order.orderId())) pendingOrders.put(order.orderId(), order);
+        } else {
+            closedOrderIds.add(order.orderId());
+            pendingOrders.remove(order.orderId());
+        }
+    }
+
+    @Override
+    public void onFill(Execution fill) {
+        log.info("fill: {}", fill);
+        if (!knownFillIds.add(fill.getFillIds())) return;
+
+        fills.put(fill.getFillIds(), fill);
+        fillListeners.forEach(l -> l.accept(fill));
+    }
+
+    @Override
+    public void onConnectionLost() {
+        log.warn("connection lost, fallback to broker");
+        seedLock.lock();
+        try {
+            live = false;
+            connectionLost = true;
+            fills.clear();
+            knownFillIds.clear();
+            pendingOrders.clear();
+            fillsSeededFrom.clear();
+            ordersSeeded.clear();
+        } finally {
+            seedLock.unlock();
+        }
+    }
+
+    @Override
+    public Map<String, Execution> getRecentExecutions(Date fromDate, Market market) {
+        if (!live) return brokerAPIClient.getRecentExecutions(fromDate, market);
+
+        var seededFrom = fillsSeededFrom.get(market);
+        if (seededFrom == null || seededFrom.after(fromDate)) seedFills(fromDate, market);
+
+        return fills.values().stream()
+                .filter(e -> e.getMarket() == market && e.getTime() > fromDate.getTime())
+                .collect(Collectors.toMap(Execution::getOrderId, TradeBook::copy, Execution::addExecution));
+    }
+
+    private void seedFills(Date fromDate, Market market) {
+        seedLock.lock();
+        try {
+            for (var execution : brokerAPIClient.getRecentExecutions(fromDate, market).values()) {
+                var fillIds = List.of(execution.getFillIds().split(","));
+                fills.keySet().removeIf(key -> Arrays.stream(key.split(",")).anyMatch(fillIds::contains));   // pushed or seeded before
+                knownFillIds.addAll(fillIds);
+                fills.put(execution.getFillIds(), execution);
+            }
+            fillsSeededFrom.put(market, fromDate);
+        } finally {
+            seedLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Order> getPendingOrders(Market market) {
+        if (!live) return brokerAPIClient.getPendingOrders(market);
+
+        if (!ordersSeeded.contains(market)) seedOrders(market);
+        return pendingOrders.values().stream()
+                .filter(o -> Market.getMarketByStockCode(o.code()) == market)
+                .toList();
+    }
+
+    private void seedOrders(Market market) {
+        seedLock.lock();
+        try {
+            brokerAPIClient.getPendingOrders(market).stream()
+                    .filter(o -> !closedOrderIds.contains(o.orderId()))
+                    .forEach(o -> pendingOrders.putIfAbsent(o.orderId(), o));
+            ordersSeeded.add(market);
+        } finally {
+            seedLock.unlock();
+        }
+    }
+
+    @Override
+    public PlaceOrderResponse placeOrder(SquoteConstants.Side side, String code, int quantity, double price) {
+        var response = brokerAPIClient.placeOrder(side, code, quantity, price);
+        if (live && response.errorCode() <= 0 && !closedOrderIds.contains(response.orderId()))
+            pendingOrders.putIfAbsent(response.orderId(), Order.newOrder(code, side, quantity, price, response.orderId()));
+        return response;
+    }
+
+    @Override
+    public CancelOrderResponse cancelOrder(long orderId, String code) {
+        var response = brokerAPIClient.cancelOrder(orderId, code);
+        if (response.errorCode() <= 0) {
+            closedOrderIds.add(orderId);
+            pendingOrders.remove(orderId);
+        }
+        return response;
+    }
+
+    @Override
+    public StockQuote getStockQuote(String code) { return brokerAPIClient.getStockQuote(code); }
+
+    @Override
+    public Map<String, StockQuote> getStockQuotes(Collection<String> codes) { return brokerAPIClient.getStockQuotes(codes); }
+
+    @Override
+    public Map<String, Execution> getStockTodayExecutions(Market market) { return brokerAPIClient.getStockTodayExecutions(market); }
+
+    @Override
+    public Map<String, Execution> getHistoricalExecutions(Date fromDate, Market market) { return brokerAPIClient.getHistoricalExecutions(fromDate, market); }
+
+    @Override
+    public Map<Currency, Double> getAvailableFunds() { return brokerAPIClient.getAvailableFunds(); }
+
+    private static Execution copy(Execution e) {
+        var copy = new Execution()
+                .setPrice(e.getPrice())
+                .setQuantity(e.getQuantity())
+                .setQuoteQuantity(e.getQuoteQuantity())
+                .setTime(e.getTime())
+                .setCode(e.getCode())
+                .setSide(e.getSide());
+        copy.setOrderId(e.getOrderId());
+        copy.setFillIds(e.getFillIds());
+        copy.setMarket(e.getMarket());
+        copy.setCommission(e.getCommission());
+        copy.setAssetClass(e.getAssetClass());
+        return copy;
+    }
+}
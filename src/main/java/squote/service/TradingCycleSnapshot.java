@@ -0,0 +1,77 @@
+package squote.service;
+
+import squote.SquoteConstants;
+import squote.domain.*;
+import squote.domain.repository.HoldingStockRepository;
+
+import java.util.*;
+
+/**
+ * Broker and holding state of one fund, fetched at most once per trading cycle.
+ * placeOrder and cancelOrder invalidate the pending orders and available funds they change.
+ * Not thread safe, a fund is processed by one thread in a cycle.
+ */
+public class TradingCycleSnapshot {
+    private final Fund fund;
+    private final IBrokerAPIClient brokerAPIClient;
+    private final HoldingStockRepository holdingStockRepository;
+
+    private final Map<String, List<HoldingLot>> holdings = new HashMap<>();
+    private final Map<Market, List<Order>> pendingOrders = new EnumMap<>(Market.class);
+    private final Map<ExecutionsKey, Map<String, Execution>> recentExecutions = new HashMap<>();
+    private Map<Currency, Double> availableFunds;
+
+    private record ExecutionsKey(Date fromDate, Market market) {}
+
+    public TradingCycleSnapshot(Fund fund, IBrokerAPIClient brokerAPIClient, HoldingStockRepository holdingStockRepository) {
+        this.fund = fund;
+        this.brokerAPIClient = brokerAPIClient;
+        this.holdingStockRepository = holdingStockRepository;
+    }
+
+    public Fund fund() { return fund; }
+
+    public IBrokerAPIClient brokerAPIClient() { return brokerAPIClient; }
+
+    public List<HoldingLot> holdings(String code) {
+        return holdings.computeIfAbsent(code, c -> holdingStockRepository.findByUserIdAndFundNameAndCodeOrderByDate(fund.userId, fund.name, c));
+    }
+
+    public List<Order> pendingOrders(Market market) {
+        return pendingOrders.computeIfAbsent(market, brokerAPIClient::getPendingOrders);
+    }
+
+    public Map<String, Execution> recentExecutions(Date fromDate, Market market) {
+        return recentExecutions.computeIfAbsent(new ExecutionsKey(fromDate, market),
+                k -> brokerAPIClient.getRecentExecutions(fromDate, market));
+    }
+
+    /**
+     * Fetch again from broker, for checking fills arrived during the cycle
+     */
+    public Map<String, Execution> latestRecentExecutions(Date fromDate, Market market) {
+        var executions = brokerAPIClient.getRecentExecutions(fromDate, market);
+        recentExecutions.put(new ExecutionsKey(fromDate, market), executions);
+        return executions;
+    }
+
+    public Map<Currency, Double> availableFunds() {
+        if (availableFunds == null) availableFunds = brokerAPIClient.getAvailableFunds();
+        return availableFunds;
+    }
+
+    public IBrokerAPIClient.PlaceOrderResponse placeOrder(SquoteConstants.Side side, String code, int quantity, double price) {
+        invalidateOrders(Market.getMarketByStockCode(code));
+        return brokerAPIClient.placeOrder(side, code, quantity, price);
+    }
+
+    public IBrokerAPIClient.CancelOrderResponse cancelOrder(long orderId, String code) {
+        invalidateOrders(Market.getMarketByStockCode(code));
+        return brokerAPIClient.cancelOrder(orderId, code);
+    }
+
+    private void invalidateOrders(Market market) {
+        pendingOrders.remove(market);
+        availableFunds = null;
+    }
+}
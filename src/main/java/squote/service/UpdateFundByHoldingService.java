@@ -1,5 +1,6 @@
 package squote.service;
 
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -39,8 +40,13 @@ public class UpdateFundByHoldingService {
 	}
 
 	public Fund updateFundByHolding(String userId, String fundName, HoldingStock holding, BigDecimal fee) {
-		Fund f = fundRepo.findByUserIdAndName(userId, fundName).get();
+		return updateFundByHolding(fundRepo.findByUserIdAndName(userId, fundName).get(), holding, fee);
+	}
 
+	/**
+	 * Apply the holding to a loaded fund in memory, caller persists both
+	 */
+	public Fund updateFundByHolding(Fund f, HoldingStock holding, BigDecimal fee) {
 		if (Side.BUY.equals(holding.getSide()))
 			f.buyStock(holding.getCode(), BigDecimal.valueOf(holding.getQuantity()), holding.getGross());
 		else if (Side.SELL.equals(holding.getSide())) {
@@ -56,12 +62,12 @@ public class UpdateFundByHoldingService {
 		Fund f = fundRepo.findByUserIdAndName(userId, fundName).get();
 		if (SOURCE_BINANCE.equalsIgnoreCase(source)) {
 			for (String code : f.getHoldings().keySet()) {
-				var executions = binanceAPIService.getMyTrades(code);
+				var executions = binanceAPIService.getMyTrades(code, f.getHoldings().get(code).getLatestTradeId());
 				addExecutionsToFund(f, executions);
 				if (f.getHoldings().containsKey(code)) {
-					f.getHoldings().get(code).setLatestTradeTime(
-							Math.max(f.getHoldings().get(code).getLatestTradeTime(), maxTime(executions))
-					);
+					var holding = f.getHoldings().get(code);
+					holding.setLatestTradeTime(Math.max(holding.getLatestTradeTime(), maxTime(executions)));
+					holding.setLatestTradeId(Math.max(holding.getLatestTradeId(), maxTradeId(executions)));
 				}
 			}
 		}
@@ -73,6 +79,14 @@ public class UpdateFundByHoldingService {
 		return executions.stream().mapToLong(Execution::getTime).max().orElse(0);
 	}
 
+	private long maxTradeId(List<Execution> executions) {
+		return executions.stream()
+				.map(Execution::getFillIds)
+				.filter(StringUtils::isNumeric)
+				.mapToLong(Long::parseLong)
+				.max().orElse(0);
+	}
+
 	private void addExecutionsToFund(Fund fund, List<Execution> executions) {
 		executions.stream()
 				.filter(exec -> !fund.containSymbol(exec.getCode()) || exec.getTime() > fund.getHoldings().get(exec.getCode()).getLatestTradeTime())
@@ -2,6 +2,8 @@ package squote.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import squote.domain.AlgoConfig;
@@ -13,34 +15,78 @@ import squote.service.yahoo.YahooTicker;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.util.Arrays;
-import java.util.Map;
-import java.util.Optional;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.TimeUnit;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.StreamSupport;
 
+/**
+ * Streams US quotes from Yahoo. Symbols are sharded over sockets of at most symbolsPerSocket symbols,
+ * a dropped socket is reconnected with exponential backoff and its symbols are subscribed again.
+ */
 @Service
 public class YahooFinanceService {
 
     private static final Logger log = LoggerFactory.getLogger(YahooFinanceService.class);
+    private static final long MAX_RECONNECT_BACKOFF_MILLIS = 60000;
+
+    @Value("${yahoo.symbolsPerSocket:100}") int symbolsPerSocket = 100;
+    @Value("${yahoo.maxQuoteAgeSeconds:120}") long maxQuoteAgeSeconds = 120;
+    @Value("${yahoo.reconnectBackoffMillis:1000}") long reconnectBackoffMillis = 1000;
+    @Value("${yahoo.idleExpirySeconds:600}") long idleExpirySeconds = 600;
+
     private final FundRepository fundRepository;
-    private YahooFinanceWebSocketClient webSocketClient;
-    private final Map<String, YahooTicker> latestTickers = new ConcurrentHashMap<>();
-    private final Set<String> subscribedSymbols = new CopyOnWriteArraySet<>();
+    private final Supplier<YahooFinanceWebSocketClient> clientFactory;
+    private final List<Shard> shards = new CopyOnWriteArrayList<>();
+    private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();    // modified under subscribeLock
+    private final ReentrantLock subscribeLock = new ReentrantLock();
+    private final Map<String, YahooTicker> latestTickers = new ConcurrentHashMap<>();     // one slot per symbol, updated in place
+    private final Map<String, AtomicLong> lastUpdateMillis = new ConcurrentHashMap<>();
+    private final List<Consumer<YahooTicker>> tickerListeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService reconnectScheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("yahoo-reconnect-", 0).factory());
+    private volatile boolean shuttingDown;
+
+    private static class Shard {
+        final int index;
+        final Set<String> symbols = new CopyOnWriteArraySet<>();    // subscribed in insertion order
+        final ReentrantLock connectLock = new ReentrantLock();     // not synchronized, connecting blocks
+        final AtomicBoolean reconnectScheduled = new AtomicBoolean();
+        volatile YahooFinanceWebSocketClient client;
+        int failures;   // guarded by connectLock
+
+        final Set<String> pendingUnsubscribes = ConcurrentHashMap.newKeySet();
+
+        Shard(int index) { this.index = index; }
+    }
+
+    private static class Subscription {
+        final Shard shard;
+        int refCount;       // holders by subscribeToSymbols
+        long lastTouched;   // by touchSymbols
 
+        Subscription(Shard shard) { this.shard = shard; }
+    }
+
+    @Autowired
     public YahooFinanceService(FundRepository fundRepository) {
+        this(fundRepository, YahooFinanceWebSocketClient::new);
+    }
+
+    YahooFinanceService(FundRepository fundRepository, Supplier<YahooFinanceWebSocketClient> clientFactory) {
         this.fundRepository = fundRepository;
+        this.clientFactory = clientFactory;
     }
 
     @PostConstruct
     public void initialize() {
-        createAndConnectClient();
         loadUsMarketAlgoConfigs();
         log.info("YahooFinanceService initialized");
     }
@@ -65,40 +111,184 @@ public class YahooFinanceService {
 
     @PreDestroy
     public void shutdown() {
-        if (webSocketClient != null) {
-            webSocketClient.close();
-            log.info("YahooFinanceService shutdown");
-        }
+        shuttingDown = true;
+        reconnectScheduler.shutdownNow();
+        shards.forEach(shard -> {
+            if (shard.client != null) shard.client.close();
+        });
+        log.info("YahooFinanceService shutdown");
     }
 
+    /**
+     * Hold a subscription until the same number of unsubscribeFromSymbols, e.g. symbols of algo configs
+     */
     public void subscribeToSymbols(String... codeWithMarketCode) {
         if (codeWithMarketCode.length == 0) return;
+        log.info("subscribeToSymbols: {}", String.join(",", codeWithMarketCode));
+        subscribe(codeWithMarketCode, sub -> sub.refCount++);
+    }
 
-        var codesWithoutSuffix = Arrays.stream(codeWithMarketCode).map(YahooFinanceService::getPrefix).toList();
-        log.info("subscribeToSymbols: {}", String.join(",", codesWithoutSuffix));
-        subscribedSymbols.addAll(codesWithoutSuffix);
-        webSocketClient.subscribeToSymbols(codesWithoutSuffix.toArray(new String[0]));
+    /**
+     * Subscribe for a viewer, the subscription expires after idleExpirySeconds without another touch if nothing holds it
+     */
+    public void touchSymbols(String... codeWithMarketCode) {
+        if (codeWithMarketCode.length == 0) return;
+        var now = System.currentTimeMillis();
+        subscribe(codeWithMarketCode, sub -> sub.lastTouched = now);
     }
 
     public void unsubscribeFromSymbols(String... codeWithMarketCode) {
         var codesWithoutSuffix = Arrays.stream(codeWithMarketCode).map(YahooFinanceService::getPrefix).toList();
         log.info("unsubscribeFromSymbols: {}", String.join(",", codesWithoutSuffix));
-        for (var code : codesWithoutSuffix) {
-            subscribedSymbols.remove(code);
-            latestTickers.remove(code);
+        var now = System.currentTimeMillis();
+        subscribeLock.lock();
+        try {
+            for (var code : codesWithoutSuffix) {
+                var sub = subscriptions.get(code);
+                if (sub == null) continue;
+                sub.refCount = Math.max(0, sub.refCount - 1);
+                if (isIdle(sub, now)) removeSubscription(code);
+            }
+        } finally {
+            subscribeLock.unlock();
+        }
+        flushUnsubscribes();
+    }
+
+    /**
+     * Drop subscriptions not held and not touched within idleExpirySeconds, the sockets stop streaming them
+     */
+    public void expireIdleSubscriptions() {
+        var now = System.currentTimeMillis();
+        subscribeLock.lock();
+        try {
+            subscriptions.entrySet().stream()
+                    .filter(e -> isIdle(e.getValue(), now))
+                    .map(Map.Entry::getKey)
+                    .toList()
+                    .forEach(this::removeSubscription);
+        } finally {
+            subscribeLock.unlock();
+        }
+        flushUnsubscribes();
+    }
+
+    public Set<String> getSubscribedSymbols() {
+        return Set.copyOf(subscriptions.keySet());
+    }
+
+    private void subscribe(String[] codeWithMarketCode, Consumer<Subscription> update) {
+        var codesWithoutSuffix = Arrays.stream(codeWithMarketCode).map(YahooFinanceService::getPrefix).distinct().toList();
+        var newSymbolsByShard = new LinkedHashMap<Shard, List<String>>();
+        subscribeLock.lock();
+        try {
+            for (var code : codesWithoutSuffix) {
+                var sub = subscriptions.get(code);
+                if (sub == null) {
+                    var shard = shards.stream().filter(s -> s.symbols.size() < symbolsPerSocket).findFirst()
+                            .orElseGet(this::addShard);
+                    shard.symbols.add(code);
+                    sub = new Subscription(shard);
+                    subscriptions.put(code, sub);
+                    newSymbolsByShard.computeIfAbsent(shard, k -> new ArrayList<>()).add(code);
+                }
+                update.accept(sub);
+            }
+        } finally {
+            subscribeLock.unlock();
+        }
+
+        // one frame per shard for the new symbols only, never connect on the caller's thread
+        newSymbolsByShard.forEach((shard, symbols) -> {
+            log.info("subscribe new symbols: {}", symbols);
+            var client = shard.client;
+            if (client == null) connectNewShard(shard);
+            else if (client.isOpen()) client.subscribeToSymbols(symbols.toArray(new String[0]));
+            // else connecting or reconnecting, all symbols of the shard are subscribed once open
+        });
+    }
+
+    /**
+     * Connect on the reconnect scheduler, once per shard however many subscribers ask.
+     * The symbols added to the shard meanwhile are subscribed by connect once open.
+     */
+    private void connectNewShard(Shard shard) {
+        reconnectScheduler.execute(() -> {
+            shard.connectLock.lock();
+            try {
+                if (shard.client == null) connect(shard);
+            } finally {
+                shard.connectLock.unlock();
+            }
+        });
+    }
+
+    private boolean isIdle(Subscription sub, long now) {
+        return sub.refCount == 0 && now - sub.lastTouched > idleExpirySeconds * 1000;
+    }
+
+    // guarded by subscribeLock
+    private void removeSubscription(String code) {
+        var sub = subscriptions.remove(code);
+        sub.shard.symbols.remove(code);
+        sub.shard.pendingUnsubscribes.add(code);
+        latestTickers.remove(code);
+        lastUpdateMillis.remove(code);
+    }
+
+    private void flushUnsubscribes() {
+        for (var shard : shards) {
+            if (shard.pendingUnsubscribes.isEmpty()) continue;
+
+            var symbols = new ArrayList<String>();
+            shard.pendingUnsubscribes.removeIf(symbols::add);
+            Collections.sort(symbols);
+            var client = shard.client;
+            if (client != null) client.unsubscribeFromSymbols(symbols.toArray(new String[0]));
         }
     }
 
+    /**
+     * Listener is called on the ticker dispatch thread, ticks of a symbol are conflated while it is busy.
+     * The ticker is reused for the next update, copy what is kept.
+     */
+    public void addTickerListener(Consumer<YahooTicker> listener) {
+        tickerListeners.add(listener);
+    }
+
     private static String getPrefix(String code) {
         return code.split("\\.")[0];
     }
 
+    /**
+     * Time since the last tick of the symbol was received
+     */
+    public Optional<Duration> getLastUpdateAge(String symbol) {
+        var updated = lastUpdateMillis.get(getPrefix(symbol));
+        if (updated == null) return Optional.empty();
+        return Optional.of(Duration.ofMillis(System.currentTimeMillis() - updated.get()));
+    }
+
+    /**
+     * Latest ticker only if received within maxQuoteAgeSeconds, for trading on a live price
+     */
+    public Optional<StockQuote> getFreshTicker(String symbol) {
+        var age = getLastUpdateAge(symbol);
+        if (age.isEmpty() || age.get().toSeconds() > maxQuoteAgeSeconds) {
+            log.warn("Stale quote of {}, last update age={}", symbol, age.orElse(null));
+            return Optional.empty();
+        }
+        return getLatestTicker(symbol);
+    }
+
     public Optional<StockQuote> getLatestTicker(String symbol) {
         var code = getPrefix(symbol);
-        if (!latestTickers.containsKey(code)) return Optional.empty();
-
         YahooTicker ticker = latestTickers.get(code);
-        return Optional.of(convertToStockQuote(ticker, symbol));
+        if (ticker == null) return Optional.empty();
+
+        synchronized (ticker) {
+            return Optional.of(convertToStockQuote(ticker, symbol));
+        }
     }
 
     private StockQuote convertToStockQuote(YahooTicker ticker, String originalSymbol) {
@@ -136,48 +326,88 @@ public class YahooFinanceService {
 
     @Scheduled(fixedDelay = 30000, initialDelay = 10000)
     public void checkConnectionHealth() {
-        try {
-            if (webSocketClient == null || !webSocketClient.isOpen()) {
-                log.warn("WebSocket connection is down, attempting to reconnect...");
-                reconnect();
+        expireIdleSubscriptions();
+        for (var shard : shards) {
+            var client = shard.client;
+            if (client == null || !client.isOpen()) {
+                log.warn("WebSocket connection {} is down, attempting to reconnect...", shard.index);
+                scheduleReconnect(shard);
             } else {
-                log.debug("WebSocket connection is healthy");
+                log.debug("WebSocket connection {} is healthy, {} symbols, dispatch {}", shard.index, shard.symbols.size(), client.dispatchStats());
             }
-        } catch (Exception e) {
-            log.error("Error during connection health check", e);
         }
     }
 
     /**
-     * Force reconnection to Yahoo Finance WebSocket
+     * Force reconnection of all Yahoo Finance WebSockets
      */
-    public synchronized void reconnect() {
+    public void reconnect() {
+        shards.forEach(this::connect);
+    }
+
+    private Shard addShard() {
+        var shard = new Shard(shards.size());
+        shards.add(shard);
+        return shard;
+    }
+
+    private void connect(Shard shard) {
+        shard.connectLock.lock();
         try {
-            if (webSocketClient != null) webSocketClient.close();
-            createAndConnectClient();
+            if (shuttingDown) return;
+            if (shard.client != null) shard.client.close();
 
-            if (webSocketClient.waitForConnection(10, TimeUnit.SECONDS)) {
-                if (!subscribedSymbols.isEmpty()) {
-                    String[] symbolsArray = subscribedSymbols.toArray(new String[0]);
-                    webSocketClient.subscribeToSymbols(symbolsArray);
-                }
+            var client = clientFactory.get();
+            shard.client = client;
+            client.addTickerCallback(this::onTickerUpdate);
+            client.onDisconnect(() -> onDisconnect(shard, client));
+            log.info("Connecting to Yahoo Finance WebSocket {}...", shard.index);
+            client.connect();
+            if (client.waitForConnection(10, TimeUnit.SECONDS)) {
+                shard.failures = 0;
+                if (!shard.symbols.isEmpty()) client.subscribeToSymbols(shard.symbols.toArray(new String[0]));
+            } else {
+                shard.failures++;
+                scheduleReconnect(shard);
             }
         } catch (Exception e) {
-            log.error("Error during reconnection", e);
+            shard.failures++;
+            log.error("Error connecting WebSocket {}", shard.index, e);
+            scheduleReconnect(shard);
+        } finally {
+            shard.connectLock.unlock();
         }
     }
 
-    private void createAndConnectClient() {
-        webSocketClient = new YahooFinanceWebSocketClient();
-        webSocketClient.addTickerCallback(this::onTickerUpdate);
-        webSocketClient.connect();
-        log.info("Connecting to Yahoo Finance WebSocket...");
-        webSocketClient.waitForConnection(10, TimeUnit.SECONDS);
+    private void onDisconnect(Shard shard, YahooFinanceWebSocketClient client) {
+        if (shuttingDown || shard.client != client) return;    // closed by connect or shutdown
+        scheduleReconnect(shard);
+    }
+
+    private void scheduleReconnect(Shard shard) {
+        if (shuttingDown || !shard.reconnectScheduled.compareAndSet(false, true)) return;
+
+        var delay = Math.min(MAX_RECONNECT_BACKOFF_MILLIS, reconnectBackoffMillis << Math.min(shard.failures, 16));
+        log.info("Reconnect WebSocket {} in {}ms", shard.index, delay);
+        reconnectScheduler.schedule(() -> {
+            shard.reconnectScheduled.set(false);
+            connect(shard);
+        }, delay, TimeUnit.MILLISECONDS);
     }
 
     private void onTickerUpdate(YahooTicker ticker) {
         String symbol = ticker.getId();
+        // a tick queued before unsubscribe must not recreate the entries removeSubscription cleared
+        if (!subscriptions.containsKey(symbol)) {
+            log.debug("Ignore ticker of unsubscribed {}", symbol);
+            return;
+        }
         log.debug("Updated ticker for {}: price=${}", symbol, ticker.getPrice());
-        latestTickers.put(symbol, ticker);
+        lastUpdateMillis.computeIfAbsent(symbol, k -> new AtomicLong()).set(System.currentTimeMillis());
+        var latest = latestTickers.computeIfAbsent(symbol, k -> new YahooTicker());
+        synchronized (latest) {     // no blocking inside, only a consistent copy for getLatestTicker
+            latest.copyFrom(ticker);
+        }
+        tickerListeners.forEach(l -> l.accept(ticker));
     }
 }
@@ -6,25 +6,68 @@ import squote.service.yahoo.YahooTicker;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.util.Base64;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
+/**
+ * Decode into a reused buffer and ticker, strings are interned, so parsing a known symbol allocates nothing.
+ * An instance is not thread safe, the ticker returned by parse is overwritten by the next call.
+ */
 public class YahooProtobufParser {
     private static final Logger logger = LoggerFactory.getLogger(YahooProtobufParser.class);
 
+    private static final int[] BASE64_VALUES = new int[128];
+    static {
+        Arrays.fill(BASE64_VALUES, -1);
+        var chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < chars.length(); i++) BASE64_VALUES[chars.charAt(i)] = i;
+    }
+
+    private ByteBuffer buffer = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+    private final YahooTicker ticker = new YahooTicker();
+    private final StringTable strings = new StringTable();
+
     public static YahooTicker parseYahooTicker(String base64Data) {
+        return new YahooProtobufParser().parse(base64Data.toCharArray(), 0, base64Data.length());
+    }
+
+    /**
+     * @return the reused ticker, or null if the message cannot be decoded
+     */
+    public YahooTicker parse(char[] base64, int offset, int length) {
         try {
-            byte[] data = Base64.getDecoder().decode(base64Data);
-            return parseYahooTicker(data);
+            decodeBase64(base64, offset, length);
         } catch (Exception e) {
             logger.error("Failed to decode base64 protobuf message", e);
             return null;
         }
+        ticker.reset();
+        parseYahooTicker(buffer, ticker);
+        return ticker;
     }
 
-    private static YahooTicker parseYahooTicker(byte[] data) {
-        var ticker = new YahooTicker();
-        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
-        
+    private void decodeBase64(char[] chars, int offset, int length) {
+        var capacity = length / 4 * 3 + 3;
+        if (buffer.capacity() < capacity) buffer = ByteBuffer.allocate(capacity * 2).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.clear();
+
+        int bits = 0, bitCount = 0;
+        for (int i = offset; i < offset + length; i++) {
+            var c = chars[i];
+            if (c == '=') break;
+            var value = c < 128 ? BASE64_VALUES[c] : -1;
+            if (value < 0) throw new IllegalArgumentException("Illegal base64 character " + (int) c);
+            bits = (bits << 6) | value;
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                buffer.put((byte) (bits >> bitCount));
+            }
+        }
+        buffer.flip();
+    }
+
+    private void parseYahooTicker(ByteBuffer buffer, YahooTicker ticker) {
         while (buffer.hasRemaining()) {
             try {
                 // Read field tag and wire type
@@ -107,8 +150,6 @@ public class YahooProtobufParser {
                 break; // Stop parsing if we hit an error
             }
         }
-        
-        return ticker;
     }
     
     /**
@@ -150,17 +191,17 @@ public class YahooProtobufParser {
     }
     
     /**
-     * Read a length-delimited string from the buffer
+     * Read a length-delimited string from the buffer, interned
      */
-    private static String readString(ByteBuffer buffer) {
+    private String readString(ByteBuffer buffer) {
         int length = readVarint(buffer);
         if (length <= 0 || buffer.remaining() < length) {
             return "";
         }
-        
-        byte[] stringBytes = new byte[length];
-        buffer.get(stringBytes);
-        return new String(stringBytes);
+
+        var value = strings.intern(buffer, buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        return value;
     }
     
     /**
@@ -195,4 +236,58 @@ public class YahooProtobufParser {
                 break;
         }
     }
-} 
+
+    /**
+     * Open addressing table from UTF-8 bytes to String, looked up without copying the bytes
+     */
+    private static class StringTable {
+        private byte[][] keys = new byte[64][];
+        private String[] values = new String[64];
+        private int size;
+
+        String intern(ByteBuffer buffer, int offset, int length) {
+            var hash = 1;
+            for (int i = 0; i < length; i++) hash = 31 * hash + buffer.get(offset + i);
+
+            var mask = keys.length - 1;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                var key = keys[slot];
+                if (key == null) break;
+                if (equals(key, buffer, offset, length)) return values[slot];
+            }
+
+            var bytes = new byte[length];
+            buffer.get(offset, bytes);
+            var value = new String(bytes, StandardCharsets.UTF_8);
+            if (++size * 2 > keys.length) resize();
+            put(bytes, value, hash);
+            return value;
+        }
+
+        private void put(byte[] key, String value, int hash) {
+            var mask = keys.length - 1;
+            var slot = hash & mask;
+            while (keys[slot] != null) slot = (slot + 1) & mask;
+            keys[slot] = key;
+            values[slot] = value;
+        }
+
+        private void resize() {
+            var oldKeys = keys;
+            var oldValues = values;
+            keys = new byte[oldKeys.length * 2][];
+            values = new String[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) put(oldKeys[i], oldValues[i], Arrays.hashCode(oldKeys[i]));
+            }
+        }
+
+        private static boolean equals(byte[] key, ByteBuffer buffer, int offset, int length) {
+            if (key.length != length) return false;
+            for (int i = 0; i < length; i++) {
+                if (key[i] != buffer.get(offset + i)) return false;
+            }
+            return true;
+        }
+    }
+}
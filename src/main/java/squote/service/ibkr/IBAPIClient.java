@@ -21,9 +21,15 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.text.SimpleDateFormat;
-import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static squote.SquoteConstants.Side.BUY;
 import static squote.SquoteConstants.Side.SELL;
@@ -31,7 +37,7 @@ import static squote.SquoteConstants.Side.SELL;
 public class IBAPIClient implements IBrokerAPIClient, EWrapper {
 	protected final Logger log = LoggerFactory.getLogger(getClass());
 
-	private enum Operation {GET_PENDING_ORDERS, GET_EXECUTIONS, HISTORICAL_DATA, CONTRACT_DETAILS, STOCK_QUOTE, PLACE_ORDER}
+	private enum Operation {HISTORICAL_DATA, CONTRACT_DETAILS, STOCK_QUOTE, PLACE_ORDER}
 	private final EJavaSignal signal;
 	private final EClientSocket client;
 	private final EReader reader;
@@ -43,7 +49,13 @@ public class IBAPIClient implements IBrokerAPIClient, EWrapper {
 	private final List<Bar> barList = new ArrayList<>();
 	private final Map<Integer, OrderDetail> orderDetails = new ConcurrentHashMap<>();
 	private final Map<Integer, OrderStatusDetail> orderStatusDetails = new ConcurrentHashMap<>();
-	private final Map<String, ExecDetail> executions = new ConcurrentHashMap<>();
+	private final Map<Integer, ExecutionRequest> executionRequests = new ConcurrentHashMap<>();
+	private final Map<Integer, CompletableFuture<OrderDetail>> placeOrderAcks = new ConcurrentHashMap<>();
+	private final Map<Integer, CompletableFuture<OrderStatusDetail>> cancelOrderAcks = new ConcurrentHashMap<>();
+	private final AtomicReference<CompletableFuture<Void>> openOrdersRequest = new AtomicReference<>();
+	private final CompletableFuture<Integer> nextValidIdReceived = new CompletableFuture<>();
+	private final AtomicInteger nextRequestId = new AtomicInteger(1000);
+	private final List<TradeUpdateListener> tradeUpdateListeners = new CopyOnWriteArrayList<>();
 	private final HttpClient httpClient = HttpClient.newHttpClient();
 	private final String reportQueryToken;
 	private final String executionReportQueryId;
@@ -92,7 +104,7 @@ public class IBAPIClient implements IBrokerAPIClient, EWrapper {
 			}
 		}).start();
 
-		waitForCondition(() -> currentOrderId > -1);
+		await(nextValidIdReceived, "nextValidId");
 		log.info("isConnected={}", isConnected());
 	}
 
@@ -106,21 +118,44 @@ public class IBAPIClient implements IBrokerAPIClient, EWrapper {
 		return client != null && client.isConnected();
 	}
 
-	private boolean waitForCondition(java.util.function.BooleanSupplier condition) {
-		Instant timeout = Instant.now().plusSeconds(timeoutSeconds);
-		while (timeout.isAfter(Instant.now())) {
-			try {
-				if (condition.getAsBoolean()) return true;
+	private <T> Optional<T> await(CompletableFuture<T> future, String operation) {
+		try {
+			return Optional.ofNullable(future.get(timeoutSeconds, TimeUnit.SECONDS));
+		} catch (TimeoutException e) {
+			log.warn("Timeout waiting for response of {}", operation);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof TimeoutException)
+				log.warn("Timeout waiting for response of {}", operation);
+			else
+				log.error("{} failed: {}", operation, e.getCause().getMessage());
+		} catch (InterruptedException e) {
+			log.error("Interrupted while waiting for {}", operation, e);
+			Thread.currentThread().interrupt();
+		}
+		return Optional.empty();
+	}
 
-				Thread.sleep(100);
-			} catch (InterruptedException e) {
-				log.error("Interrupted while waiting", e);
-				return false;
-			}
+	private synchronized int nextOrderId() {
+		return currentOrderId++;
+	}
+
+	private Map<String, Execution> requestExecutions(ExecutionFilter filter) {
+		var reqId = nextRequestId.getAndIncrement();
+		var request = new ExecutionRequest();
+		executionRequests.put(reqId, request);
+		try {
+			client.reqExecutions(reqId, filter);
+			await(request.completed, "reqExecutions " + reqId);
+		} finally {
+			executionRequests.remove(reqId);
 		}
 
-		log.warn("Timeout waiting for response");
-		return false;
+		var results = new HashMap<String, Execution>();
+		for (var execDetail : request.executions.values())
+			results.merge(Long.toString(execDetail.execution.orderId()),
+					toExecution(execDetail),
+					Execution::addExecution);
+		return results;
 	}
 
 	private void completeOperation(Operation operation) {
@@ -172,9 +207,16 @@ public class IBAPIClient implements IBrokerAPIClient, EWrapper {
 
 	@Override
 	public List<Order> getPendingOrders(Market market) {
-		client.reqOpenOrders();
+		var newRequest = new CompletableFuture<Void>();
+		var request = openOrdersRequest.updateAndGet(r -> r == null || r.isDone() ? newRequest : r);
+		if (request == newRequest) {	// share the in-flight request otherwise
+			// time out the request itself, a lost openOrderEnd must not leave it in flight for later callers
+			newRequest.orTimeout(timeoutSeconds, TimeUnit.SECONDS);
+			client.reqOpenOrders();
+		}
 
-		waitForCondition(() -> operationComplete.getOrDefault(Operation.GET_PENDING_ORDERS, false));
+		await(request, "reqOpenOrders");
+		if (!request.isDone()) openOrdersRequest.compareAndSet(request, null);	// our wait may elapse just before the request's own timeout
 
 		// workaround for market filtering
 		var currency = switch (market) {
@@ -195,21 +237,19 @@ public class IBAPIClient implements IBrokerAPIClient, EWrapper {
 	}
 
 	@Override
-	public Map<String, Execution> getStockTodayExecutions(Market market) {
-		executions.clear();
-
-		client.reqExecutions(currentOrderId++, new ExecutionFilter());
-
-		waitForCondition(() ->
-				operationComplete.getOrDefault(Operation.GET_EXECUTIONS, false));
+	public boolean subscribeTradeUpdates(TradeUpdateListener listener) {
+		tradeUpdateListeners.add(listener);	// IB pushes order status and fills of this client without subscription
+		return true;
+	}
 
-		var results = new HashMap<String, Execution>();
-		for (var execDetail : executions.values())
-			results.merge(Long.toString(execDetail.execution.orderId()),
-					toExecution(execDetail),
-					Execution::addExecution);
+	@Override
+	public void unsubscribeTradeUpdates(TradeUpdateListener listener) {
+		tradeUpdateListeners.remove(listener);
+	}
 
-		return Collections.emptyMap();
+	@Override
+	public Map<String, Execution> getStockTodayExecutions(Market market) {
+		return requestExecutions(new ExecutionFilter());
 	}
 
 	private Execution toExecution(ExecDetail execDetail) {
@@ -250,15 +290,17 @@ public class IBAPIClient implements IBrokerAPIClient, EWrapper {
 		try {
 			var contract = createContract(code);
 			var order = createIBOrder(side, quantity, price);
-			var orderId = currentOrderId++;
+			var orderId = nextOrderId();
 			log.info("Placing order: orderId={}, symbol={}, action={}, qty={}, price={}", 
 				orderId, code, side, quantity, price);
-			
+
+			var ack = new CompletableFuture<OrderDetail>();
+			placeOrderAcks.put(orderId, ack);
 			client.placeOrder(orderId, contract, order);
-			boolean success = waitForCondition(
-				() -> orderDetails.containsKey(orderId) && orderDetails.get(orderId).orderState.status().isActive()
-			);
-			
+			Optional.ofNullable(orderDetails.get(orderId)).filter(o -> o.orderState.status().isActive()).ifPresent(ack::complete);
+			var success = await(ack, "placeOrder " + orderId).isPresent();
+			placeOrderAcks.remove(orderId);
+
 			if (success) {
 				log.info("Order placed successfully: orderId={}", orderId);
 				return new PlaceOrderResponse(orderId, 0L, "");
@@ -275,11 +317,12 @@ public class IBAPIClient implements IBrokerAPIClient, EWrapper {
 	@Override
 	public CancelOrderResponse cancelOrder(long orderId, String code) {
 		var ibOrderId = (int) orderId;
+		var ack = new CompletableFuture<OrderStatusDetail>();
+		cancelOrderAcks.put(ibOrderId, ack);
 		client.cancelOrder(ibOrderId, new OrderCancel());
-		var success = waitForCondition(() ->
-				orderStatusDetails.containsKey(ibOrderId)
-						&& "Cancelled".equals(orderStatusDetails.get(ibOrderId).status)
-		);
+		Optional.ofNullable(orderStatusDetails.get(ibOrderId)).filter(OrderStatusDetail::isCancelled).ifPresent(ack::complete);
+		var success = await(ack, "cancelOrder " + ibOrderId).isPresent();
+		cancelOrderAcks.remove(ibOrderId);
 
 		return success
 				? new CancelOrderResponse(-1, "Cancelled")
@@ -295,19 +338,7 @@ public class IBAPIClient implements IBrokerAPIClient, EWrapper {
 		var dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 		var filter = new ExecutionFilter();
 		filter.time(dateFormat.format(fromDate));
-
-		executions.clear();
-		client.reqExecutions(currentOrderId++, filter);
-		waitForCondition(() ->
-				operationComplete.getOrDefault(Operation.GET_EXECUTIONS, false));
-
-		var results = new HashMap<String, Execution>();
-		for (var execDetail : executions.values())
-			results.merge(Long.toString(execDetail.execution.orderId()),
-					toExecution(execDetail),
-					Execution::addExecution);
-
-		return Collections.emptyMap();
+		return requestExecutions(filter);
 	}
 
 	/**
@@ -608,10 +639,14 @@ public class IBAPIClient implements IBrokerAPIClient, EWrapper {
 	@Override
 	public void orderStatus(int orderId, String status, Decimal filled, Decimal remaining, double avgFillPrice, int permId, int parentId, double lastFillPrice, int clientId, String whyHeld, double mktCapPrice) {
 		log.info("Order status update: orderId={}, status={}, filled={}, remaining={}", orderId, status, filled, remaining);
-		orderStatusDetails.put(orderId, new OrderStatusDetail(orderId, status, filled, remaining, avgFillPrice));
+		var detail = new OrderStatusDetail(orderId, status, filled, remaining, avgFillPrice);
+		orderStatusDetails.put(orderId, detail);
+		if (detail.isCancelled()) Optional.ofNullable(cancelOrderAcks.get(orderId)).ifPresent(f -> f.complete(detail));
 	}
 
-	record OrderStatusDetail(int orderId, String status, Decimal filled, Decimal remaining, double avgFillPrice) {}
+	record OrderStatusDetail(int orderId, String status, Decimal filled, Decimal remaining, double avgFillPrice) {
+		boolean isCancelled() { return "Cancelled".equals(status); }
+	}
 
 	record OrderDetail(int orderId, Contract contract, com.ib.client.Order order, OrderState orderState, Date updatedAt) {
 		@NotNull
@@ -624,17 +659,27 @@ public class IBAPIClient implements IBrokerAPIClient, EWrapper {
 
 	record ExecDetail(Contract contract, com.ib.client.Execution execution) {}
 
+	record ExecutionRequest(Map<String, ExecDetail> executions, CompletableFuture<Void> completed) {
+		ExecutionRequest() { this(new ConcurrentHashMap<>(), new CompletableFuture<>()); }
+	}
+
 	@Override
 	public void openOrder(int orderId, Contract contract, com.ib.client.Order order, OrderState orderState) {
 		log.info("Received open order: orderId={}, symbol={}, action={}, qty={}",
 			orderId, contract.symbol(), order.action(), order.totalQuantity());
-		orderDetails.put(orderId, new OrderDetail(orderId, contract, order, orderState, new Date()));
+		var detail = new OrderDetail(orderId, contract, order, orderState, new Date());
+		orderDetails.put(orderId, detail);
+		if (orderState.status().isActive()) Optional.ofNullable(placeOrderAcks.get(orderId)).ifPresent(f -> f.complete(detail));
+		if (!tradeUpdateListeners.isEmpty()) {
+			var pushedOrder = toOrder(detail, "HKD".equals(contract.currency()) ? Market.HK : Market.US);
+			tradeUpdateListeners.forEach(l -> l.onOrderUpdate(pushedOrder, orderState.status().isActive()));
+		}
 	}
 
 	@Override
 	public void openOrderEnd() {
 		log.info("Open orders request completed");
-		completeOperation(Operation.GET_PENDING_ORDERS);
+		Optional.ofNullable(openOrdersRequest.get()).ifPresent(f -> f.complete(null));
 	}
 
 	@Override
@@ -661,6 +706,7 @@ public class IBAPIClient implements IBrokerAPIClient, EWrapper {
 	public void nextValidId(int orderId) {
 		log.info("nextValidId:" + orderId);
 		currentOrderId = orderId;
+		nextValidIdReceived.complete(orderId);
 	}
 
 	@Override
@@ -701,13 +747,21 @@ public class IBAPIClient implements IBrokerAPIClient, EWrapper {
 
 	@Override
 	public void execDetails(int reqId, Contract contract, com.ib.client.Execution execution) {
-		executions.put(execution.execId(), new ExecDetail(contract, execution));
+		var execDetail = new ExecDetail(contract, execution);
+		if (reqId == -1) {	// pushed fill of order placed by this client
+			var fill = toExecution(execDetail);
+			tradeUpdateListeners.forEach(l -> l.onFill(fill));
+			return;
+		}
+
+		Optional.ofNullable(executionRequests.get(reqId))
+				.ifPresent(r -> r.executions.put(execution.execId(), execDetail));
 	}
 
 	@Override
 	public void execDetailsEnd(int reqId) {
         log.info("execDetailsEnd: {}", reqId);
-		completeOperation(Operation.GET_EXECUTIONS);
+		Optional.ofNullable(executionRequests.get(reqId)).ifPresent(r -> r.completed.complete(null));
 	}
 
 	@Override
@@ -897,10 +951,15 @@ public class IBAPIClient implements IBrokerAPIClient, EWrapper {
 			log.error("Error validating request. Check contract details and parameters.");
 		} else if (lastErrorCode == 322) {
 			log.error("Error processing request. This might be a server-side issue.");
+		} else if (lastErrorCode == 201) {
+			log.error("OrderId {} rejected: {}", id, errorMsg);
+			Optional.ofNullable(placeOrderAcks.get(id)).ifPresent(f -> f.completeExceptionally(new IllegalStateException(errorMsg)));
 		} else if (lastErrorCode == 10147) {
 			log.error("OrderId {} that needs to be cancelled is not found.", id);
+			Optional.ofNullable(cancelOrderAcks.get(id)).ifPresent(f -> f.completeExceptionally(new IllegalStateException(errorMsg)));
 		} else if (lastErrorCode == 10148) {
 			log.error("OrderId {} that needs to be cancelled cannot be cancelled, state: {}", id, errorMsg);
+			Optional.ofNullable(cancelOrderAcks.get(id)).ifPresent(f -> f.completeExceptionally(new IllegalStateException(errorMsg)));
 		} else if (lastErrorCode == 502) {
 			log.error("Couldn't connect to TWS. Confirm that 'Enable ActiveX and Socket Clients' is enabled and connection port is set correctly.");
 		}
@@ -915,6 +974,7 @@ public class IBAPIClient implements IBrokerAPIClient, EWrapper {
 	@Override
 	public void connectionClosed() {
 		log.info("IB connection closed");
+		tradeUpdateListeners.forEach(TradeUpdateListener::onConnectionLost);
 	}
 
 	@Override
@@ -0,0 +1,103 @@
+package squote.service.yahoo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Hands tickers from the socket read thread to one dispatch thread.
+ * Each symbol has one slot, a tick arriving before the previous one of the same symbol is dispatched replaces it (conflated).
+ * The queue holds symbols with a pending tick, a tick is dropped only when more than capacity symbols are pending.
+ */
+public class TickerDispatcher implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(TickerDispatcher.class);
+
+    public record Stats(int queueDepth, long dispatched, long conflated, long dropped) {}
+
+    private static class Slot {
+        final YahooTicker ticker = new YahooTicker();
+        boolean pending;
+    }
+
+    private final String name;
+    private final Consumer<YahooTicker> sink;
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+    private final BlockingQueue<Slot> pendingSlots;
+    private final YahooTicker dispatching = new YahooTicker();     // only touched by the dispatch thread
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder conflated = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile Thread thread;
+
+    public TickerDispatcher(String name, int capacity, Consumer<YahooTicker> sink) {
+        this.name = name;
+        this.sink = sink;
+        this.pendingSlots = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Copy the ticker and return without waiting for the sink
+     */
+    public void publish(YahooTicker ticker) {
+        if (thread == null) start();
+
+        var slot = slots.computeIfAbsent(ticker.getId(), k -> new Slot());
+        synchronized (slot) {   // no blocking inside
+            slot.ticker.copyFrom(ticker);
+            if (slot.pending) {
+                conflated.increment();
+                return;
+            }
+            slot.pending = true;
+        }
+
+        if (!pendingSlots.offer(slot)) {
+            synchronized (slot) {
+                slot.pending = false;
+            }
+            dropped.increment();
+            log.warn("{}: dispatch queue full, dropped tick of {}", name, ticker.getId());
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(pendingSlots.size(), dispatched.sum(), conflated.sum(), dropped.sum());
+    }
+
+    private synchronized void start() {
+        if (thread != null) return;
+        thread = Thread.ofVirtual().name(name).start(this::dispatchLoop);
+    }
+
+    private void dispatchLoop() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                var slot = pendingSlots.take();
+                synchronized (slot) {
+                    dispatching.copyFrom(slot.ticker);
+                    slot.pending = false;
+                }
+                try {
+                    sink.accept(dispatching);
+                } catch (Exception e) {
+                    log.error("{}: error dispatching ticker {}", name, dispatching.getId(), e);
+                }
+                dispatched.increment();
+            }
+        } catch (InterruptedException e) {
+            log.info("{}: dispatch stopped", name);
+        }
+    }
+
+    @Override
+    public void close() {
+        var t = thread;
+        if (t != null) t.interrupt();
+    }
+}
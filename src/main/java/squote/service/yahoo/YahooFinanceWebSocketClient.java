@@ -1,13 +1,15 @@
 package squote.service.yahoo;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import org.java_websocket.client.WebSocketClient;
 import org.java_websocket.handshake.ServerHandshake;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import squote.service.YahooProtobufParser;
 
+import java.io.IOException;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.util.List;
@@ -21,13 +23,15 @@ public class YahooFinanceWebSocketClient extends WebSocketClient {
     private static final Logger log = LoggerFactory.getLogger(YahooFinanceWebSocketClient.class);
     private static final String YAHOO_FINANCE_WEBSOCKET_URL = "wss://streamer.finance.yahoo.com/?version=2";
     private final CountDownLatch connectionLatch;
-    private final ObjectMapper objectMapper;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final YahooProtobufParser parser = new YahooProtobufParser();   // messages arrive on one thread
+    private volatile Runnable disconnectListener = () -> {};
+    private final TickerDispatcher dispatcher = new TickerDispatcher("yahoo-ticker-dispatch", 1024, this::onTickerUpdate);
     private final List<Consumer<YahooTicker>> tickerCallbacks;
     
     public YahooFinanceWebSocketClient() {
         super(URI.create(YAHOO_FINANCE_WEBSOCKET_URL));
         this.connectionLatch = new CountDownLatch(1);
-        this.objectMapper = new ObjectMapper();
         this.tickerCallbacks = new CopyOnWriteArrayList<>();
     }
 
@@ -37,23 +41,34 @@ public class YahooFinanceWebSocketClient extends WebSocketClient {
         connectionLatch.countDown();
     }
     
+    /**
+     * Stream the JSON frame and decode "message" into the parser's reused ticker, nothing is allocated per tick for a known symbol.
+     * Callbacks run on the dispatch thread, so a slow callback does not stall socket reads.
+     */
     @Override
     public void onMessage(String message) {
         log.debug("Received text message: {}", message);
-        
-        try {
-            JsonNode jsonNode = objectMapper.readTree(message);
 
-            if (jsonNode.has("type")
-                    && "pricing".equals(jsonNode.get("type").asText())
-                    && jsonNode.has("message")) {
-
-                var ticker = YahooProtobufParser.parseYahooTicker(jsonNode.get("message").asText());
-                if (ticker != null) {
-                    log.info("Parsed ticker from JSON message: {}", ticker);
-                    onTickerUpdate(ticker);
+        try (var json = jsonFactory.createParser(message)) {
+            if (json.nextToken() != JsonToken.START_OBJECT) return;
+
+            var pricing = false;
+            YahooTicker ticker = null;
+            while (json.nextToken() == JsonToken.FIELD_NAME) {
+                var field = json.currentName();
+                json.nextToken();
+                if ("type".equals(field)) {
+                    pricing = textEquals(json, "pricing");
+                } else if ("message".equals(field) && json.currentToken() == JsonToken.VALUE_STRING) {
+                    ticker = parser.parse(json.getTextCharacters(), json.getTextOffset(), json.getTextLength());
+                } else {
+                    json.skipChildren();
                 }
+            }
 
+            if (pricing && ticker != null) {
+                log.debug("Parsed ticker from JSON message: {}", ticker);
+                dispatcher.publish(ticker);
             } else {
                 log.debug("Full message content: {}", message);
             }
@@ -62,6 +77,16 @@ public class YahooFinanceWebSocketClient extends WebSocketClient {
         }
     }
 
+    private static boolean textEquals(JsonParser json, String expected) throws IOException {
+        if (json.currentToken() != JsonToken.VALUE_STRING || json.getTextLength() != expected.length()) return false;
+        var chars = json.getTextCharacters();
+        var offset = json.getTextOffset();
+        for (int i = 0; i < expected.length(); i++) {
+            if (chars[offset + i] != expected.charAt(i)) return false;
+        }
+        return true;
+    }
+
     @Override
     public void onMessage(ByteBuffer bytes) {
         log.warn("Unexpected byte message");
@@ -69,7 +94,9 @@ public class YahooFinanceWebSocketClient extends WebSocketClient {
     
     @Override
     public void onClose(int code, String reason, boolean remote) {
-        log.info("WebSocket connection closed: {} - {}", code, reason);
+        log.info("WebSocket connection closed: {} - {}, dispatch {}", code, reason, dispatcher.stats());
+        dispatcher.close();
+        disconnectListener.run();
     }
     
     @Override
@@ -77,6 +104,10 @@ public class YahooFinanceWebSocketClient extends WebSocketClient {
         log.error("WebSocket error", ex);
     }
     
+    /**
+     * Called on the dispatch thread with the latest tick of a symbol.
+     * The ticker is reused for the next tick, callbacks copy what they keep.
+     */
     protected void onTickerUpdate(YahooTicker ticker) {
         for (Consumer<YahooTicker> callback : tickerCallbacks) {
             try {
@@ -103,6 +134,17 @@ public class YahooFinanceWebSocketClient extends WebSocketClient {
 //        System.out.println();
     }
 
+    /**
+     * Called on the socket thread when the connection is closed or cannot be opened
+     */
+    public void onDisconnect(Runnable listener) {
+        this.disconnectListener = listener;
+    }
+
+    public TickerDispatcher.Stats dispatchStats() {
+        return dispatcher.stats();
+    }
+
     /**
      * Add a callback for ticker updates
      */
@@ -142,23 +184,35 @@ public class YahooFinanceWebSocketClient extends WebSocketClient {
     }
 
     public void subscribeToSymbols(String... symbols) {
+        sendSymbols("subscribe", symbols);
+    }
+
+    /**
+     * Stop streaming the symbols on this socket
+     */
+    public void unsubscribeFromSymbols(String... symbols) {
+        sendSymbols("unsubscribe", symbols);
+    }
+
+    private void sendSymbols(String action, String... symbols) {
         if (!isOpen()) {
-            log.warn("WebSocket not connected. Cannot subscribe to symbols.");
+            log.warn("WebSocket not connected. Cannot {} symbols.", action);
             return;
         }
-        
+
         try {
-            String subscribeMessage = String.format(
-                "{\"subscribe\":[%s]}", 
+            String message = String.format(
+                "{\"%s\":[%s]}",
+                action,
                 String.join(",", java.util.Arrays.stream(symbols)
                     .map(s -> "\"" + s + "\"")
                     .toArray(String[]::new))
             );
-            
-            send(subscribeMessage);
-            log.info("Subscribed to symbols: {}", String.join(", ", symbols));
+
+            send(message);
+            log.info("{} symbols: {}", action, String.join(", ", symbols));
         } catch (Exception e) {
-            log.error("Error subscribing to symbols", e);
+            log.error("Error sending {} of symbols", action, e);
         }
     }
 
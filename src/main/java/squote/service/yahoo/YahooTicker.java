@@ -205,6 +205,54 @@ public class YahooTicker {
     public float getMarketCap() { return marketCap; }
     public void setMarketCap(float marketCap) { this.marketCap = marketCap; }
 
+    /**
+     * Copy all fields, for keeping the latest value of a reused ticker
+     */
+    public void copyFrom(YahooTicker other) {
+        id = other.id;
+        price = other.price;
+        time = other.time;
+        currency = other.currency;
+        exchange = other.exchange;
+        quoteType = other.quoteType;
+        marketHours = other.marketHours;
+        changePercent = other.changePercent;
+        dayVolume = other.dayVolume;
+        dayHigh = other.dayHigh;
+        dayLow = other.dayLow;
+        change = other.change;
+        shortName = other.shortName;
+        expireDate = other.expireDate;
+        openPrice = other.openPrice;
+        previousClose = other.previousClose;
+        strikePrice = other.strikePrice;
+        underlyingSymbol = other.underlyingSymbol;
+        openInterest = other.openInterest;
+        optionsType = other.optionsType;
+        miniOption = other.miniOption;
+        lastSize = other.lastSize;
+        bid = other.bid;
+        bidSize = other.bidSize;
+        ask = other.ask;
+        askSize = other.askSize;
+        priceHint = other.priceHint;
+        vol24hr = other.vol24hr;
+        volAllCurrencies = other.volAllCurrencies;
+        fromCurrency = other.fromCurrency;
+        lastMarket = other.lastMarket;
+        circulatingSupply = other.circulatingSupply;
+        marketCap = other.marketCap;
+    }
+
+    /**
+     * Clear all fields, for parsing the next message into a reused ticker
+     */
+    public void reset() {
+        copyFrom(EMPTY);
+    }
+
+    private static final YahooTicker EMPTY = new YahooTicker();
+
     @Override
     public String toString() {
         return String.format("YahooTicker{id='%s', price=%.2f, time=%d, exchange='%s', changePercent=%.2f%%}",
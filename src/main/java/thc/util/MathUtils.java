@@ -1,18 +1,51 @@
 package thc.util;
 
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
-
 import java.util.List;
 
 public class MathUtils {
     public static double calStdDev(List<Double> data) {
-        DescriptiveStatistics stats = new DescriptiveStatistics();
-        for (int i = 1; i < data.size(); i++) {
-            if (data.get(i) == 0 || data.get(i-1) == 0) continue;
-            var change = calculatePercentageChange(data.get(i-1), data.get(i));
-            stats.addValue(change);
+        return calStdDev(data.stream().mapToDouble(d -> d).toArray());
+    }
+
+    /**
+     * Sample stdDev of percentage change between closes, changes from or to a 0 close are skipped
+     */
+    public static double calStdDev(double[] closes) {
+        var stats = new RollingStdDev();
+        for (int i = 1; i < closes.length; i++) {
+            var change = percentageChange(closes, i);
+            if (!Double.isNaN(change)) stats.add(change);
         }
-        return stats.getStandardDeviation();
+        return stats.stdDev();
+    }
+
+    /**
+     * stdDevs[r][i] is calStdDev of the ranges[r] closes ending at closes[i], fewer at the beginning.
+     * All ranges in one pass, each close updates every window in O(1).
+     */
+    public static double[][] rollingStdDevs(double[] closes, int... ranges) {
+        var windows = new RollingStdDev[ranges.length];
+        for (int r = 0; r < ranges.length; r++) windows[r] = new RollingStdDev();
+
+        var stdDevs = new double[ranges.length][closes.length];
+        for (int i = 0; i < closes.length; i++) {
+            var change = percentageChange(closes, i);
+            for (int r = 0; r < ranges.length; r++) {
+                if (!Double.isNaN(change)) windows[r].add(change);
+                var evicted = percentageChange(closes, i - ranges[r] + 1);
+                if (!Double.isNaN(evicted)) windows[r].remove(evicted);
+                stdDevs[r][i] = windows[r].stdDev();
+            }
+        }
+        return stdDevs;
+    }
+
+    /**
+     * Change from the previous close, NaN for the first close or if either close is 0
+     */
+    public static double percentageChange(double[] closes, int index) {
+        if (index < 1 || closes[index - 1] == 0 || closes[index] == 0) return Double.NaN;
+        return calculatePercentageChange(closes[index - 1], closes[index]);
     }
 
     public static double calculatePercentageChange(double originalValue, double newValue) {
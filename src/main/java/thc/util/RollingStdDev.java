@@ -0,0 +1,44 @@
+package thc.util;
+
+/**
+ * Sample standard deviation of a sliding window, updated in O(1) per value with Welford's algorithm
+ */
+public class RollingStdDev {
+    private int count;
+    private double mean;
+    private double m2;
+
+    public int getCount() {
+        return count;
+    }
+
+    public void add(double value) {
+        count++;
+        var delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+    }
+
+    public void remove(double value) {
+        if (count <= 1) {
+            count = 0;
+            mean = 0;
+            m2 = 0;
+            return;
+        }
+
+        count--;
+        var delta = value - mean;
+        mean -= delta / count;
+        m2 -= delta * (value - mean);
+    }
+
+    /**
+     * Same as DescriptiveStatistics.getStandardDeviation, NaN for empty window
+     */
+    public double stdDev() {
+        if (count == 0) return Double.NaN;
+        if (count == 1) return 0;
+        return Math.sqrt(Math.max(0, m2) / (count - 1));
+    }
+}
@@ -15,6 +15,7 @@ import squote.domain.repository.FundRepository;
 import squote.domain.repository.HoldingStockRepository;
 import squote.security.AuthenticationServiceStub;
 import squote.service.BinanceAPIService;
+import squote.service.QuoteService;
 import squote.service.YahooFinanceService;
 
 import java.math.BigDecimal;
@@ -24,6 +25,8 @@ import java.util.stream.StreamSupport;
 
 import static java.math.RoundingMode.HALF_UP;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.when;
 
 public class RestStockControllerTest extends IntegrationTest {
@@ -37,6 +40,8 @@ public class RestStockControllerTest extends IntegrationTest {
     BinanceAPIService realBinanceAPIService;
     YahooFinanceService mockYahooFinanceService;
     YahooFinanceService realYahooFinanceService;
+    QuoteService mockQuoteService;
+    QuoteService realQuoteService;
 
     @BeforeEach
     public void setup() {
@@ -47,6 +52,10 @@ public class RestStockControllerTest extends IntegrationTest {
         realYahooFinanceService = restStockController.yahooFinanceService;
         mockYahooFinanceService = Mockito.mock(YahooFinanceService.class);
         restStockController.yahooFinanceService = mockYahooFinanceService;
+
+        realQuoteService = restStockController.quoteService;
+        mockQuoteService = Mockito.mock(QuoteService.class);
+        restStockController.quoteService = mockQuoteService;
     }
 
     @AfterEach
@@ -54,6 +63,7 @@ public class RestStockControllerTest extends IntegrationTest {
         authenticationServiceStub.userId = authenticationServiceStub.TESTER_USERID;
         restStockController.binanceAPIService = realBinanceAPIService;
         restStockController.yahooFinanceService = realYahooFinanceService;
+        restStockController.quoteService = realQuoteService;
     }
 
     @Test
@@ -129,8 +139,6 @@ public class RestStockControllerTest extends IntegrationTest {
 
     @Test
     public void test_quote_supportMultiUser() throws ExecutionException, InterruptedException {
-        when(mockYahooFinanceService.getLatestTicker(Mockito.anyString())).thenReturn(Optional.empty());
-        
         authenticationServiceStub.userId = UUID.randomUUID().toString();
         holdingStockRepository.save(createSell2800Holding(authenticationServiceStub.userId));
 
@@ -146,8 +154,6 @@ public class RestStockControllerTest extends IntegrationTest {
 
     @Test
     public void quote_givenCryptoFund_willUpdateNetProfit() throws Exception {
-        when(mockYahooFinanceService.getLatestTicker(Mockito.anyString())).thenReturn(Optional.empty());
-        
         authenticationServiceStub.userId = UUID.randomUUID().toString();
         Fund testFund = createCryptoFund(authenticationServiceStub.userId);
         fundRepository.save(testFund);
@@ -169,7 +175,7 @@ public class RestStockControllerTest extends IntegrationTest {
         String codes = "AAPL.US,2800";
         StockQuote aaplQuote = new StockQuote("AAPL.US").setPrice("150.75");
         
-        when(mockYahooFinanceService.getLatestTicker("AAPL.US")).thenReturn(Optional.of(aaplQuote));
+        when(mockQuoteService.getQuotes(argThat(c -> c.contains("AAPL.US")), anyLong())).thenReturn(Map.of("AAPL.US", aaplQuote));
         when(mockBinanceAPIService.getAllPrices()).thenReturn(Collections.emptyMap());
         
         Map<String, Object> resultMap = restStockController.quote(codes);
@@ -177,12 +183,11 @@ public class RestStockControllerTest extends IntegrationTest {
         
         assertThat(allQuotes).containsKey("AAPL.US");
         assertThat(allQuotes.get("AAPL.US").getPrice()).isEqualTo("150.75");
-        Mockito.verify(mockYahooFinanceService).subscribeToSymbols("AAPL.US");
+        Mockito.verify(mockYahooFinanceService).touchSymbols("AAPL.US");
     }
 
     @Test
     public void test_quote_missingUSStockQuote_shouldNotContainNullInQuotes() throws ExecutionException, InterruptedException {
-        when(mockYahooFinanceService.getLatestTicker("QQQ.US")).thenReturn(Optional.empty());
         when(mockBinanceAPIService.getAllPrices()).thenReturn(Collections.emptyMap());
         
         Map<String, Object> resultMap = restStockController.quote("QQQ.US");
@@ -0,0 +1,68 @@
+package squote.domain;
+
+import org.junit.jupiter.api.Test;
+import thc.util.MathUtils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class DailyCloseSeriesTest {
+
+    @Test
+    void add_stdDevsSameAsFullRecalculation() {
+        var ranges = List.of(3, 5, 20);
+        var series = new DailyCloseSeries("2800", ranges);
+        var closes = new ArrayList<Double>();
+        var random = new Random(1);
+        for (int i = 0; i < 60; i++) {
+            var close = i == 30 ? 0 : 100 + random.nextGaussian() * 5;    // 0 close is skipped
+            closes.add(close);
+            series.add(new Date(i), close);
+
+            for (var range : ranges) {
+                var expected = MathUtils.calStdDev(closes.subList(Math.max(0, closes.size() - range), closes.size()));
+                if (Double.isNaN(expected))
+                    assertThat(series.stdDevs().get(range)).isNaN();
+                else
+                    assertThat(series.stdDevs().get(range)).isCloseTo(expected, within(1e-9));
+            }
+        }
+        assertThat(series.closes).hasSize(21);
+        assertThat(series.lastDate).isEqualTo(new Date(59));
+    }
+
+    @Test
+    void add_rebaselineWindowsEveryRebaselineAdds() {
+        var series = new DailyCloseSeries("2800", List.of(3));
+        var closes = new ArrayList<Double>();
+        var random = new Random(2);
+        for (int i = 0; i < 10; i++) addClose(series, closes, i % 2 == 0 ? 1 : 1e8);    // huge changes, then evicted
+        for (int i = 10; i < DailyCloseSeries.REBASELINE_ADDS - 1; i++) addClose(series, closes, 100 + random.nextGaussian() * 1e-6);
+        var expected = MathUtils.calStdDev(closes.subList(closes.size() - 3, closes.size()));
+        assertThat(Math.abs(series.stdDevs().get(3) - expected)).isGreaterThan(1e-8);    // error left by the evicted values
+
+        addClose(series, closes, closes.getLast());
+
+        expected = MathUtils.calStdDev(closes.subList(closes.size() - 3, closes.size()));
+        assertThat(series.stdDevs().get(3)).isCloseTo(expected, within(1e-12));
+        assertThat(series.windows.get(3).getCount()).isEqualTo(2);
+        assertThat(series.addsSinceRebaseline).isZero();
+    }
+
+    @Test
+    void hasRanges() {
+        var series = new DailyCloseSeries("2800", List.of(10, 20));
+        assertThat(series.hasRanges(List.of(20, 10))).isTrue();
+        assertThat(series.hasRanges(List.of(10, 20, 30))).isFalse();
+    }
+
+    private void addClose(DailyCloseSeries series, List<Double> closes, double close) {
+        closes.add(close);
+        series.add(new Date(closes.size()), close);
+    }
+}
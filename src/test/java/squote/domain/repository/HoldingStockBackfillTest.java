@@ -0,0 +1,34 @@
+package squote.domain.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import squote.domain.HoldingStock;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+class HoldingStockBackfillTest {
+	HoldingStockRepository mockHoldingRepo = mock(HoldingStockRepository.class);
+	HoldingStockIndexes holdingStockIndexes = new HoldingStockIndexes(mock(MongoTemplate.class), mockHoldingRepo);
+
+	@Test
+	void backfillFillIdList_oldHoldings() {
+		var old = new HoldingStock();
+		ReflectionTestUtils.setField(old, "fillIds", ",fill1");
+		when(mockHoldingRepo.findByFillIdsIsNotNullAndFillIdListIsNull()).thenReturn(List.of(old));
+
+		assertEquals(1, holdingStockIndexes.backfillFillIdList());
+
+		verify(mockHoldingRepo).saveAll(List.of(old));
+		assertEquals(List.of("fill1"), old.getFillIdList());
+	}
+
+	@Test
+	void backfillFillIdList_nothingToBackfill() {
+		assertEquals(0, holdingStockIndexes.backfillFillIdList());
+		verify(mockHoldingRepo, never()).saveAll(any());
+	}
+}
@@ -0,0 +1,23 @@
+package squote.domain.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import squote.IntegrationTest;
+import squote.domain.HoldingStock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HoldingStockIndexesTest extends IntegrationTest {
+	@Autowired HoldingStockIndexes holdingStockIndexes;
+	@Autowired MongoTemplate mongoTemplate;
+
+	@Test
+	public void ensureIndexes_indexesExist() {
+		holdingStockIndexes.ensureIndexes();
+
+		var names = mongoTemplate.indexOps(HoldingStock.class).getIndexInfo().stream().map(IndexInfo::getName).toList();
+		assertThat(names).contains(HoldingStockIndexes.USER_FUND_CODE_DATE, HoldingStockIndexes.FILL_ID_LIST);
+	}
+}
@@ -217,12 +217,12 @@ public class StrategySimulationWithKline {
                 .sorted(Map.Entry.comparingByKey())
                 .toList();
 
+        var closes = sortedEODKline.stream().mapToDouble(e -> e.getValue().close).toArray();
+        var rollingStdDevs = MathUtils.rollingStdDevs(closes, stdDevRange)[0];
         var stdDevs = new HashMap<LocalDate, Double>();
         for (int i = stdDevRange; i < sortedEODKline.size(); i++) {
             var date = sortedEODKline.get(i).getKey();
-            var closingPrices = sortedEODKline.subList(i-stdDevRange, i).stream().map(e -> e.getValue().close).toList();
-            var stdDev = MathUtils.calStdDev(closingPrices);
-            stdDevs.put(date, stdDev);
+            stdDevs.put(date, rollingStdDevs[i - 1]);   // closes of [i-stdDevRange, i)
         }
 //        stdDevs.entrySet().stream().filter(e -> e.getValue() < 0.2).forEach(e -> System.out.println(String.format("%s: %s", e.getKey(), e.getValue())));
 //        System.exit(0);
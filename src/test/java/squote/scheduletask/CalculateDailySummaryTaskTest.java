@@ -9,16 +9,25 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import squote.domain.DailyAssetSummary;
 import squote.domain.DailyStockQuote;
+import squote.domain.Market;
+import squote.domain.DailyCloseSeries;
 import squote.domain.repository.DailyAssetSummaryRepository;
+import squote.domain.repository.DailyCloseSeriesRepository;
+import squote.service.DailyAssetSummaryCache;
 import squote.service.WebParserRestService;
+import thc.util.MathUtils;
 
 import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -29,6 +38,9 @@ class CalculateDailySummaryTaskTest {
 
     @Mock private WebParserRestService webService;
     @Mock private DailyAssetSummaryRepository dailyAssetSummaryRepository;
+    @Mock private DailyAssetSummaryCache dailyAssetSummaryCache;
+    @Mock private DailyCloseSeriesRepository dailyCloseSeriesRepository;
+    @Mock private ApplicationEventPublisher eventPublisher;
 
     private boolean enabled = true;
     private List<Integer> stdDevRanges = List.of(20, 30);
@@ -56,17 +68,19 @@ class CalculateDailySummaryTaskTest {
         when(mockResponse.getBody()).thenReturn(mockQuotes);
         when(webService.getQuotesInRange(any(), any(), any(), any()))
                 .thenReturn(mockResponse);
-        ArgumentCaptor<DailyAssetSummary> dailySummaries = ArgumentCaptor.forClass(DailyAssetSummary.class);
 
         calculateDailySummaryTask.executeTask();
         var expectedFromDate = LocalDate.now().minusDays((long) (30 * 1.5)).format(CalculateDailySummaryTask.rangeQuoteDateFormatter);
         var expectedToDate = LocalDate.now().plusDays(1).format(CalculateDailySummaryTask.rangeQuoteDateFormatter);
 
         verify(webService, times(2)).getQuotesInRange(any(), any(), eq(expectedFromDate), eq(expectedToDate));
-        verify(dailyAssetSummaryRepository, times(2)).save(any());
-        dailySummaries.getAllValues().forEach(s -> {
+        var summaries = captureInsertedSummaries();
+        assertThat(summaries).extracting(s -> s.symbol).containsExactly("2800", "2828");
+        verify(dailyAssetSummaryCache).put(summaries);
+        summaries.forEach(s -> {
             assertThat(s.stdDevs).hasSize(stdDevRanges.size());
         });
+        verify(eventPublisher).publishEvent(new DailySummaryCalculatedEvent(Market.HK));
     }
 
     @Test
@@ -74,6 +88,7 @@ class CalculateDailySummaryTaskTest {
         calculateDailySummaryTask.enabled = false;
         calculateDailySummaryTask.executeTask();
         verify(webService, never()).getQuotesInRange(any(), any(), any(), any());
+        verify(eventPublisher).publishEvent(new DailySummaryCalculatedEvent(Market.HK));
     }
 
     @Test
@@ -85,17 +100,77 @@ class CalculateDailySummaryTaskTest {
         when(mockResponse.getBody()).thenReturn(mockQuotes);
         when(webService.getQuotesInRange(any(), any(), any(), any()))
                 .thenReturn(mockResponse);
-        ArgumentCaptor<DailyAssetSummary> dailySummaries = ArgumentCaptor.forClass(DailyAssetSummary.class);
 
         calculateDailySummaryTask.executeTaskForUS();
         var expectedFromDate = LocalDate.now().minusDays((long) (30 * 1.5)).format(CalculateDailySummaryTask.rangeQuoteDateFormatter);
         var expectedToDate = LocalDate.now().plusDays(1).format(CalculateDailySummaryTask.rangeQuoteDateFormatter);
 
         verify(webService, times(1)).getQuotesInRange(any(), any(), eq(expectedFromDate), eq(expectedToDate));
-        verify(dailyAssetSummaryRepository, times(1)).save(any());
-        dailySummaries.getAllValues().forEach(s -> {
+        var summaries = captureInsertedSummaries();
+        assertThat(summaries).hasSize(1);
+        summaries.forEach(s -> {
             assertThat(s.stdDevs).hasSize(stdDevRanges.size());
         });
+        verify(eventPublisher).publishEvent(new DailySummaryCalculatedEvent(Market.US));
     }
 
+    @Test
+    void testExecuteTask_existingSeries_fetchNewBarsOnly() throws UnirestException {
+        calculateDailySummaryTask.hkCodes = List.of("2800");
+        var yesterday = LocalDate.now().minusDays(1);
+        var series = new DailyCloseSeries("2800", stdDevRanges);
+        List.of(100.0, 110.0, 105.0).forEach(c -> series.add(Date.from(yesterday.minusDays(3).atStartOfDay(ZoneId.systemDefault()).toInstant()), c));
+        series.lastDate = Date.from(yesterday.atStartOfDay(ZoneId.systemDefault()).toInstant());
+        when(dailyCloseSeriesRepository.findById("2800")).thenReturn(Optional.of(series));
+        HttpResponse<DailyStockQuote[]> mockResponse = mock(HttpResponse.class);
+        when(mockResponse.getBody()).thenReturn(new DailyStockQuote[] { quoteWithClose(120.0) });
+        when(webService.getQuotesInRange(any(), any(), any(), any())).thenReturn(mockResponse);
+
+        calculateDailySummaryTask.executeTask();
+
+        var expectedFromDate = LocalDate.now().format(CalculateDailySummaryTask.rangeQuoteDateFormatter);
+        verify(webService).getQuotesInRange(eq("2800"), eq("HK"), eq(expectedFromDate), any());
+        verify(dailyCloseSeriesRepository).save(series);
+        assertThat(captureInsertedSummaries().getFirst().stdDevs.get(20))
+                .isCloseTo(MathUtils.calStdDev(List.of(100.0, 110.0, 105.0, 120.0)), within(1e-9));
+    }
+
+    @Test
+    void testExecuteTask_rangesChanged_rebuildSeries() throws UnirestException {
+        calculateDailySummaryTask.hkCodes = List.of("2800");
+        var series = new DailyCloseSeries("2800", List.of(10));
+        series.add(new Date(), 100.0);
+        when(dailyCloseSeriesRepository.findById("2800")).thenReturn(Optional.of(series));
+        HttpResponse<DailyStockQuote[]> mockResponse = mock(HttpResponse.class);
+        when(mockResponse.getBody()).thenReturn(new DailyStockQuote[] { quoteWithClose(120.0) });
+        when(webService.getQuotesInRange(any(), any(), any(), any())).thenReturn(mockResponse);
+
+        calculateDailySummaryTask.executeTask();
+
+        var expectedFromDate = LocalDate.now().minusDays((long) (30 * 1.5)).format(CalculateDailySummaryTask.rangeQuoteDateFormatter);
+        verify(webService).getQuotesInRange(any(), any(), eq(expectedFromDate), any());
+    }
+
+    @Test
+    void testExecuteTask_failedSymbol_saveOthersInOneInsert() throws UnirestException {
+        HttpResponse<DailyStockQuote[]> mockResponse = mock(HttpResponse.class);
+        when(mockResponse.getBody()).thenReturn(new DailyStockQuote[] { quoteWithClose(100.0), quoteWithClose(110.0) });
+        when(webService.getQuotesInRange(eq("2800"), any(), any(), any())).thenThrow(new UnirestException("timeout"));
+        when(webService.getQuotesInRange(eq("2828"), any(), any(), any())).thenReturn(mockResponse);
+
+        calculateDailySummaryTask.executeTask();
+
+        var summaries = captureInsertedSummaries();
+        assertThat(summaries).extracting(s -> s.symbol).containsExactly("2828");
+        verify(dailyAssetSummaryRepository).deleteAllById(List.of(summaries.getFirst().getId()));
+        verify(dailyAssetSummaryRepository, never()).save(any());
+        verify(eventPublisher).publishEvent(new DailySummaryCalculatedEvent(Market.HK));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<DailyAssetSummary> captureInsertedSummaries() {
+        ArgumentCaptor<List<DailyAssetSummary>> captor = ArgumentCaptor.forClass(List.class);
+        verify(dailyAssetSummaryRepository).insert(captor.capture());
+        return captor.getValue();
+    }
 }
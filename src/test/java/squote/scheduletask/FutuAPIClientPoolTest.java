@@ -0,0 +1,78 @@
+package squote.scheduletask;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import squote.service.FutuAPIClient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class FutuAPIClientPoolTest {
+    FutuAPIClientFactory mockConnector = Mockito.mock(FutuAPIClientFactory.class);
+    FutuAPIClient connectedClient = Mockito.mock(FutuAPIClient.class);
+    FutuAPIClient disconnectedClient = Mockito.mock(FutuAPIClient.class);
+    FutuAPIClientPool pool;
+
+    @BeforeEach
+    void setUp() {
+        when(connectedClient.isConnected()).thenReturn(true);
+        when(disconnectedClient.isConnected()).thenReturn(false);
+
+        pool = new FutuAPIClientPool();
+        pool.connector = mockConnector;
+    }
+
+    @Test
+    void build_connectedClient_reuseAcrossCycles() {
+        when(mockConnector.build(any())).thenReturn(connectedClient);
+        var config = FutuClientConfig.defaultConfig();
+
+        var first = pool.build(config);
+        pool.release(first);
+        var second = pool.build(config);
+
+        assertSame(first, second);
+        verify(mockConnector, times(1)).build(config);
+        verify(connectedClient, never()).close();
+    }
+
+    @Test
+    void build_disconnectedClient_closeAndReconnect() {
+        when(mockConnector.build(any())).thenReturn(disconnectedClient, connectedClient);
+        var config = FutuClientConfig.defaultConfig();
+
+        pool.build(config);
+        var client = pool.build(config);
+
+        assertSame(connectedClient, client);
+        verify(disconnectedClient, times(1)).close();
+        verify(mockConnector, times(2)).build(config);
+    }
+
+    @Test
+    void checkConnectionHealth_reconnectDisconnectedClient() {
+        when(mockConnector.build(any())).thenReturn(disconnectedClient, connectedClient);
+        var config = FutuClientConfig.defaultConfig();
+        pool.build(config);
+
+        pool.checkConnectionHealth();
+
+        assertSame(connectedClient, pool.build(config));
+        verify(mockConnector, times(2)).build(config);
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    void shutdown_closeAllClients() {
+        when(mockConnector.build(any())).thenReturn(connectedClient);
+        pool.build(FutuClientConfig.defaultConfig());
+
+        pool.shutdown();
+
+        verify(connectedClient, times(1)).close();
+        assertEquals(0, pool.size());
+    }
+}
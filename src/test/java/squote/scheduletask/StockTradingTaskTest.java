@@ -5,15 +5,22 @@ import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.read.ListAppender;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
 import squote.domain.*;
 import squote.domain.repository.FundRepository;
 import squote.domain.repository.TaskConfigRepository;
 import squote.service.FutuAPIClient;
+import squote.service.QuoteService;
 import squote.service.StockTradingAlgoService;
 import squote.service.TelegramAPIClient;
 import squote.service.TiingoAPIClient;
+import squote.service.TradeBook;
+import squote.service.TradingCycleSnapshot;
+import squote.service.WebParserRestService;
+import squote.service.YahooFinanceService;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
@@ -27,6 +34,8 @@ class StockTradingTaskTest {
     FutuAPIClient mockFutuAPIClient = Mockito.mock(FutuAPIClient.class);
     TelegramAPIClient mockTelegramAPIClient = Mockito.mock(TelegramAPIClient.class);
     TiingoAPIClient mockTiingoAPIClient = Mockito.mock(TiingoAPIClient.class);
+    YahooFinanceService mockYahooFinanceService = Mockito.mock(YahooFinanceService.class);
+    WebParserRestService mockWebParserRestService = Mockito.mock(WebParserRestService.class);
     TaskConfigRepository mockTaskConfigRepo = Mockito.mock(TaskConfigRepository.class);
     StockTradingAlgoService mockStockTradingAlgoService = Mockito.mock(StockTradingAlgoService.class);
 
@@ -47,10 +56,13 @@ class StockTradingTaskTest {
         when(mockFutuAPIClient.unlockTrade(any())).thenReturn(true);
         when(mockTiingoAPIClient.getPrices(any())).thenReturn(CompletableFuture.completedFuture(List.of()));
         when(mockTaskConfigRepo.findById(any())).thenReturn(Optional.empty());
+        when(mockStockTradingAlgoService.newCycleSnapshot(any(), any()))
+                .thenAnswer(i -> new TradingCycleSnapshot(i.getArgument(0), i.getArgument(1), null));
 
+        var quoteService = new QuoteService(mockYahooFinanceService, mockTiingoAPIClient, mockWebParserRestService);
+        ReflectionTestUtils.setField(quoteService, "cacheMillis", 0L);
         stockTradingTask = new StockTradingTask(mockFundRepo, mockTaskConfigRepo,
-                mockStockTradingAlgoService, mockTelegramAPIClient, mockTiingoAPIClient);
-        stockTradingTask.futuAPIClientFactory = mockFactory;
+                mockStockTradingAlgoService, mockTelegramAPIClient, quoteService, mockFactory);
         stockTradingTask.enabledByMarket = new HashMap<>();
         stockTradingTask.enabledByMarket.put("HK", true);
         stockTradingTask.enabledByMarket.put("US", true);
@@ -79,10 +91,34 @@ class StockTradingTaskTest {
     }
 
     @Test
-    void executeHK_willCloseFutuConnection() {
+    void executeHK_connectionLost_resubscribeNextCycle() {
+        var listeners = ArgumentCaptor.forClass(TradeBook.class);
+        when(mockFutuAPIClient.subscribeTradeUpdates(listeners.capture())).thenReturn(true);
+        stockTradingTask.executeHK();
+        stockTradingTask.executeHK();
+        verify(mockFutuAPIClient, times(2)).subscribeTradeUpdates(any());   // one book per fund
+
+        listeners.getAllValues().forEach(TradeBook::onConnectionLost);
+        stockTradingTask.executeHK();
+
+        verify(mockFutuAPIClient, times(4)).subscribeTradeUpdates(any());
+        verify(mockFutuAPIClient, times(2)).unsubscribeTradeUpdates(any());
+    }
+
+    @Test
+    void executeHK_willReleaseFutuConnection() {
         stockTradingTask.executeHK();
 
-        verify(mockFutuAPIClient, atLeast(1)).close();
+        verify(mockFactory, atLeast(1)).release(mockFutuAPIClient);
+    }
+
+    @Test
+    void onDailySummaryCalculated_repriceHKOnly() {
+        stockTradingTask.onDailySummaryCalculated(new DailySummaryCalculatedEvent(Market.US));
+        verifyNoInteractions(mockFundRepo);
+
+        stockTradingTask.onDailySummaryCalculated(new DailySummaryCalculatedEvent(Market.HK));
+        verify(mockFundRepo).findAll();
     }
 
     @Test
@@ -98,7 +134,32 @@ class StockTradingTaskTest {
 
         stockTradingTask.executeHK();
 
+        verify(mockTelegramAPIClient, times(2)).sendMessage(startsWith("StockTradingTask - HK: Unexpected exception: unlock trade failed"));
+    }
+
+    @Test
+    void executeHK_failureInOneFund_willStillProcessOtherFunds() {
+        var failingClient = Mockito.mock(FutuAPIClient.class);
+        when(failingClient.unlockTrade(any())).thenReturn(false);
+        when(mockFactory.build(argThat(c -> c != null && "FundA".equals(c.fundName())))).thenReturn(failingClient);
+
+        stockTradingTask.executeHK();
+
         verify(mockTelegramAPIClient, times(1)).sendMessage(startsWith("StockTradingTask - HK: Unexpected exception: unlock trade failed"));
+        verify(mockStockTradingAlgoService, times(1))
+                .processSingleSymbol(argThat((TradingCycleSnapshot s) -> "FundB".equals(s.fund().name)), any(), any(), any(), any(), any());
+        verify(mockFactory, times(1)).release(failingClient);
+        verify(mockFactory, times(1)).release(mockFutuAPIClient);
+    }
+
+    @Test
+    void executeHK_withConcurrencyOfOne_willProcessAllFunds() {
+        stockTradingTask.fundConcurrency = 1;
+
+        stockTradingTask.executeHK();
+
+        verify(mockStockTradingAlgoService, times(2))
+                .processSingleSymbol(any(TradingCycleSnapshot.class), any(), any(), any(), any(), any());
     }
 
     @Test
@@ -106,7 +167,7 @@ class StockTradingTaskTest {
         stockTradingTask.executeHK();
 
         verify(mockStockTradingAlgoService, atLeast(1))
-                .processSingleSymbol(any(), any(), any(), any(), any(), any(), any());
+                .processSingleSymbol(any(TradingCycleSnapshot.class), any(), any(), any(), any(), any());
     }
 
     @Test
@@ -125,7 +186,7 @@ class StockTradingTaskTest {
 
         verify(mockTiingoAPIClient, times(1)).getPrices(List.of("QQQ"));
         verify(mockStockTradingAlgoService, atLeast(1))
-                .processSingleSymbol(any(), any(), any(), any(), any(), eq(mockQuote), any());
+                .processSingleSymbol(any(TradingCycleSnapshot.class), any(), any(), any(), eq(mockQuote), any());
     }
 
     @Test
@@ -134,7 +195,20 @@ class StockTradingTaskTest {
 
         verify(mockTiingoAPIClient, never()).getPrices(any());
         verify(mockStockTradingAlgoService, atLeast(1))
-                .processSingleSymbol(any(), any(), any(), any(), any(), isNull(), any());
+                .processSingleSymbol(any(TradingCycleSnapshot.class), any(), any(), any(), isNull(), any());
+    }
+
+    @Test
+    void executeHK_prefetchHKQuotesInOneBrokerCall() {
+        var quote = new StockQuote(stockCode);
+        quote.setPrice("18.00");
+        when(mockFutuAPIClient.getStockQuotes(List.of(stockCode))).thenReturn(Map.of(stockCode, quote));
+
+        stockTradingTask.executeHK();
+
+        verify(mockFutuAPIClient, times(2)).getStockQuotes(List.of(stockCode));   // once per fund
+        verify(mockStockTradingAlgoService, times(2))
+                .processSingleSymbol(any(TradingCycleSnapshot.class), any(), any(), any(), eq(quote), any());
     }
 
     @Test
@@ -153,4 +227,83 @@ class StockTradingTaskTest {
         var result = stockTradingTask.getLastExecutionTime(Market.HK);
         assertEquals(expectedDate, result);
     }
+
+    @Test
+    void onTick_moveBeyondStdDevFraction_processThatSymbolOnce() {
+        var usCode = "QQQ.US";
+        var fundA = new Fund("dummy", "FundA");
+        fundA.putAlgoConfig(stockCode, new AlgoConfig(stockCode, 3500, null, 10, 0.7, null, false));
+        fundA.putAlgoConfig(usCode, new AlgoConfig(usCode, 10, null, 20, 0.7, null, false));
+        when(mockFundRepo.findAll()).thenReturn(List.of(fundA));
+        when(mockStockTradingAlgoService.getStdDev(usCode, 20)).thenReturn(Optional.of(2.0));
+        stockTradingTask.refreshTickThresholds(Market.US);
+
+        stockTradingTask.onTick(usCode, 100);
+        stockTradingTask.onTick(usCode, 100.5);
+        verify(mockStockTradingAlgoService, after(200).never())
+                .processSingleSymbol(any(TradingCycleSnapshot.class), any(), any(), any(), any(), any());
+
+        stockTradingTask.onTick(usCode, 101.5);
+        stockTradingTask.onTick(usCode, 102);  // debounced
+        verify(mockStockTradingAlgoService, timeout(2000).times(1))
+                .processSingleSymbol(any(TradingCycleSnapshot.class), eq(Market.US), argThat(c -> usCode.equals(c.code())), any(), any(), any());
+        verify(mockStockTradingAlgoService, after(200).times(1))
+                .processSingleSymbol(any(TradingCycleSnapshot.class), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void onFill_fillsOfDifferentCodesInSameFund_reprocessEachCode() {
+        var otherCode = "code2";
+        var fundA = new Fund("UserA", "FundA");
+        fundA.putAlgoConfig(stockCode, new AlgoConfig(stockCode, 3500, null, 10, 0.7, null, false));
+        fundA.putAlgoConfig(otherCode, new AlgoConfig(otherCode, 1000, null, 10, 0.7, null, false));
+        when(mockFundRepo.findByUserIdAndName("UserA", "FundA")).thenReturn(Optional.of(fundA));
+        var clientConfig = FutuClientConfig.parseFutuClientConfigs(stockTradingTask.clientConfigJson).get("FundA");
+
+        stockTradingTask.onFill(hkFill(stockCode), clientConfig);
+        stockTradingTask.onFill(hkFill(otherCode), clientConfig);
+
+        verify(mockStockTradingAlgoService, timeout(2000))
+                .processSingleSymbol(any(TradingCycleSnapshot.class), eq(Market.HK), argThat(c -> stockCode.equals(c.code())), any(), any(), any());
+        verify(mockStockTradingAlgoService, timeout(2000))
+                .processSingleSymbol(any(TradingCycleSnapshot.class), eq(Market.HK), argThat(c -> otherCode.equals(c.code())), any(), any(), any());
+    }
+
+    @Test
+    void onTick_noMongoReadOnTickThread() {
+        var usCode = "QQQ.US";
+        var fundA = new Fund("dummy", "FundA");
+        fundA.putAlgoConfig(usCode, new AlgoConfig(usCode, 10, null, 20, 0.7, null, false));
+        when(mockFundRepo.findAll()).thenReturn(List.of(fundA));
+        when(mockStockTradingAlgoService.getStdDev(usCode, 20)).thenReturn(Optional.of(2.0));
+        stockTradingTask.refreshTickThresholds(Market.US);
+        clearInvocations(mockFundRepo, mockStockTradingAlgoService);
+
+        stockTradingTask.onTick(usCode, 100);
+        stockTradingTask.onTick(usCode, 100.5);
+
+        verifyNoInteractions(mockFundRepo, mockStockTradingAlgoService);
+    }
+
+    @Test
+    void onTick_withoutStdDev_neverTrigger() {
+        var usCode = "QQQ.US";
+        var fundA = new Fund("dummy", "FundA");
+        fundA.putAlgoConfig(usCode, new AlgoConfig(usCode, 10, null, 20, 0.7, null, false));
+        when(mockFundRepo.findAll()).thenReturn(List.of(fundA));
+        when(mockStockTradingAlgoService.getStdDev(any(), anyInt())).thenReturn(Optional.empty());
+        stockTradingTask.refreshTickThresholds(Market.US);
+
+        stockTradingTask.onTick(usCode, 100);
+        stockTradingTask.onTick(usCode, 150);
+
+        verify(mockStockTradingAlgoService, after(200).never())
+                .processSingleSymbol(any(TradingCycleSnapshot.class), any(), any(), any(), any(), any());
+    }
+
+    private Execution hkFill(String code) {
+        var fill = new Execution().setCode(code);
+        fill.setMarket(Market.HK);
+        return fill;
+    }
 }
@@ -40,6 +40,7 @@ class SyncStockExecutionsTaskTest {
         when(mockFactory.build(any())).thenReturn(mockFutuAPIClient);
         when(mockHoldingStockRepository.save(any())).thenAnswer(i -> i.getArgument(0));
         when(mockFundRepository.save(any())).thenAnswer(i -> i.getArgument(0));
+        when(mockFundRepository.findByUserIdAndName(any(), any())).thenAnswer(i -> Optional.of(new squote.domain.Fund(i.getArgument(0), i.getArgument(1))));
 
         task = new SyncStockExecutionsTask();
         task.enabledByMarket = Map.of("HK", true);
@@ -47,6 +48,7 @@ class SyncStockExecutionsTaskTest {
         task.holdingRepo = mockHoldingStockRepository;
         task.taskConfigRepo = mockTaskConfigRepository;
         task.updateFundService = Mockito.mock(UpdateFundByHoldingService.class);
+        when(task.updateFundService.updateFundByHolding(any(squote.domain.Fund.class), any(), any())).thenAnswer(i -> i.getArgument(0));
         task.fundRepo = mockFundRepository;
         task.emailService = emailService;
         task.clientConfigJson = """
@@ -145,9 +147,6 @@ class SyncStockExecutionsTaskTest {
     void executeTask_executionsAreSortedByTime() {
         var userId = UUID.randomUUID().toString();
         task.userId = userId;
-        var mockUpdateFundService = Mockito.mock(UpdateFundByHoldingService.class);
-        task.updateFundService = mockUpdateFundService;
-        when(mockUpdateFundService.updateFundByHolding(any(), any(), any(), any())).thenReturn(new squote.domain.Fund(userId, "A"));
 
         var executions = new HashMap<String, Execution>();
 
@@ -191,13 +190,121 @@ class SyncStockExecutionsTaskTest {
         task.executeHK();
 
         // Verify holdings are saved in chronological order
-        ArgumentCaptor<HoldingStock> holdingCaptor = ArgumentCaptor.forClass(HoldingStock.class);
-        verify(mockHoldingStockRepository, times(3)).save(holdingCaptor.capture());
-
-        var savedHoldings = holdingCaptor.getAllValues();
+        var savedHoldings = captureInsertedHoldings();
         assertEquals(3, savedHoldings.size());
         assertEquals("fill1", savedHoldings.get(0).getFillIds());
         assertEquals("fill2", savedHoldings.get(1).getFillIds());
         assertEquals("fill3", savedHoldings.get(2).getFillIds());
     }
+
+    @Test
+    void executeTask_skipExistingFillIdsWithOneQuery() {
+        var existing = new HoldingStock().setFillIds("fill1,fill2");
+        when(mockHoldingStockRepository.findByFillIdListIn(any())).thenReturn(List.of(existing));
+        var executions = new HashMap<String, Execution>();
+        executions.put("order1", execution("order1", "fill2", 1000));
+        executions.put("order2", execution("order2", "fill3,fill4", 2000));
+        executions.put("order3", execution("order3", "fill4", 3000));     // same fill reported again
+        when(mockFutuAPIClient.getRecentExecutions(any(Date.class), eq(Market.HK))).thenReturn(executions);
+
+        task.executeHK();
+
+        verify(mockHoldingStockRepository, times(1)).findByFillIdListIn(any());
+        var savedHoldings = captureInsertedHoldings();
+        assertEquals(1, savedHoldings.size());
+        assertEquals(List.of("fill3", "fill4"), savedHoldings.getFirst().getFillIdList());
+    }
+
+    @Test
+    void executeTask_loadAndSaveFundOnceAndInsertHoldingsInBulk() {
+        var executions = new HashMap<String, Execution>();
+        executions.put("order1", execution("order1", "fill1", 1000));
+        executions.put("order2", execution("order2", "fill2", 2000));
+        when(mockFutuAPIClient.getRecentExecutions(any(Date.class), eq(Market.HK))).thenReturn(executions);
+
+        task.executeHK();
+
+        verify(mockFundRepository, times(1)).findByUserIdAndName(any(), eq("A"));
+        verify(mockFundRepository, times(1)).save(any());
+        verify(mockHoldingStockRepository, never()).save(any());
+        assertEquals(2, captureInsertedHoldings().size());
+    }
+
+    @Test
+    void executeTask_fundSaveFailed_removeInsertedHoldings() {
+        when(mockFundRepository.save(any())).thenThrow(new RuntimeException("write failed"));
+        when(mockFutuAPIClient.getRecentExecutions(any(Date.class), eq(Market.HK)))
+                .thenReturn(Map.of("order1", execution("order1", "fill1", 1000)));
+
+        task.executeHK();
+
+        var inserted = captureInsertedHoldings();
+        verify(mockHoldingStockRepository).deleteAll(inserted);
+    }
+
+    @Test
+    void executeTask_syncAccountsConcurrently_mergeOutputInConfigOrder() {
+        var telegramAPIClient = Mockito.mock(squote.service.TelegramAPIClient.class);
+        task.telegramAPIClient = telegramAPIClient;
+        task.sendTelegram = true;
+        task.clientConfigJson = """
+        [
+            {"ip":"127.0.0.1","port":1,"fundUserId":"userA","fundName":"A","accountId":1,"unlockCode":"","markets":["HK"]},
+            {"ip":"127.0.0.1","port":2,"fundUserId":"userA","fundName":"B","accountId":2,"unlockCode":"","markets":["HK"]}
+        ]""";
+        var clientB = Mockito.mock(FutuAPIClient.class);
+        when(mockFactory.build(any())).thenAnswer(i -> "A".equals(((FutuClientConfig) i.getArgument(0)).fundName()) ? mockFutuAPIClient : clientB);
+        when(mockFutuAPIClient.getRecentExecutions(any(Date.class), eq(Market.HK))).thenAnswer(i -> {
+            Thread.sleep(200);   // account A finishes last
+            return Map.of("order1", execution("order1", "fill1", 1000));
+        });
+        when(clientB.getRecentExecutions(any(Date.class), eq(Market.HK)))
+                .thenReturn(Map.of("order2", execution("order2", "fill2", 2000)));
+
+        task.executeHK();
+
+        var messageCaptor = ArgumentCaptor.forClass(String.class);
+        verify(telegramAPIClient, times(2)).sendMessage(messageCaptor.capture());
+        assertTrue(messageCaptor.getAllValues().get(0).startsWith("Created holding for A"));
+        assertTrue(messageCaptor.getAllValues().get(1).startsWith("Created holding for B"));
+        verify(mockTaskConfigRepository).save(any());
+    }
+
+    @Test
+    void executeTask_oneAccountFailed_syncOthersAndKeepLastExecutionTime() {
+        task.clientConfigJson = """
+        [
+            {"ip":"127.0.0.1","port":1,"fundUserId":"userA","fundName":"A","accountId":1,"unlockCode":"","markets":["HK"]},
+            {"ip":"127.0.0.1","port":2,"fundUserId":"userA","fundName":"A","accountId":2,"unlockCode":"","markets":["HK"]}
+        ]""";
+        when(mockFutuAPIClient.getRecentExecutions(any(Date.class), eq(Market.HK)))
+                .thenThrow(new RuntimeException("disconnected"))
+                .thenReturn(Map.of("order1", execution("order1", "fill1", 1000)));
+
+        task.executeHK();
+
+        assertEquals(1, captureInsertedHoldings().size());
+        verify(mockTaskConfigRepository, never()).save(any());
+        verify(mockFactory, times(2)).release(mockFutuAPIClient);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<HoldingStock> captureInsertedHoldings() {
+        ArgumentCaptor<List<HoldingStock>> holdingsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(mockHoldingStockRepository).insert(holdingsCaptor.capture());
+        return holdingsCaptor.getValue();
+    }
+
+    private Execution execution(String orderId, String fillIds, long time) {
+        var exec = new Execution();
+        exec.setOrderId(orderId);
+        exec.setFillIds(fillIds);
+        exec.setQuantity(BigDecimal.valueOf(100));
+        exec.setPrice(BigDecimal.valueOf(25));
+        exec.setSide(SquoteConstants.Side.BUY);
+        exec.setCode("2800");
+        exec.setTime(time);
+        exec.setMarket(Market.HK);
+        return exec;
+    }
 }
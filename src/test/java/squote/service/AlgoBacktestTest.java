@@ -0,0 +1,66 @@
+package squote.service;
+
+import org.junit.jupiter.api.Test;
+import squote.domain.AlgoConfig;
+import squote.domain.DailyStockQuote;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AlgoBacktestTest {
+    AlgoConfig template = new AlgoConfig("2800", 0, null, 5, 1, 10000.0, false, 100);
+
+    @Test
+    void run_oscillatingPrice_buyLowSellHigh() {
+        var backtest = new AlgoBacktest(oscillatingQuotes(100), List.of(5));
+
+        var result = backtest.run(template);
+
+        assertThat(result.buys()).isGreaterThan(1);
+        assertThat(result.sells()).isGreaterThan(1);
+        assertThat(result.realizedProfit()).isPositive();
+        assertThat(result.maxHoldingAmount()).isPositive();
+        assertThat(result.maxDrawdown()).isGreaterThanOrEqualTo(0);
+    }
+
+    @Test
+    void run_sellOnly_onlyTheFirstBuy() {
+        var backtest = new AlgoBacktest(oscillatingQuotes(100), List.of(5));
+
+        var result = backtest.run(new AlgoConfig("2800", 0, null, 5, 1, 10000.0, true, 100));
+
+        assertThat(result.buys()).isEqualTo(1);
+        assertThat(result.sells()).isEqualTo(1);
+    }
+
+    @Test
+    void sweep_sameAsSequentialRuns() {
+        var backtest = new AlgoBacktest(oscillatingQuotes(200), List.of(5, 10, 20));
+        var configs = AlgoBacktest.grid(template, new int[]{5, 10, 20}, new double[]{0.5, 1, 1.5});
+
+        var results = backtest.sweep(configs, 4);
+
+        assertThat(results).hasSize(9);
+        assertThat(results).containsExactlyElementsOf(configs.stream().map(backtest::run).toList());
+    }
+
+    @Test
+    void run_rangeNotCalculated_throw() {
+        var backtest = new AlgoBacktest(oscillatingQuotes(50), List.of(5));
+        assertThatThrownBy(() -> backtest.run(new AlgoConfig("2800", 0, null, 10, 1, 10000.0, false, 100)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private List<DailyStockQuote> oscillatingQuotes(int days) {
+        var quotes = new ArrayList<DailyStockQuote>();
+        for (int i = 0; i < days; i++) {
+            var close = 25 + 2 * Math.sin(i / 3.0);
+            quotes.add(new DailyStockQuote(new Date(i * 86400000L), close, close, close * 1.01, close * 0.99, 1000, close));
+        }
+        return quotes;
+    }
+}
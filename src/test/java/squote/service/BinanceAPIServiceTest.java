@@ -0,0 +1,99 @@
+package squote.service;
+
+import org.junit.jupiter.api.Test;
+import org.knowm.xchange.binance.dto.trade.BinanceTradeHistoryParams;
+import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.Order;
+import org.knowm.xchange.dto.marketdata.Trades;
+import org.knowm.xchange.dto.trade.UserTrade;
+import org.knowm.xchange.dto.trade.UserTrades;
+import org.knowm.xchange.service.trade.TradeService;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class BinanceAPIServiceTest {
+    BinanceAPIService.TickerPriceClient mockTickerPriceClient = mock(BinanceAPIService.TickerPriceClient.class);
+    TradeService mockTradeService = mock(TradeService.class);
+    BinanceAPIService service = new BinanceAPIService(mockTradeService, mockTickerPriceClient);
+
+    @Test
+    void getAllPrices_oneRequestOfListedSymbolsAndCached() throws IOException {
+        when(mockTickerPriceClient.getPrices(any())).thenReturn(Map.of(
+                "BTCUSDT", new BigDecimal("60000"),
+                "DOGEUSDT", new BigDecimal("0.1"),
+                "ETHBTC", new BigDecimal("0.05")));
+
+        var prices = service.getAllPrices();
+        service.getAllPrices();
+
+        assertThat(prices).containsOnlyKeys("BTCUSDT", "DOGEUSDT");
+        assertThat(prices.get("BTCUSDT").getPrice()).isEqualTo("60000");
+        verify(mockTickerPriceClient, times(1)).getPrices(List.of("BTCUSDT", "MANAUSDT", "DOGEUSDT", "UNIUSDT", "SANDUSDT", "DOTUSDT", "ADAUSDT", "SHIBUSDT"));
+    }
+
+    @Test
+    void getAllPrices_requestFailed_lastPrices() throws IOException {
+        service.priceCacheMillis = 0;
+        when(mockTickerPriceClient.getPrices(any()))
+                .thenReturn(Map.of("BTCUSDT", new BigDecimal("60000")))
+                .thenThrow(new IOException("rate limited"));
+
+        service.getAllPrices();
+
+        assertThat(service.getAllPrices().get("BTCUSDT").getPrice()).isEqualTo("60000");
+    }
+
+    @Test
+    void getMyTrades_pagedFromLastTradeId() throws IOException {
+        var startIds = new ArrayList<String>();
+        when(mockTradeService.getTradeHistory(any())).thenAnswer(i -> {
+            var fromId = Long.parseLong(((BinanceTradeHistoryParams) i.getArgument(0)).getStartId());
+            startIds.add(String.valueOf(fromId));
+            var lastId = Math.min(fromId + 999, 2500);     // 1000 per page, last trade id 2500
+            return new UserTrades(LongStream.rangeClosed(fromId, lastId).mapToObj(this::trade).toList(), Trades.TradeSortType.SortByID);
+        });
+
+        var executions = service.getMyTrades("BTCUSDT", 100);
+
+        assertThat(startIds).containsExactly("100", "1100", "2100");
+        assertThat(executions).hasSize(2400);
+        assertThat(executions.getFirst().getFillIds()).isEqualTo("101");
+        assertThat(executions.getFirst().getCode()).isEqualTo("BTCUSDT");
+    }
+
+    @Test
+    void getMyTrades_unknownQuoteCurrency_skipped() throws IOException {
+        assertThat(service.getMyTrades("USDT", 0)).isEmpty();
+        verify(mockTradeService, never()).getTradeHistory(any());
+    }
+
+    @Test
+    void toCurrencyPair_symbolOrPair() {
+        assertThat(BinanceAPIService.toCurrencyPair("BTCUSDT")).contains(CurrencyPair.BTC_USDT);
+        assertThat(BinanceAPIService.toCurrencyPair("ETHBTC")).contains(CurrencyPair.ETH_BTC);
+        assertThat(BinanceAPIService.toCurrencyPair("BTC/USDT")).contains(CurrencyPair.BTC_USDT);
+        assertThat(BinanceAPIService.toCurrencyPair("XYZ")).isEmpty();
+    }
+
+    private UserTrade trade(long id) {
+        return new UserTrade.Builder()
+                .id(String.valueOf(id))
+                .orderId("order" + id)
+                .type(Order.OrderType.BID)
+                .originalAmount(BigDecimal.ONE)
+                .price(BigDecimal.TEN)
+                .instrument(CurrencyPair.BTC_USDT)
+                .timestamp(new Date(id))
+                .build();
+    }
+}
@@ -0,0 +1,83 @@
+package squote.service;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import squote.domain.DailyAssetSummary;
+import squote.domain.repository.DailyAssetSummaryRepository;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class DailyAssetSummaryCacheTest {
+    DailyAssetSummaryRepository mockRepo = Mockito.mock(DailyAssetSummaryRepository.class);
+    DailyAssetSummaryCache cache = new DailyAssetSummaryCache(mockRepo);
+
+    @Test
+    void getLatest_loadEachConfiguredSymbolOnce() {
+        cache.usCodes = List.of("QQQ.US");
+        var summary = new DailyAssetSummary("2800", new Date(1000));
+        when(mockRepo.findTopBySymbolOrderByDateDesc("2800")).thenReturn(Optional.of(summary));
+        when(mockRepo.findTopBySymbolOrderByDateDesc("QQQ.US")).thenReturn(Optional.empty());
+
+        cache.getLatest("2800");
+        cache.getLatest("QQQ.US");
+        var summaries = cache.getLatest(List.of("2800", "QQQ.US"));
+
+        assertThat(summaries).containsOnlyKeys("2800");
+        assertThat(summaries.get("2800")).isSameAs(summary);
+        verify(mockRepo, times(2)).findTopBySymbolOrderByDateDesc(any());
+    }
+
+    @Test
+    void getLatest_symbols_loadMissesInOneQuery() {
+        cache.usCodes = List.of("QQQ.US");
+        var summary = new DailyAssetSummary("2800", new Date(1000));
+        when(mockRepo.findLatestBySymbolIn(any())).thenReturn(List.of(summary));
+
+        var summaries = cache.getLatest(List.of("2800", "QQQ.US", "ANY"));
+        cache.getLatest(List.of("2800", "QQQ.US", "ANY"));
+
+        assertThat(summaries).containsOnlyKeys("2800");
+        assertThat(summaries.get("2800")).isSameAs(summary);
+        verify(mockRepo).findLatestBySymbolIn(List.of("2800", "QQQ.US", "ANY"));
+        verify(mockRepo).findLatestBySymbolIn(List.of("ANY"));     // only the not configured miss is asked again
+        verify(mockRepo, never()).findTopBySymbolOrderByDateDesc(any());
+    }
+
+    @Test
+    void getLatest_notConfiguredSymbolWithoutSummary_notCached() {
+        when(mockRepo.findTopBySymbolOrderByDateDesc("ANY")).thenReturn(Optional.empty());
+
+        cache.getLatest("ANY");
+        cache.getLatest("ANY");
+
+        verify(mockRepo, times(2)).findTopBySymbolOrderByDateDesc("ANY");
+    }
+
+    @Test
+    void getLatest_boundedNumberOfSymbols() {
+        when(mockRepo.findTopBySymbolOrderByDateDesc(any())).thenAnswer(i -> Optional.of(new DailyAssetSummary(i.getArgument(0), new Date(1000))));
+
+        for (int i = 0; i < 2 * DailyAssetSummaryCache.MAX_SYMBOLS; i++) cache.getLatest("S" + i);
+        cache.getLatest("S0");
+
+        verify(mockRepo, times(2)).findTopBySymbolOrderByDateDesc("S0");
+    }
+
+    @Test
+    void put_replaceWithNewerSummaryOnly() {
+        var yesterday = new DailyAssetSummary("2800", new Date(1000));
+        var today = new DailyAssetSummary("2800", new Date(2000));
+
+        cache.put(List.of(today));
+        cache.put(List.of(yesterday));
+
+        assertThat(cache.getLatest("2800")).containsSame(today);
+        verifyNoInteractions(mockRepo);
+    }
+}
@@ -0,0 +1,98 @@
+package squote.service;
+
+import com.mashape.unirest.http.HttpResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import squote.domain.DailyStockQuote;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class DailyQuoteStoreTest {
+    @TempDir Path dir;
+
+    @Test
+    void appendAndRead_sameAsQuotes() throws IOException {
+        var store = new DailyQuoteStore(dir);
+        var quotes = List.of(quote(2, 11), quote(1, 10), quote(3, 12));
+
+        assertThat(store.append("2800", quotes)).isEqualTo(3);
+        var bars = store.read("2800");
+
+        assertThat(bars.size()).isEqualTo(3);
+        assertThat(bars.closeArray()).containsExactly(10, 11, 12);
+        assertThat(bars.toQuotes()).containsExactly(quote(1, 10), quote(2, 11), quote(3, 12));
+        assertThat(store.lastDate("2800")).contains(quote(3, 12).date());
+    }
+
+    @Test
+    void append_skipBarsNotAfterLastDate() throws IOException {
+        var store = new DailyQuoteStore(dir);
+        store.append("2800", List.of(quote(1, 10), quote(2, 11)));
+        var before = store.read("2800");
+
+        assertThat(store.append("2800", List.of(quote(2, 99), quote(3, 12)))).isEqualTo(1);
+
+        assertThat(before.size()).isEqualTo(2);
+        assertThat(store.read("2800").closeArray()).containsExactly(10, 11, 12);
+    }
+
+    @Test
+    void append_truncatePartialAppend() throws IOException {
+        var store = new DailyQuoteStore(dir);
+        store.append("2800", List.of(quote(1, 10)));
+        Files.write(dir.resolve("2800").resolve("close.col"), new byte[16], StandardOpenOption.APPEND);   // crashed before date column
+
+        store.append("2800", List.of(quote(2, 11)));
+
+        assertThat(store.read("2800").closeArray()).containsExactly(10, 11);
+    }
+
+    @Test
+    void read_unknownSymbol_empty() throws IOException {
+        var store = new DailyQuoteStore(dir);
+        assertThat(store.read("0005").size()).isZero();
+        assertThat(store.lastDate("0005")).isEmpty();
+    }
+
+    @Test
+    void importJson_resourceFile() throws IOException {
+        var store = new DailyQuoteStore(dir);
+        try (var inputStream = getClass().getClassLoader().getResourceAsStream("historical-quote/historical-quote-0005.json")) {
+            assertThat(store.importJson("0005", inputStream)).isPositive();
+        }
+        var bars = store.read("0005");
+        assertThat(bars.close(bars.size() - 1)).isPositive();
+    }
+
+    @Test
+    void importFromWeb_fetchAfterLastDate() throws Exception {
+        var store = new DailyQuoteStore(dir);
+        var webService = mock(WebParserRestService.class);
+        HttpResponse<DailyStockQuote[]> response = mock(HttpResponse.class);
+        var noonOfJan2 = new DailyStockQuote(new Date(36 * 3600000L), 10, 10, 10, 10, 100, 10);
+        when(response.getBody()).thenReturn(new DailyStockQuote[]{noonOfJan2});
+        when(webService.getQuotesInRange(any(), any(), any(), any())).thenReturn(response);
+
+        store.importFromWeb("2800", webService, LocalDate.of(1970, 1, 1));
+        store.importFromWeb("2800", webService, LocalDate.of(1970, 1, 1));
+
+        verify(webService).getQuotesInRange(eq("2800"), eq("HK"), eq("19700101"), any());
+        verify(webService).getQuotesInRange(eq("2800"), eq("HK"), eq("19700103"), any());
+        assertThat(store.size("2800")).isEqualTo(1);
+    }
+
+    private DailyStockQuote quote(int day, double close) {
+        return new DailyStockQuote(new Date(day * 86400000L), close - 1, close, close + 1, close - 2, day * 100, close);
+    }
+}
@@ -8,7 +8,9 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
 import squote.SquoteConstants;
 import squote.domain.Market;
 import squote.scheduletask.FutuClientConfig;
@@ -16,9 +18,19 @@ import squote.scheduletask.FutuClientConfig;
 import java.math.BigDecimal;
 import java.util.Currency;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -49,8 +61,7 @@ class FutuAPIClientTest {
                 .setS2C(TrdGetAccList.S2C.newBuilder().addAccList(account))
                 .build();
 
-        when(FTAPIConnTrd.getAccList(any())).thenReturn(1);
-        client.onReply_GetAccList(FTAPIConnTrd, 1, response);
+        when(FTAPIConnTrd.getAccList(any())).thenAnswer(replyOnSend(1, () -> client.onReply_GetAccList(FTAPIConnTrd, 1, response)));
         long actualAccountId = client.getHKStockAccountId();
         assertEquals(expectedAccountId, actualAccountId);
     }
@@ -85,9 +96,8 @@ class FutuAPIClientTest {
         var response = TrdGetHistoryOrderFillList.Response.newBuilder()
                         .setRetType(0).setS2C(S2CBuilder).build();
 
-        when(FTAPIConnTrd.getHistoryOrderFillList(any())).thenReturn(1);
+        when(FTAPIConnTrd.getHistoryOrderFillList(any())).thenAnswer(replyOnSend(1, () -> client.onReply_GetHistoryOrderFillList(FTAPIConnTrd, 1, response)));
 
-        client.onReply_GetHistoryOrderFillList(FTAPIConnTrd, 1, response);
         var executions = client.getRecentExecutions(new Date(), Market.HK);
         assertEquals(2, executions.size());
         var exec2828 = executions.get("1");
@@ -111,12 +121,10 @@ class FutuAPIClientTest {
     @Test
     void getRecentExecutions_HK_beginTimeFormatting() {
         var captor = ArgumentCaptor.forClass(TrdGetHistoryOrderFillList.Request.class);
-        when(FTAPIConnTrd.getHistoryOrderFillList(any())).thenReturn(1);
         var headerBuilder = TrdCommon.TrdHeader.newBuilder().setTrdEnv(1).setAccID(1).setTrdMarket(1);
         var s2CBuilder = TrdGetHistoryOrderFillList.S2C.newBuilder().setHeader(headerBuilder).build();
-        client.onReply_GetHistoryOrderFillList(FTAPIConnTrd, 1,
-                TrdGetHistoryOrderFillList.Response.newBuilder().setRetType(0).setS2C(s2CBuilder).build()
-        );
+        when(FTAPIConnTrd.getHistoryOrderFillList(any())).thenAnswer(replyOnSend(1, () -> client.onReply_GetHistoryOrderFillList(FTAPIConnTrd, 1,
+                TrdGetHistoryOrderFillList.Response.newBuilder().setRetType(0).setS2C(s2CBuilder).build())));
 
         Date testDate = new Date(1754357702188L); // Aug 05 2025 09:35:02.188 HKT
         client.getRecentExecutions(testDate, Market.HK);
@@ -130,12 +138,10 @@ class FutuAPIClientTest {
     @Test
     void getRecentExecutions_US_beginTimeFormatting() {
         var captor = ArgumentCaptor.forClass(TrdGetHistoryOrderFillList.Request.class);
-        when(FTAPIConnTrd.getHistoryOrderFillList(any())).thenReturn(1);
         var headerBuilder = TrdCommon.TrdHeader.newBuilder().setTrdEnv(1).setAccID(1).setTrdMarket(1);
         var s2CBuilder = TrdGetHistoryOrderFillList.S2C.newBuilder().setHeader(headerBuilder).build();
-        client.onReply_GetHistoryOrderFillList(FTAPIConnTrd, 1,
-                TrdGetHistoryOrderFillList.Response.newBuilder().setRetType(0).setS2C(s2CBuilder).build()
-        );
+        when(FTAPIConnTrd.getHistoryOrderFillList(any())).thenAnswer(replyOnSend(1, () -> client.onReply_GetHistoryOrderFillList(FTAPIConnTrd, 1,
+                TrdGetHistoryOrderFillList.Response.newBuilder().setRetType(0).setS2C(s2CBuilder).build())));
 
         Date testDate = new Date(1754357702188L); // Aug 04 2025 21:35:02.188 EST
         client.getRecentExecutions(testDate, Market.US);
@@ -151,8 +157,7 @@ class FutuAPIClientTest {
         var captor = ArgumentCaptor.forClass(TrdPlaceOrder.Request.class);
         var mockPacketId = Common.PacketID.newBuilder().setConnID(1L).setSerialNo(1).build();
         when(FTAPIConnTrd.nextPacketID()).thenReturn(mockPacketId);
-        when(FTAPIConnTrd.placeOrder(any())).thenReturn(1);
-        client.onReply_PlaceOrder(FTAPIConnTrd, 1, TrdPlaceOrder.Response.newBuilder().setRetType(0).build());
+        when(FTAPIConnTrd.placeOrder(any())).thenAnswer(replyOnSend(1, () -> client.onReply_PlaceOrder(FTAPIConnTrd, 1, TrdPlaceOrder.Response.newBuilder().setRetType(0).build())));
 
         client.placeOrder(SquoteConstants.Side.BUY, "AAPL.US", 100, 150.0);
         verify(FTAPIConnTrd).placeOrder(captor.capture());
@@ -168,8 +173,7 @@ class FutuAPIClientTest {
         var captor = ArgumentCaptor.forClass(TrdPlaceOrder.Request.class);
         var mockPacketId = Common.PacketID.newBuilder().setConnID(1L).setSerialNo(1).build();
         when(FTAPIConnTrd.nextPacketID()).thenReturn(mockPacketId);
-        when(FTAPIConnTrd.placeOrder(any())).thenReturn(1);
-        client.onReply_PlaceOrder(FTAPIConnTrd, 1, TrdPlaceOrder.Response.newBuilder().setRetType(0).build());
+        when(FTAPIConnTrd.placeOrder(any())).thenAnswer(replyOnSend(1, () -> client.onReply_PlaceOrder(FTAPIConnTrd, 1, TrdPlaceOrder.Response.newBuilder().setRetType(0).build())));
 
         client.placeOrder(SquoteConstants.Side.BUY, "2800", 100, 18.5);
         verify(FTAPIConnTrd).placeOrder(captor.capture());
@@ -198,8 +202,7 @@ class FutuAPIClientTest {
                 .addFlowSummaryInfoList(flowInfo1).build();
         var response = TrdFlowSummary.Response.newBuilder().setRetType(0).setS2C(s2c).build();
 
-        when(FTAPIConnTrd.getFlowSummary(any())).thenReturn(1);
-        client.onReply_GetFlowSummary(FTAPIConnTrd, 1, response);
+        when(FTAPIConnTrd.getFlowSummary(any())).thenAnswer(replyOnSend(1, () -> client.onReply_GetFlowSummary(FTAPIConnTrd, 1, response)));
         var flows = client.getFlowSummary(new Date(), Market.HK);
         assertEquals(1, flows.size());
         var firstFlow = flows.getFirst();
@@ -216,8 +219,7 @@ class FutuAPIClientTest {
     @Test
     void onReply_GetFlowSummary_ErrorResponse_ReturnsEmptyList() {
         var response = TrdFlowSummary.Response.newBuilder().setRetType(-1).setRetMsg("Error message").build();
-        when(FTAPIConnTrd.getFlowSummary(any())).thenReturn(1);
-        client.onReply_GetFlowSummary(FTAPIConnTrd, 1, response);
+        when(FTAPIConnTrd.getFlowSummary(any())).thenAnswer(replyOnSend(1, () -> client.onReply_GetFlowSummary(FTAPIConnTrd, 1, response)));
 
         var result = client.getFlowSummary(new Date(), Market.HK);
         assertEquals(0, result.size());
@@ -250,8 +252,7 @@ class FutuAPIClientTest {
 
         var response = TrdGetFunds.Response.newBuilder().setRetType(0).setS2C(s2c).build();
 
-        when(FTAPIConnTrd.getFunds(any())).thenReturn(1);
-        client.onReply_GetFunds(FTAPIConnTrd, 1, response);
+        when(FTAPIConnTrd.getFunds(any())).thenAnswer(replyOnSend(1, () -> client.onReply_GetFunds(FTAPIConnTrd, 1, response)));
 
         var availableFunds = client.getAvailableFunds();
 
@@ -259,4 +260,155 @@ class FutuAPIClientTest {
         assertEquals(42000.0, availableFunds.get(Currency.getInstance("HKD")));
         assertEquals(9000.0, availableFunds.get(Currency.getInstance("USD")));
     }
+
+    @Test
+    void unlockTrade_whenAlreadyUnlocked_reuseUnlockState() {
+        client.onInitConnect(FTAPIConnTrd, 0, "");
+        client.onInitConnect(FTAPIConnQot, 0, "");
+        var response = TrdUnlockTrade.Response.newBuilder().setRetType(0).build();
+        when(FTAPIConnTrd.unlockTrade(any())).thenAnswer(replyOnSend(1, () -> client.onReply_UnlockTrade(FTAPIConnTrd, 1, response)));
+
+        assertTrue(client.unlockTrade("code"));
+        assertTrue(client.unlockTrade("code"));
+        verify(FTAPIConnTrd, times(1)).unlockTrade(any());
+    }
+
+    @Test
+    void unlockTrade_afterDisconnect_unlockAgain() {
+        client.onInitConnect(FTAPIConnTrd, 0, "");
+        client.onInitConnect(FTAPIConnQot, 0, "");
+        var response = TrdUnlockTrade.Response.newBuilder().setRetType(0).build();
+        when(FTAPIConnTrd.unlockTrade(any()))
+                .thenAnswer(replyOnSend(1, () -> client.onReply_UnlockTrade(FTAPIConnTrd, 1, response)))
+                .thenAnswer(replyOnSend(2, () -> client.onReply_UnlockTrade(FTAPIConnTrd, 2,
+                        TrdUnlockTrade.Response.newBuilder().setRetType(-1).setRetMsg("failed").build())));
+        assertTrue(client.unlockTrade("code"));
+
+        client.onDisconnect(FTAPIConnTrd, 1);
+
+        assertFalse(client.unlockTrade("code"));
+        verify(FTAPIConnTrd, times(2)).unlockTrade(any());
+    }
+
+    @Test
+    void getPendingOrdersAsync_completeWhenReplyArrives() {
+        when(FTAPIConnTrd.getOrderList(any())).thenReturn(3);
+        var order = TrdCommon.Order.newBuilder()
+                .setTrdSide(TrdCommon.TrdSide.TrdSide_Buy_VALUE).setOrderType(TrdCommon.OrderType.OrderType_Normal_VALUE)
+                .setOrderStatus(TrdCommon.OrderStatus.OrderStatus_Submitted_VALUE)
+                .setOrderID(11L).setOrderIDEx("11").setCode("02800").setName("").setQty(500).setPrice(18.5)
+                .setCreateTime("").setUpdateTime("").build();
+        var response = TrdGetOrderList.Response.newBuilder().setRetType(0)
+                .setS2C(TrdGetOrderList.S2C.newBuilder()
+                        .setHeader(TrdCommon.TrdHeader.newBuilder().setTrdEnv(1).setAccID(1).setTrdMarket(1))
+                        .addOrderList(order))
+                .build();
+
+        var future = client.getPendingOrdersAsync(Market.HK);
+        assertFalse(future.isDone());
+
+        client.onReply_GetOrderList(FTAPIConnTrd, 3, response);
+
+        var orders = future.join();
+        assertEquals(1, orders.size());
+        assertEquals("2800", orders.getFirst().code());
+        assertEquals(11L, orders.getFirst().orderId());
+    }
+
+    @Test
+    void getStockQuote_noReply_returnNullAfterTimeout() {
+        client.timeoutSeconds = 1;
+        when(FTAPIConnQot.getSecuritySnapshot(any())).thenReturn(4);
+
+        assertNull(client.getStockQuote("2800"));
+        assertThrows(CompletionException.class, () -> client.getStockQuoteAsync("2800").join());
+    }
+
+    @Test
+    void subscribeTradeUpdates_forwardPushedOrdersAndFills() {
+        when(FTAPIConnTrd.subAccPush(any())).thenAnswer(replyOnSend(5, () -> client.onReply_SubAccPush(FTAPIConnTrd, 5, TrdSubAccPush.Response.newBuilder().setRetType(0).build())));
+        var listener = Mockito.mock(IBrokerAPIClient.TradeUpdateListener.class);
+        assertTrue(client.subscribeTradeUpdates(listener));
+
+        var header = TrdCommon.TrdHeader.newBuilder().setTrdEnv(1).setAccID(1).setTrdMarket(1);
+        var order = TrdCommon.Order.newBuilder()
+                .setTrdSide(TrdCommon.TrdSide.TrdSide_Buy_VALUE).setOrderType(TrdCommon.OrderType.OrderType_Normal_VALUE)
+                .setOrderStatus(TrdCommon.OrderStatus.OrderStatus_Filled_All_VALUE)
+                .setOrderID(11L).setOrderIDEx("11").setCode("02800").setName("").setQty(500).setPrice(18.5)
+                .setCreateTime("").setUpdateTime("");
+        client.onPush_UpdateOrder(FTAPIConnTrd, TrdUpdateOrder.Response.newBuilder().setRetType(0)
+                .setS2C(TrdUpdateOrder.S2C.newBuilder().setHeader(header).setOrder(order)).build());
+        var fill = TrdCommon.OrderFill.newBuilder()
+                .setCode("02800").setOrderID(11L).setQty(500).setPrice(18.5)
+                .setTrdSide(TrdCommon.TrdSide.TrdSide_Buy_VALUE)
+                .setFillID(7).setFillIDEx("7").setName("")
+                .setCreateTime("2025-08-05 09:30:01.000")
+                .setSecMarket(TrdCommon.TrdSecMarket.TrdSecMarket_HK_VALUE);
+        client.onPush_UpdateOrderFill(FTAPIConnTrd, TrdUpdateOrderFill.Response.newBuilder().setRetType(0)
+                .setS2C(TrdUpdateOrderFill.S2C.newBuilder().setHeader(header).setOrderFill(fill)).build());
+        client.onDisconnect(FTAPIConnTrd, 1);
+
+        verify(listener).onOrderUpdate(argThat(o -> o.orderId() == 11L && "2800".equals(o.code())), eq(false));
+        verify(listener).onFill(argThat(e -> "7".equals(e.getFillIds()) && e.getMarket() == Market.HK));
+        verify(listener).onConnectionLost();
+    }
+
+    @Test
+    void getStockQuotes_sendOneSnapshotRequestPerMarket() {
+        var snapshot = QotGetSecuritySnapshot.Snapshot.newBuilder()
+                .setBasic(QotGetSecuritySnapshot.SnapshotBasicData.newBuilder()
+                        .setSecurity(QotCommon.Security.newBuilder().setMarket(QotCommon.QotMarket.QotMarket_HK_Security_VALUE).setCode("02800"))
+                        .setType(0).setIsSuspend(false).setListTime("").setLotSize(500).setPriceSpread(0.02)
+                        .setUpdateTime("2025-08-05 10:00:00").setHighPrice(19).setOpenPrice(18).setLowPrice(17)
+                        .setLastClosePrice(18).setCurPrice(18.5).setVolume(0).setTurnover(0).setTurnoverRate(0))
+                .build();
+        when(FTAPIConnQot.getSecuritySnapshot(any())).thenAnswer(replyOnSend(6, () -> client.onReply_GetSecuritySnapshot(FTAPIConnQot, 6,
+                QotGetSecuritySnapshot.Response.newBuilder().setRetType(0)
+                        .setS2C(QotGetSecuritySnapshot.S2C.newBuilder().addSnapshotList(snapshot)).build())));
+
+        var quotes = client.getStockQuotes(List.of("2800", "2828"));
+
+        var captor = ArgumentCaptor.forClass(QotGetSecuritySnapshot.Request.class);
+        verify(FTAPIConnQot, times(1)).getSecuritySnapshot(captor.capture());
+        assertEquals(List.of("02800", "02828"), captor.getValue().getC2S().getSecurityListList().stream().map(QotCommon.Security::getCode).toList());
+        assertEquals(1, quotes.size());
+        assertEquals("18.5", quotes.get("2800").getPrice());
+    }
+
+    @Test
+    void replies_sameSeqOnTradeAndQuoteConnection_completeOwnRequest() {
+        when(FTAPIConnTrd.getOrderList(any())).thenReturn(7);
+        when(FTAPIConnQot.getSecuritySnapshot(any())).thenReturn(7);
+        var orders = client.getPendingOrdersAsync(Market.HK);
+        var quotes = client.getStockQuotesAsync(List.of("2800"));
+
+        client.onReply_GetSecuritySnapshot(FTAPIConnQot, 7, QotGetSecuritySnapshot.Response.newBuilder().setRetType(-1).setRetMsg("failed").build());
+        assertTrue(quotes.isDone());
+        assertFalse(orders.isDone());
+
+        client.onReply_GetOrderList(FTAPIConnTrd, 7, TrdGetOrderList.Response.newBuilder().setRetType(-1).setRetMsg("failed").build());
+        assertEquals(List.of(), orders.join());
+        assertEquals(Map.of(), quotes.join());
+    }
+
+    @Test
+    void reply_afterTimeout_dropped() {
+        client.timeoutSeconds = 1;
+        when(FTAPIConnQot.getSecuritySnapshot(any())).thenReturn(4);
+        assertNull(client.getStockQuote("2800"));
+
+        client.onReply_GetSecuritySnapshot(FTAPIConnQot, 4, QotGetSecuritySnapshot.Response.newBuilder().setRetType(-1).setRetMsg("late").build());
+
+        assertFalse(client.getStockQuoteAsync("2800").isDone());   // not completed by the late reply
+    }
+
+    /**
+     * Reply on another thread when the request is sent, as the Futu connection does
+     */
+    private Answer<Integer> replyOnSend(int seq, Runnable reply) {
+        return i -> {
+            Thread.ofVirtual().start(reply);
+            return seq;
+        };
+    }
 }
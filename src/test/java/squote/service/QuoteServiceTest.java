@@ -0,0 +1,161 @@
+package squote.service;
+
+import com.mashape.unirest.http.HttpResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import squote.domain.StockQuote;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class QuoteServiceTest {
+    YahooFinanceService mockYahooFinanceService = mock(YahooFinanceService.class);
+    TiingoAPIClient mockTiingoAPIClient = mock(TiingoAPIClient.class);
+    WebParserRestService mockWebParserRestService = mock(WebParserRestService.class);
+    IBrokerAPIClient mockBrokerAPIClient = mock(IBrokerAPIClient.class);
+
+    private QuoteService quoteService;
+
+    @BeforeEach
+    void setUp() {
+        quoteService = new QuoteService(mockYahooFinanceService, mockTiingoAPIClient, mockWebParserRestService);
+        quoteService.hedgeDelayMillis = 100;
+        quoteService.timeoutMillis = 2000;
+    }
+
+    @AfterEach
+    void tearDown() {
+        quoteService.shutdown();
+    }
+
+    @Test
+    void getQuotes_yahooWithoutQuote_fallBackToTiingo() {
+        when(mockYahooFinanceService.getFreshTicker("QQQ.US")).thenReturn(Optional.empty());
+        when(mockTiingoAPIClient.getPrices(List.of("QQQ"))).thenReturn(CompletableFuture.completedFuture(List.of(quote("QQQ", "500"))));
+
+        var quotes = quoteService.getQuotes(List.of("QQQ.US"));
+
+        assertThat(quotes.get("QQQ.US").getPrice()).isEqualTo("500");
+        assertThat(quoteService.getSourceStats()).extracting(QuoteService.SourceStats::source).containsExactly("tiingo", "yahoo");
+    }
+
+    @Test
+    void getQuotes_slowSource_hedgedByNextSource() {
+        when(mockYahooFinanceService.getFreshTicker("QQQ.US")).thenAnswer(i -> {
+            Thread.sleep(1500);
+            return Optional.of(quote("QQQ.US", "499"));
+        });
+        when(mockTiingoAPIClient.getPrices(List.of("QQQ"))).thenReturn(CompletableFuture.completedFuture(List.of(quote("QQQ", "500"))));
+
+        var start = System.currentTimeMillis();
+        var quotes = quoteService.getQuotes(List.of("QQQ.US"));
+
+        assertThat(System.currentTimeMillis() - start).isLessThan(1000);
+        assertThat(quotes.get("QQQ.US").getPrice()).isEqualTo("500");
+    }
+
+    @Test
+    void getQuotes_withinCacheMillis_noRefetch() {
+        when(mockYahooFinanceService.getFreshTicker("QQQ.US")).thenReturn(Optional.of(quote("QQQ.US", "500")));
+
+        quoteService.getQuotes(List.of("QQQ.US"));
+        var quotes = quoteService.getQuotes(List.of("QQQ.US"));
+
+        assertThat(quotes.get("QQQ.US").getPrice()).isEqualTo("500");
+        verify(mockYahooFinanceService, times(1)).getFreshTicker("QQQ.US");
+        assertThat(quoteService.getQuoteAge("QQQ.US")).isPresent();
+    }
+
+    @Test
+    void getQuotes_allSourcesFailed_noStaleQuoteForTrading() {
+        quoteService.cacheMillis = 0;
+        when(mockYahooFinanceService.getFreshTicker("QQQ.US"))
+                .thenReturn(Optional.of(quote("QQQ.US", "500")))
+                .thenThrow(new RuntimeException("socket closed"));
+        when(mockTiingoAPIClient.getPrices(any())).thenReturn(CompletableFuture.failedFuture(new RuntimeException("rate limited")));
+
+        quoteService.getQuotes(List.of("QQQ.US"));
+
+        assertThat(quoteService.getQuotes(List.of("QQQ.US"))).isEmpty();
+        assertThat(quoteService.getQuote("QQQ.US", mockBrokerAPIClient)).isEmpty();
+        var tiingoStats = quoteService.getSourceStats().stream().filter(s -> s.source().equals("tiingo")).findFirst().orElseThrow();
+        assertThat(tiingoStats.failures()).isPositive();
+    }
+
+    @Test
+    void getQuotes_forDisplay_allSourcesFailed_useLastQuote() {
+        quoteService.cacheMillis = 0;
+        when(mockYahooFinanceService.getFreshTicker("QQQ.US"))
+                .thenReturn(Optional.of(quote("QQQ.US", "500")))
+                .thenThrow(new RuntimeException("socket closed"));
+        when(mockTiingoAPIClient.getPrices(any())).thenReturn(CompletableFuture.failedFuture(new RuntimeException("rate limited")));
+
+        quoteService.getQuotes(List.of("QQQ.US"));
+        var quotes = quoteService.getQuotes(List.of("QQQ.US"), 0);
+
+        assertThat(quotes.get("QQQ.US").getPrice()).isEqualTo("500");
+    }
+
+    @Test
+    void getQuotes_hk_brokerFirstThenWebParserForMissing() throws Exception {
+        when(mockBrokerAPIClient.getStockQuotes(List.of("2800", "0005"))).thenReturn(Map.of("2800", quote("2800", "18")));
+        HttpResponse<StockQuote[]> response = mock(HttpResponse.class);
+        when(response.getBody()).thenReturn(new StockQuote[]{quote("5", "60")});
+        when(mockWebParserRestService.getRealTimeQuotes(List.of("0005"))).thenReturn(CompletableFuture.completedFuture(response));
+
+        var quotes = quoteService.getQuotes(List.of("2800", "0005"), mockBrokerAPIClient);
+
+        assertThat(quotes.get("2800").getPrice()).isEqualTo("18");
+        assertThat(quotes.get("0005").getPrice()).isEqualTo("60");
+    }
+
+    @Test
+    void getQuote_noSourceAnswered_empty() {
+        when(mockYahooFinanceService.getFreshTicker(any())).thenReturn(Optional.empty());
+        when(mockTiingoAPIClient.getPrices(any())).thenReturn(CompletableFuture.completedFuture(List.of()));
+
+        assertThat(quoteService.getQuote("QQQ.US", null)).isEmpty();
+    }
+
+    @Test
+    void getQuotes_withMaxAge_servedFromQuotesOfOtherCallers() {
+        when(mockYahooFinanceService.getFreshTicker("QQQ.US")).thenReturn(Optional.of(quote("QQQ.US", "500")));
+        quoteService.cacheMillis = 0;
+
+        quoteService.getQuotes(List.of("QQQ.US"));
+        var quotes = quoteService.getQuotes(List.of("QQQ.US"), 60000);
+
+        assertThat(quotes.get("QQQ.US").getPrice()).isEqualTo("500");
+        verify(mockYahooFinanceService, times(1)).getFreshTicker("QQQ.US");
+    }
+
+    @Test
+    void getIndexQuotes_cachedAndLastOnFailure() {
+        HttpResponse<StockQuote[]> response = mock(HttpResponse.class);
+        when(response.getBody()).thenReturn(new StockQuote[]{quote("HSI", "20000")});
+        when(mockWebParserRestService.getIndexQuotes())
+                .thenReturn(CompletableFuture.completedFuture(response))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("server down")));
+
+        assertThat(quoteService.getIndexQuotes()).extracting(StockQuote::getPrice).containsExactly("20000");
+        assertThat(quoteService.getIndexQuotes()).extracting(StockQuote::getPrice).containsExactly("20000");
+        verify(mockWebParserRestService, times(1)).getIndexQuotes();
+
+        quoteService.indexCacheMillis = 0;
+        assertThat(quoteService.getIndexQuotes()).extracting(StockQuote::getPrice).containsExactly("20000");
+        verify(mockWebParserRestService, times(2)).getIndexQuotes();
+    }
+
+    private StockQuote quote(String code, String price) {
+        var quote = new StockQuote(code);
+        quote.setPrice(price);
+        return quote;
+    }
+}
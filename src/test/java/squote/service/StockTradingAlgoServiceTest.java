@@ -33,6 +33,7 @@ class StockTradingAlgoServiceTest {
     TelegramAPIClient mockTelegramAPIClient = Mockito.mock(TelegramAPIClient.class);
     WebParserRestService mockWebParserRestService = Mockito.mock(WebParserRestService.class);
     YahooFinanceService mockYahooFinanceService = Mockito.mock(YahooFinanceService.class);
+    TiingoAPIClient mockTiingoAPIClient = Mockito.mock(TiingoAPIClient.class);
 
     private StockTradingAlgoService stockTradingAlgoService;
     private ListAppender<ILoggingEvent> listAppender;
@@ -73,10 +74,11 @@ class StockTradingAlgoServiceTest {
         var quote = new StockQuote(stockCode);
         quote.setPrice("40");   // high price default to pass most of the cases
         when(mockBrokerAPIClient.getStockQuote(any())).thenReturn(quote);
+        when(mockBrokerAPIClient.getStockQuotes(any())).thenCallRealMethod();
 
         var stockQuoteUS = new StockQuote(stockCodeUS);
         stockQuoteUS.setPrice("200.0");
-        when(mockYahooFinanceService.getLatestTicker(any())).thenReturn(Optional.of(stockQuoteUS));
+        when(mockYahooFinanceService.getFreshTicker(any())).thenReturn(Optional.of(stockQuoteUS));
 
         // setup fund
         var algoConfig = new AlgoConfig(stockCode, 3500, null, stdDevRange, stdDevMultiplier, null, false);
@@ -86,9 +88,19 @@ class StockTradingAlgoServiceTest {
         fundUS.putAlgoConfig(stockCodeUS, usAlgoConfig);
         when(mockFundRepo.findAll()).thenReturn(Arrays.asList(fundA, fundB, fundUS));
 
+        var quoteService = new QuoteService(mockYahooFinanceService, mockTiingoAPIClient, mockWebParserRestService);
+        quoteService.cacheMillis = 0;
         stockTradingAlgoService = new StockTradingAlgoService(
-                dailyAssetSummaryRepo, mockFundRepo, holdingStockRepository, mockWebParserRestService,
-                mockTelegramAPIClient, mockYahooFinanceService);
+                new DailyAssetSummaryCache(dailyAssetSummaryRepo), mockFundRepo, holdingStockRepository, quoteService,
+                mockTelegramAPIClient);
+    }
+
+    private void stubHoldings(List<HoldingStock> holdings) {
+        when(holdingStockRepository.findByUserIdAndFundNameAndCodeOrderByDate(eq("UserA"), any(), any()))
+                .thenAnswer(i -> holdings.stream()
+                        .filter(h -> h.getFundName().equals(i.getArgument(1)) && h.getCode().equals(i.getArgument(2)))
+                        .map(HoldingLot.class::cast)
+                        .toList());
     }
 
     private AlgoConfig getDefaultAlgoConfig() {
@@ -145,8 +157,7 @@ class StockTradingAlgoServiceTest {
     @ParameterizedTest
     @MethodSource("testFindBasePriceDataProvider")
     void testFindBasePrice(TestFindBasePriceData testData) {
-        when(holdingStockRepository.findByUserIdOrderByDate("UserA"))
-            .thenReturn(testData.holdings);
+        stubHoldings(testData.holdings);
         stockTradingAlgoService.processSingleSymbol(
                 fundA, Market.HK,
                 getDefaultAlgoConfig(),
@@ -159,8 +170,7 @@ class StockTradingAlgoServiceTest {
 
     @Test
     void testFindBasePriceErrorCase() {
-        when(holdingStockRepository.findByUserIdOrderByDate("UserA"))
-                .thenReturn(List.of(
+        stubHoldings(List.of(
                         HoldingStock.simple(stockCode, SELL, 4000, BigDecimal.valueOf(80000), "FundA", new Date(1736308300000L)),
                         HoldingStock.simple(stockCode, BUY, 4000, BigDecimal.valueOf(88000), "FundA", new Date(1736308260000L))
                 ));
@@ -191,7 +201,7 @@ class StockTradingAlgoServiceTest {
         var algoConfig = getAlgoConfigWithQuantity(algoConfigQuantity);
         var expectedPrice = 19.74; // 20.0 / (1 + (stdDev * stdDevMultiplier / 100));
         
-        when(holdingStockRepository.findByUserIdOrderByDate("UserA")).thenReturn(List.of(holding));
+        stubHoldings(List.of(holding));
         when(mockBrokerAPIClient.getPendingOrders(Market.HK)).thenReturn(List.of());
 
         stockTradingAlgoService.processSingleSymbol(
@@ -205,6 +215,23 @@ class StockTradingAlgoServiceTest {
         verify(mockTelegramAPIClient, times(1)).sendMessage(startsWith("Placed order (FundA): BUY"));
     }
 
+    @Test
+    void sharedCycleSnapshot_fetchHoldingsAndExecutionsOnceForAllSymbols() {
+        stubHoldings(List.of());
+        when(mockBrokerAPIClient.getRecentExecutions(any(), eq(Market.HK))).thenReturn(Map.of());
+        var snapshot = stockTradingAlgoService.newCycleSnapshot(fundA, mockBrokerAPIClient);
+
+        stockTradingAlgoService.processSingleSymbol(snapshot, Market.HK, getDefaultAlgoConfig(), FutuClientConfig.defaultConfig(), null, null);
+        stockTradingAlgoService.processSingleSymbol(snapshot, Market.HK, getDefaultAlgoConfig(), FutuClientConfig.defaultConfig(), null, null);
+        stockTradingAlgoService.processSingleSymbol(snapshot, Market.HK,
+                new AlgoConfig("code2", 3500, null, stdDevRange, stdDevMultiplier, null, false),
+                FutuClientConfig.defaultConfig(), null, null);
+
+        verify(holdingStockRepository, times(1)).findByUserIdAndFundNameAndCodeOrderByDate("UserA", "FundA", stockCode);
+        verify(holdingStockRepository, times(1)).findByUserIdAndFundNameAndCodeOrderByDate("UserA", "FundA", "code2");
+        verify(mockBrokerAPIClient, times(1)).getRecentExecutions(any(), eq(Market.HK));
+    }
+
     @Test
     void buyOrderPrice_mustLowerThanMarketPrice() {
         var holding = HoldingStock.simple(stockCode, BUY, 4000, BigDecimal.valueOf(80000), "FundA");
@@ -214,7 +241,7 @@ class StockTradingAlgoServiceTest {
 
         quote.setPrice(String.valueOf(marketPrice));
         when(mockBrokerAPIClient.getStockQuote(any())).thenReturn(quote);
-        when(holdingStockRepository.findByUserIdOrderByDate("UserA")).thenReturn(List.of(holding));
+        stubHoldings(List.of(holding));
         when(mockBrokerAPIClient.getPendingOrders(Market.HK)).thenReturn(List.of());
 
         stockTradingAlgoService.processSingleSymbol(
@@ -234,7 +261,7 @@ class StockTradingAlgoServiceTest {
         var holding = HoldingStock.simple(stockCode, BUY, 4000, BigDecimal.valueOf(80000), "FundA");
         var expectedPrice = 19.74; // 20.0 / (1 + (stdDev * stdDevMultiplier / 100));
         var pendingOrderId = 123456L;
-        when(holdingStockRepository.findByUserIdOrderByDate("UserA")).thenReturn(List.of(holding));
+        stubHoldings(List.of(holding));
         when(mockBrokerAPIClient.getPendingOrders(Market.HK)).thenReturn(List.of(
                 Order.newOrder(stockCode, BUY, 4000, expectedPrice * 1.0021, pendingOrderId)
         ));
@@ -256,7 +283,7 @@ class StockTradingAlgoServiceTest {
     void pendingBuyOrderPriceWithinThreshold_dontPlaceOrder() {
         var holding = HoldingStock.simple(stockCode, BUY, 4000, BigDecimal.valueOf(80000), "FundA");
         var expectedPrice = 19.74; // 20.0 / (1 + (stdDev * stdDevMultiplier / 100));
-        when(holdingStockRepository.findByUserIdOrderByDate("UserA")).thenReturn(List.of(holding));
+        stubHoldings(List.of(holding));
         when(mockBrokerAPIClient.getPendingOrders(Market.HK)).thenReturn(List.of(
                 Order.newOrder(stockCode, BUY, 4000, expectedPrice * 1.0002, 123456L) ,  // price within threshold
                 Order.newOrder("DifferentStock", BUY, 4000, expectedPrice * 1.0002, 123456L)
@@ -277,7 +304,7 @@ class StockTradingAlgoServiceTest {
     void multiPendingBuyOrders_cancelAllThenNew() {
         var holding = HoldingStock.simple(stockCode, BUY, 4000, BigDecimal.valueOf(80000), "FundA");
         var expectedPrice = 19.74; // 20.0 / (1 + (stdDev * stdDevMultiplier / 100));
-        when(holdingStockRepository.findByUserIdOrderByDate("UserA")).thenReturn(List.of(holding));
+        stubHoldings(List.of(holding));
         when(mockBrokerAPIClient.getPendingOrders(Market.HK)).thenReturn(List.of(
                 Order.newOrder(stockCode, BUY, 4000, expectedPrice / 1.0002, 123456L),   // price within threshold,
                 Order.newOrder(stockCode, BUY, 3500, expectedPrice / 1.1, 123456L)   // price within threshold
@@ -301,7 +328,7 @@ class StockTradingAlgoServiceTest {
         var holding = HoldingStock.simple(stockCode, SELL, 4000, BigDecimal.valueOf(80000), "FundA");
         var expectedPrice = 19.72; // 20.0 / (1 + (stdDev * stdDevMultiplier / 100));
         var pendingOrderId = 123456L;
-        when(holdingStockRepository.findByUserIdOrderByDate("UserA")).thenReturn(List.of(holding));
+        stubHoldings(List.of(holding));
         when(mockBrokerAPIClient.getPendingOrders(Market.HK)).thenReturn(List.of(
                 Order.newOrder(stockCode, BUY, 4000, expectedPrice * 1.0021, pendingOrderId)
         ));
@@ -320,7 +347,7 @@ class StockTradingAlgoServiceTest {
     @Test
     void baseIsSellOrder_dontPlaceSellOrder() {
         var holding = HoldingStock.simple(stockCode, SELL, 4000, BigDecimal.valueOf(80000), "FundA");
-        when(holdingStockRepository.findByUserIdOrderByDate("UserA")).thenReturn(List.of(holding));
+        stubHoldings(List.of(holding));
 
         stockTradingAlgoService.processSingleSymbol(
                 fundA, Market.HK,
@@ -341,7 +368,7 @@ class StockTradingAlgoServiceTest {
 
         quote.setPrice(String.valueOf(marketPrice));
         when(mockBrokerAPIClient.getStockQuote(any())).thenReturn(quote);
-        when(holdingStockRepository.findByUserIdOrderByDate("UserA")).thenReturn(List.of(holding));
+        stubHoldings(List.of(holding));
 
         stockTradingAlgoService.processSingleSymbol(
                 fundA, Market.HK,
@@ -365,7 +392,7 @@ class StockTradingAlgoServiceTest {
         when(mockBrokerAPIClient.getPendingOrders(Market.HK)).thenReturn(List.of(
                 Order.newOrder(stockCode, BUY, 4000, targetPrice + 0.02, 123456L)
         ));
-        when(holdingStockRepository.findByUserIdOrderByDate("UserA")).thenReturn(List.of(holding));
+        stubHoldings(List.of(holding));
 
         stockTradingAlgoService.processSingleSymbol(
                 fundA, Market.HK,
@@ -385,7 +412,7 @@ class StockTradingAlgoServiceTest {
         var algoConfig = getAlgoConfigWithQuantity(algoConfigQuantity);
         var expectedPrice = 20.26; // 20.0 * (1 + (stdDev * stdDevMultiplier / 100));
         
-        when(holdingStockRepository.findByUserIdOrderByDate("UserA")).thenReturn(List.of(holding));
+        stubHoldings(List.of(holding));
         when(mockBrokerAPIClient.getPendingOrders(Market.HK)).thenReturn(List.of());
 
         stockTradingAlgoService.processSingleSymbol(
@@ -402,7 +429,7 @@ class StockTradingAlgoServiceTest {
     void pendingSellPriceWithinThreshold_doNothing() {
         var holding = HoldingStock.simple(stockCode, BUY, 4000, BigDecimal.valueOf(80000), "FundA");
         var expectedPrice = 20.26; // 20.0 * (1 + (stdDev * stdDevMultiplier / 100));
-        when(holdingStockRepository.findByUserIdOrderByDate("UserA")).thenReturn(List.of(holding));
+        stubHoldings(List.of(holding));
         when(mockBrokerAPIClient.getPendingOrders(Market.HK)).thenReturn(List.of(
                 Order.newOrder(stockCode, SELL, 4000, expectedPrice / 1.0001, 123456L)
         ));
@@ -422,7 +449,7 @@ class StockTradingAlgoServiceTest {
         var holding = HoldingStock.simple(stockCode, BUY, 4000, BigDecimal.valueOf(80000), "FundA");
         var expectedPrice = 20.26; // 20.0 * (1 + (stdDev * stdDevMultiplier / 100));
         var pendingOrderId = 123456L;
-        when(holdingStockRepository.findByUserIdOrderByDate("UserA")).thenReturn(List.of(holding));
+        stubHoldings(List.of(holding));
         when(mockBrokerAPIClient.getPendingOrders(Market.HK)).thenReturn(List.of(
                 Order.newOrder(stockCode, BUY, 4000, expectedPrice * 1.0021, pendingOrderId)
         ));
@@ -442,7 +469,7 @@ class StockTradingAlgoServiceTest {
     @Test
     void hasPartialFill_doNothing() {
         var holding = HoldingStock.simple(stockCode, BUY, 4000, BigDecimal.valueOf(80000), "FundA");
-        when(holdingStockRepository.findByUserIdOrderByDate("UserA")).thenReturn(List.of(holding));
+        stubHoldings(List.of(holding));
         when(mockBrokerAPIClient.getPendingOrders(Market.HK)).thenReturn(List.of(
                 new Order(stockCode, BUY, 4000, 20.5, 123456L, 1000, 20.48, new Date()),
                 Order.newOrder(stockCode, SELL, 4000, 19.5, 123456L)
@@ -466,7 +493,7 @@ class StockTradingAlgoServiceTest {
         List<HoldingStock> holdings = List.of(
                 HoldingStock.simple(stockCode, BUY, 4000, BigDecimal.valueOf(77920), "FundA", new Date(1736233800000L)),
                 HoldingStock.simple(stockCode, BUY, 4000, BigDecimal.valueOf(78800), "FundA", new Date(1736230200000L)));
-        when(holdingStockRepository.findByUserIdOrderByDate("UserA")).thenReturn(holdings);
+        stubHoldings(holdings);
         var sellExecutionAtT1 = new Execution();
         sellExecutionAtT1.setCode(stockCode);
         sellExecutionAtT1.setSide(SELL);
@@ -539,7 +566,7 @@ class StockTradingAlgoServiceTest {
         List<HoldingStock> holdings = List.of(
                 HoldingStock.simple(stockCode, BUY, 3500, BigDecimal.valueOf(86870), "FundA", new Date(histBuyTime1)), // 24.82
                 HoldingStock.simple(stockCode, BUY, 3500, BigDecimal.valueOf(87710), "FundA", new Date(histBuyTime2))); // 25.06
-        when(holdingStockRepository.findByUserIdOrderByDate("UserA")).thenReturn(holdings);
+        stubHoldings(holdings);
 
         var tdayBuy = new Execution();
         tdayBuy.setSide(BUY); tdayBuy.setCode(stockCode); tdayBuy.setOrderId("b1");
@@ -570,7 +597,7 @@ class StockTradingAlgoServiceTest {
     @Test
     void partialFilledOrder_willSendWarningMessageToTelegram() {
         var holding = HoldingStock.simple(stockCode, BUY, 4000, BigDecimal.valueOf(80000), "FundA");
-        when(holdingStockRepository.findByUserIdOrderByDate("UserA")).thenReturn(List.of(holding));
+        stubHoldings(List.of(holding));
         var partialFilledOrder = new Order(stockCode, BUY, 4000, 20.5, 123456L, 3500, 20.48, new Date());
         when(mockBrokerAPIClient.getPendingOrders(Market.HK)).thenReturn(List.of(partialFilledOrder));
 
@@ -592,7 +619,7 @@ class StockTradingAlgoServiceTest {
         var holding = HoldingStock.simple(stockCode, BUY, executionQuantity, BigDecimal.valueOf(40000), "FundA");
         var algoConfig = getAlgoConfigWithQuantity(algoConfigQuantity);
         
-        when(holdingStockRepository.findByUserIdOrderByDate("UserA")).thenReturn(List.of(holding));
+        stubHoldings(List.of(holding));
         when(mockBrokerAPIClient.getPendingOrders(Market.HK)).thenReturn(List.of());
 
         stockTradingAlgoService.processSingleSymbol(
@@ -611,7 +638,7 @@ class StockTradingAlgoServiceTest {
         var executionQuantity = 2000;
         var holding = HoldingStock.simple(stockCode, BUY, executionQuantity, BigDecimal.valueOf(40000), "FundA");
 
-        when(holdingStockRepository.findByUserIdOrderByDate("UserA")).thenReturn(List.of(holding));
+        stubHoldings(List.of(holding));
         when(mockBrokerAPIClient.getPendingOrders(Market.HK)).thenReturn(List.of());
 
         stockTradingAlgoService.processSingleSymbol(
@@ -633,7 +660,7 @@ class StockTradingAlgoServiceTest {
         var algoConfig = getAlgoConfigWithQuantity(algoConfigQuantity);
         var expectedPrice = 19.74; // 20.0 / (1 + (stdDev * stdDevMultiplier / 100));
         
-        when(holdingStockRepository.findByUserIdOrderByDate("UserA")).thenReturn(List.of(holding));
+        stubHoldings(List.of(holding));
         when(mockBrokerAPIClient.getPendingOrders(Market.HK)).thenReturn(List.of());
 
         stockTradingAlgoService.processSingleSymbol(
@@ -652,7 +679,7 @@ class StockTradingAlgoServiceTest {
     @Test
     void processSingleSymbol_testUSStockTrading() {
         var usHolding = HoldingStock.simple(stockCodeUS, BUY, 10, BigDecimal.valueOf(2000), "FundA");
-        when(holdingStockRepository.findByUserIdOrderByDate("UserA")).thenReturn(List.of(usHolding));
+        stubHoldings(List.of(usHolding));
 
         when(mockBrokerAPIClient.getPendingOrders(Market.US)).thenReturn(List.of(
                 Order.newOrder(stockCodeUS, BUY, 10, 199.17, 1L)    // match target price
@@ -686,7 +713,7 @@ class StockTradingAlgoServiceTest {
         fundA.putAlgoConfig(stockCode, grossAmountBasedConfig);
         
         var holding = HoldingStock.simple(stockCode, BUY, 4000, BigDecimal.valueOf(80000), "FundA");
-        when(holdingStockRepository.findByUserIdOrderByDate("UserA")).thenReturn(List.of(holding));
+        stubHoldings(List.of(holding));
         when(mockBrokerAPIClient.getPendingOrders(Market.HK)).thenReturn(List.of());
         when(mockBrokerAPIClient.getRecentExecutions(any(), eq(Market.HK))).thenReturn(new HashMap<>());
 
@@ -703,7 +730,7 @@ class StockTradingAlgoServiceTest {
         fundA.putAlgoConfig(stockCode, grossAmountWithLotSizeConfig);
 
         var holding = HoldingStock.simple(stockCode, BUY, 4000, BigDecimal.valueOf(80000), "FundA");
-        when(holdingStockRepository.findByUserIdOrderByDate("UserA")).thenReturn(List.of(holding));
+        stubHoldings(List.of(holding));
         when(mockBrokerAPIClient.getPendingOrders(Market.HK)).thenReturn(List.of());
         when(mockBrokerAPIClient.getRecentExecutions(any(), eq(Market.HK))).thenReturn(new HashMap<>());
 
@@ -722,7 +749,7 @@ class StockTradingAlgoServiceTest {
         fundA.putAlgoConfig(stockCode, grossAmountWithLotSizeConfig);
 
         var holding = HoldingStock.simple(stockCode, BUY, 4000, BigDecimal.valueOf(80000), "FundA");
-        when(holdingStockRepository.findByUserIdOrderByDate("UserA")).thenReturn(List.of(holding));
+        stubHoldings(List.of(holding));
         when(mockBrokerAPIClient.getPendingOrders(Market.HK)).thenReturn(List.of());
         when(mockBrokerAPIClient.getRecentExecutions(any(), eq(Market.HK))).thenReturn(new HashMap<>());
 
@@ -736,7 +763,7 @@ class StockTradingAlgoServiceTest {
     @Test
     void processSingleSymbol_withProvidedQuote_shouldUseProvidedQuote() {
         var holding = HoldingStock.simple(stockCode, BUY, 4000, BigDecimal.valueOf(80000), "FundA");
-        when(holdingStockRepository.findByUserIdOrderByDate("UserA")).thenReturn(List.of(holding));
+        stubHoldings(List.of(holding));
         when(mockBrokerAPIClient.getPendingOrders(Market.US)).thenReturn(List.of());
         var providedQuote = new StockQuote(stockCode);
         providedQuote.setPrice("35.50");
@@ -748,7 +775,7 @@ class StockTradingAlgoServiceTest {
                 mockBrokerAPIClient, providedQuote, null
         );
 
-        verify(mockYahooFinanceService, never()).getLatestTicker(any());
+        verify(mockYahooFinanceService, never()).getFreshTicker(any());
     }
 
     @Test
@@ -760,7 +787,7 @@ class StockTradingAlgoServiceTest {
 
         quote.setPrice(String.valueOf(marketPrice));
         when(mockBrokerAPIClient.getStockQuote(any())).thenReturn(quote);
-        when(holdingStockRepository.findByUserIdOrderByDate("UserA")).thenReturn(List.of(holding));
+        stubHoldings(List.of(holding));
         when(mockBrokerAPIClient.getPendingOrders(Market.HK)).thenReturn(List.of());
         when(mockBrokerAPIClient.getAvailableFunds())
                 .thenReturn(Map.of(Currency.getInstance("HKD"), 0.0));
@@ -0,0 +1,150 @@
+package squote.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import squote.SquoteConstants;
+import squote.domain.Execution;
+import squote.domain.Market;
+import squote.domain.Order;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static squote.SquoteConstants.Side.BUY;
+
+class TradeBookTest {
+    IBrokerAPIClient mockBrokerAPIClient = Mockito.mock(IBrokerAPIClient.class);
+    Date fromDate = new Date(1000);
+
+    @BeforeEach
+    void setUp() {
+        when(mockBrokerAPIClient.subscribeTradeUpdates(any())).thenReturn(true);
+    }
+
+    @Test
+    void pushNotSupported_delegateToBroker() {
+        when(mockBrokerAPIClient.subscribeTradeUpdates(any())).thenReturn(false);
+        var book = TradeBook.subscribe(mockBrokerAPIClient);
+
+        book.getRecentExecutions(fromDate, Market.HK);
+        book.getRecentExecutions(fromDate, Market.HK);
+        book.getPendingOrders(Market.HK);
+
+        assertThat(book.isLive()).isFalse();
+        verify(mockBrokerAPIClient, times(2)).getRecentExecutions(fromDate, Market.HK);
+        verify(mockBrokerAPIClient, times(1)).getPendingOrders(Market.HK);
+    }
+
+    @Test
+    void getRecentExecutions_seedOnceThenServePushedFills() {
+        when(mockBrokerAPIClient.getRecentExecutions(fromDate, Market.HK))
+                .thenReturn(Map.of("1", execution("1", "11,12", 2000, 100)));
+        var book = TradeBook.subscribe(mockBrokerAPIClient);
+
+        assertThat(book.getRecentExecutions(fromDate, Market.HK)).containsOnlyKeys("1");
+        book.onFill(execution("1", "12", 2000, 50));     // already seeded
+        book.onFill(execution("2", "21", 3000, 200));
+        var executions = book.getRecentExecutions(fromDate, Market.HK);
+
+        verify(mockBrokerAPIClient, times(1)).getRecentExecutions(any(), any());
+        assertThat(executions).containsOnlyKeys("1", "2");
+        assertThat(executions.get("1").getQuantity()).isEqualByComparingTo("100");
+        assertThat(executions.get("2").getQuantity()).isEqualByComparingTo("200");
+    }
+
+    @Test
+    void getRecentExecutions_mergeFillsOfSameOrderWithoutModifyingBook() {
+        var book = TradeBook.subscribe(mockBrokerAPIClient);
+        when(mockBrokerAPIClient.getRecentExecutions(any(), any())).thenReturn(Map.of());
+
+        book.onFill(execution("1", "11", 2000, 100));
+        book.onFill(execution("1", "12", 2500, 300));
+
+        assertThat(book.getRecentExecutions(fromDate, Market.HK).get("1").getQuantity()).isEqualByComparingTo("400");
+        assertThat(book.getRecentExecutions(fromDate, Market.HK).get("1").getQuantity()).isEqualByComparingTo("400");
+        assertThat(book.getRecentExecutions(new Date(2000), Market.HK).get("1").getFillIds()).isEqualTo("12");
+    }
+
+    @Test
+    void getRecentExecutions_earlierFromDate_reseedFromBroker() {
+        var book = TradeBook.subscribe(mockBrokerAPIClient);
+        when(mockBrokerAPIClient.getRecentExecutions(any(), any())).thenReturn(Map.of());
+
+        book.getRecentExecutions(new Date(5000), Market.HK);
+        book.getRecentExecutions(new Date(6000), Market.HK);
+        book.getRecentExecutions(fromDate, Market.HK);
+
+        verify(mockBrokerAPIClient, times(2)).getRecentExecutions(any(), any());
+    }
+
+    @Test
+    void getPendingOrders_trackPushedOrderUpdates() {
+        when(mockBrokerAPIClient.getPendingOrders(Market.HK)).thenReturn(List.of(Order.newOrder("2800", BUY, 500, 18, 1)));
+        when(mockBrokerAPIClient.placeOrder(BUY, "2800", 500, 17.5))
+                .thenReturn(new IBrokerAPIClient.PlaceOrderResponse(2, 0, ""));
+        var book = TradeBook.subscribe(mockBrokerAPIClient);
+
+        assertThat(book.getPendingOrders(Market.HK)).extracting(Order::orderId).containsExactly(1L);
+        book.onOrderUpdate(Order.newOrder("2800", BUY, 500, 18, 1), false);
+        book.placeOrder(BUY, "2800", 500, 17.5);
+        book.onOrderUpdate(Order.newOrder("AAPL.US", BUY, 5, 200, 3), true);
+
+        assertThat(book.getPendingOrders(Market.HK)).extracting(Order::orderId).containsExactly(2L);
+        verify(mockBrokerAPIClient, times(1)).getPendingOrders(any());
+    }
+
+    @Test
+    void onConnectionLost_fallbackToBroker() {
+        var book = TradeBook.subscribe(mockBrokerAPIClient);
+        when(mockBrokerAPIClient.getRecentExecutions(any(), any())).thenReturn(Map.of());
+
+        book.getRecentExecutions(fromDate, Market.HK);
+        book.onConnectionLost();
+        book.getRecentExecutions(fromDate, Market.HK);
+
+        assertThat(book.isLive()).isFalse();
+        assertThat(book.isConnectionLost()).isTrue();
+        verify(mockBrokerAPIClient, times(2)).getRecentExecutions(any(), any());
+    }
+
+    @Test
+    void close_unsubscribe() {
+        var book = TradeBook.subscribe(mockBrokerAPIClient);
+
+        book.close();
+
+        verify(mockBrokerAPIClient).unsubscribeTradeUpdates(book);
+    }
+
+    @Test
+    void onFill_notifyListenerOnceForEachFill() {
+        var book = TradeBook.subscribe(mockBrokerAPIClient);
+        var received = new ArrayList<Execution>();
+        book.addFillListener(received::add);
+
+        book.onFill(execution("1", "11", 2000, 100));
+        book.onFill(execution("1", "11", 2000, 100));
+
+        assertThat(received).hasSize(1);
+    }
+
+    private Execution execution(String orderId, String fillIds, long time, int quantity) {
+        var execution = new Execution()
+                .setCode("2800")
+                .setSide(SquoteConstants.Side.BUY)
+                .setPrice(BigDecimal.valueOf(18))
+                .setQuantity(BigDecimal.valueOf(quantity))
+                .setTime(time);
+        execution.setOrderId(orderId);
+        execution.setFillIds(fillIds);
+        execution.setMarket(Market.HK);
+        return execution;
+    }
+}
@@ -0,0 +1,57 @@
+package squote.service;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import squote.domain.Fund;
+import squote.domain.Market;
+import squote.domain.repository.HoldingStockRepository;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static squote.SquoteConstants.Side.BUY;
+
+class TradingCycleSnapshotTest {
+    IBrokerAPIClient mockBrokerAPIClient = Mockito.mock(IBrokerAPIClient.class);
+    HoldingStockRepository mockHoldingStockRepository = Mockito.mock(HoldingStockRepository.class);
+    TradingCycleSnapshot snapshot = new TradingCycleSnapshot(new Fund("UserA", "FundA"), mockBrokerAPIClient, mockHoldingStockRepository);
+
+    @Test
+    void placeOrder_invalidatePendingOrdersAndFundsOnly() {
+        var fromDate = new Date();
+        when(mockBrokerAPIClient.getPendingOrders(any())).thenReturn(List.of());
+        when(mockBrokerAPIClient.getAvailableFunds()).thenReturn(Map.of());
+        when(mockBrokerAPIClient.getRecentExecutions(any(), any())).thenReturn(Map.of());
+        when(mockBrokerAPIClient.placeOrder(any(), any(), anyInt(), anyDouble())).thenReturn(new IBrokerAPIClient.PlaceOrderResponse(1, 0, ""));
+
+        snapshot.pendingOrders(Market.HK);
+        snapshot.pendingOrders(Market.US);
+        snapshot.availableFunds();
+        snapshot.recentExecutions(fromDate, Market.HK);
+        snapshot.placeOrder(BUY, "2800", 500, 18);
+        snapshot.pendingOrders(Market.HK);
+        snapshot.pendingOrders(Market.US);
+        snapshot.availableFunds();
+        snapshot.recentExecutions(fromDate, Market.HK);
+
+        verify(mockBrokerAPIClient, times(2)).getPendingOrders(Market.HK);
+        verify(mockBrokerAPIClient, times(1)).getPendingOrders(Market.US);
+        verify(mockBrokerAPIClient, times(2)).getAvailableFunds();
+        verify(mockBrokerAPIClient, times(1)).getRecentExecutions(any(), any());
+    }
+
+    @Test
+    void latestRecentExecutions_alwaysFetchFromBroker() {
+        var fromDate = new Date();
+        when(mockBrokerAPIClient.getRecentExecutions(any(), any())).thenReturn(Map.of());
+
+        snapshot.recentExecutions(fromDate, Market.HK);
+        snapshot.latestRecentExecutions(fromDate, Market.HK);
+        snapshot.recentExecutions(fromDate, Market.HK);
+
+        verify(mockBrokerAPIClient, times(2)).getRecentExecutions(fromDate, Market.HK);
+    }
+}
@@ -79,8 +79,8 @@ public class UpdateFundByHoldingServiceTest {
 
 	@Test
 	public void getTrades_shouldUpdateToFund() {
-		when(mockBinanceAPIService.getMyTrades("BTCUSDT")).thenReturn(createBTCExecutions());
-		when(mockBinanceAPIService.getMyTrades("ETHUSDT")).thenReturn(createETHExecutions());
+		when(mockBinanceAPIService.getMyTrades("BTCUSDT", 0L)).thenReturn(createBTCExecutions());
+		when(mockBinanceAPIService.getMyTrades("ETHUSDT", 0L)).thenReturn(createETHExecutions());
 
 		var f = service.getTradesAndUpdateFund(cryptoFund.userId, cryptoFund.name, SOURCE_BINANCE);
 		var BTCHolding = f.getHoldings().get("BTCUSDT");
@@ -95,7 +95,7 @@ public class UpdateFundByHoldingServiceTest {
 
 	@Test
 	public void getTradesAndUpdateFund_shouldSetLatestTradeTime() {
-		when(mockBinanceAPIService.getMyTrades("FTTUSDT")).thenReturn(createFTTExecutions());
+		when(mockBinanceAPIService.getMyTrades("FTTUSDT", 0L)).thenReturn(createFTTExecutions());
 
 		var f = service.getTradesAndUpdateFund(cryptoFund.userId, cryptoFund.name, SOURCE_BINANCE);
 		var FTTHolding = f.getHoldings().get("FTTUSDT");
@@ -103,10 +103,25 @@ public class UpdateFundByHoldingServiceTest {
 		verify(mockFundRepo, atLeast(1)).save(any());
 	}
 
+	@Test
+	public void getTradesAndUpdateFund_fetchTradesAfterLatestTradeId() {
+		cryptoFund.getHoldings().get("FTTUSDT").setLatestTradeId(100);
+		var executions = createFTTExecutions();
+		executions.get(0).setFillIds("101");
+		executions.get(1).setFillIds("102");
+		when(mockBinanceAPIService.getMyTrades("FTTUSDT", 100L)).thenReturn(executions);
+
+		var f = service.getTradesAndUpdateFund(cryptoFund.userId, cryptoFund.name, SOURCE_BINANCE);
+
+		verify(mockBinanceAPIService).getMyTrades("FTTUSDT", 100L);
+		assertEquals(102L, f.getHoldings().get("FTTUSDT").getLatestTradeId());
+		assertEquals(BigDecimal.valueOf(0.15), f.getHoldings().get("FTTUSDT").getQuantity());
+	}
+
 	@Test
 	@DisplayName("Support sell trade which quantity is more than holding quantity")
 	public void getTradesAndUpdateFund_shouldSupportOverSell() {
-		when(mockBinanceAPIService.getMyTrades("ADAUSDT")).thenReturn(createADAExecutions());
+		when(mockBinanceAPIService.getMyTrades("ADAUSDT", 0L)).thenReturn(createADAExecutions());
 
 		var f = service.getTradesAndUpdateFund(cryptoFund.userId, cryptoFund.name, SOURCE_BINANCE);
 		verify(mockFundRepo, atLeast(1)).save(any());
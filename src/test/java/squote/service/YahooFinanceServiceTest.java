@@ -3,6 +3,7 @@ package squote.service;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import squote.domain.AlgoConfig;
@@ -15,9 +16,14 @@ import squote.service.yahoo.YahooTicker;
 import java.lang.reflect.Field;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -30,16 +36,14 @@ class YahooFinanceServiceTest {
 
     private YahooFinanceService yahooFinanceService;
     private Map<String, YahooTicker> latestTickers;
-    private Set<String> subscribedSymbols;
 
     @BeforeEach
     void setUp() throws Exception {
-        yahooFinanceService = new YahooFinanceService(mockFundRepository);
+        yahooFinanceService = new YahooFinanceService(mockFundRepository, () -> mockWebSocketClient);
         latestTickers = new ConcurrentHashMap<>();
-        subscribedSymbols = new CopyOnWriteArraySet<>();
-        setPrivateField("webSocketClient", mockWebSocketClient);
         setPrivateField("latestTickers", latestTickers);
-        setPrivateField("subscribedSymbols", subscribedSymbols);
+        lenient().when(mockWebSocketClient.waitForConnection(anyLong(), any())).thenReturn(true);
+        lenient().when(mockWebSocketClient.isOpen()).thenReturn(true);
     }
 
     @Test
@@ -73,9 +77,100 @@ class YahooFinanceServiceTest {
     @Test
     void testSubscribeToSymbols() {
         yahooFinanceService.subscribeToSymbols("AAPL.US", "MSFT.US");
-        verify(mockWebSocketClient).subscribeToSymbols("AAPL", "MSFT");
-        assertTrue(subscribedSymbols.contains("AAPL"));
-        assertTrue(subscribedSymbols.contains("MSFT"));
+        verify(mockWebSocketClient, timeout(2000)).subscribeToSymbols("AAPL", "MSFT");
+        assertEquals(Set.of("AAPL", "MSFT"), yahooFinanceService.getSubscribedSymbols());
+    }
+
+    @Test
+    void subscribeToSymbols_connectedSocket_subscribeOnlyNewSymbols() {
+        yahooFinanceService.subscribeToSymbols("AAPL.US");
+        verify(mockWebSocketClient, timeout(2000)).subscribeToSymbols("AAPL");
+        yahooFinanceService.subscribeToSymbols("AAPL.US", "MSFT.US");
+
+        verify(mockWebSocketClient).connect();
+        verify(mockWebSocketClient).subscribeToSymbols("MSFT");
+    }
+
+    @Test
+    void subscribeToSymbols_newShard_connectOnceOffCallerThread() throws Exception {
+        var handshake = new CountDownLatch(1);
+        when(mockWebSocketClient.waitForConnection(anyLong(), any())).thenAnswer(inv -> handshake.await(5, TimeUnit.SECONDS));
+
+        var start = System.currentTimeMillis();
+        yahooFinanceService.subscribeToSymbols("AAPL.US");
+        yahooFinanceService.subscribeToSymbols("MSFT.US");
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        handshake.countDown();
+
+        verify(mockWebSocketClient, timeout(2000)).subscribeToSymbols("AAPL", "MSFT");
+        verify(mockWebSocketClient, times(1)).connect();
+    }
+
+    @Test
+    void subscribeToSymbols_shardAcrossSockets() throws Exception {
+        setPrivateField("symbolsPerSocket", 2);
+        var secondClient = mock(YahooFinanceWebSocketClient.class);
+        when(secondClient.waitForConnection(anyLong(), any())).thenReturn(true);
+        var clients = new ArrayDeque<>(List.of(mockWebSocketClient, secondClient));
+        yahooFinanceService = new YahooFinanceService(mockFundRepository, clients::poll);
+        setPrivateField("symbolsPerSocket", 2);
+
+        yahooFinanceService.subscribeToSymbols("AAPL.US", "MSFT.US", "QQQ.US");
+
+        verify(mockWebSocketClient, timeout(2000)).subscribeToSymbols("AAPL", "MSFT");
+        verify(secondClient, timeout(2000)).subscribeToSymbols("QQQ");
+    }
+
+    @Test
+    void onDisconnect_reconnectAndResubscribe() throws Exception {
+        var secondClient = mock(YahooFinanceWebSocketClient.class);
+        var resubscribed = new CountDownLatch(1);
+        when(secondClient.waitForConnection(anyLong(), any())).thenReturn(true);
+        doAnswer(inv -> { resubscribed.countDown(); return null; }).when(secondClient).subscribeToSymbols(any(String[].class));
+        var clients = new ArrayDeque<>(List.of(mockWebSocketClient, secondClient));
+        yahooFinanceService = new YahooFinanceService(mockFundRepository, clients::poll);
+        setPrivateField("reconnectBackoffMillis", 10L);
+        yahooFinanceService.subscribeToSymbols("AAPL.US", "MSFT.US");
+        var disconnectListener = ArgumentCaptor.forClass(Runnable.class);
+        verify(mockWebSocketClient, timeout(2000)).onDisconnect(disconnectListener.capture());
+
+        disconnectListener.getValue().run();
+
+        assertTrue(resubscribed.await(5, TimeUnit.SECONDS));
+        verify(secondClient).subscribeToSymbols("AAPL", "MSFT");
+        yahooFinanceService.shutdown();
+    }
+
+    @Test
+    void connectFailed_retryWithBackoff() throws Exception {
+        var secondClient = mock(YahooFinanceWebSocketClient.class);
+        var connected = new CountDownLatch(1);
+        when(mockWebSocketClient.waitForConnection(anyLong(), any())).thenReturn(false);
+        when(secondClient.waitForConnection(anyLong(), any())).thenAnswer(inv -> { connected.countDown(); return true; });
+        var clients = new ArrayDeque<>(List.of(mockWebSocketClient, secondClient));
+        yahooFinanceService = new YahooFinanceService(mockFundRepository, clients::poll);
+        setPrivateField("reconnectBackoffMillis", 10L);
+
+        yahooFinanceService.subscribeToSymbols("AAPL.US");
+
+        assertTrue(connected.await(5, TimeUnit.SECONDS));
+        verify(mockWebSocketClient, never()).subscribeToSymbols(any(String[].class));
+        yahooFinanceService.shutdown();
+    }
+
+    @Test
+    void getFreshTicker_rejectStaleOrMissingQuote() throws Exception {
+        latestTickers.put("AAPL", createSampleTicker("AAPL", 150.0f));
+        Map<String, AtomicLong> lastUpdateMillis = new ConcurrentHashMap<>();
+        setPrivateField("lastUpdateMillis", lastUpdateMillis);
+
+        assertTrue(yahooFinanceService.getFreshTicker("AAPL.US").isEmpty());
+        lastUpdateMillis.put("AAPL", new AtomicLong(System.currentTimeMillis() - 121000));
+        assertTrue(yahooFinanceService.getFreshTicker("AAPL.US").isEmpty());
+        assertTrue(yahooFinanceService.getLatestTicker("AAPL.US").isPresent());
+        lastUpdateMillis.put("AAPL", new AtomicLong(System.currentTimeMillis() - 1000));
+        assertEquals("150.000", yahooFinanceService.getFreshTicker("AAPL.US").get().getPrice());
+        assertTrue(yahooFinanceService.getLastUpdateAge("AAPL.US").get().toMillis() >= 1000);
     }
 
     @Test
@@ -86,17 +181,68 @@ class YahooFinanceServiceTest {
 
     @Test
     void testUnsubscribeFromSymbols() {
-        subscribedSymbols.add("AAPL");
-        subscribedSymbols.add("MSFT");
+        yahooFinanceService.subscribeToSymbols("AAPL.US", "MSFT.US");
+        verify(mockWebSocketClient, timeout(2000)).subscribeToSymbols("AAPL", "MSFT");
         latestTickers.put("AAPL", createSampleTicker("AAPL", 150.0f));
         latestTickers.put("MSFT", createSampleTicker("MSFT", 300.0f));
 
         yahooFinanceService.unsubscribeFromSymbols("AAPL.US");
 
-        assertFalse(subscribedSymbols.contains("AAPL"));
+        assertFalse(yahooFinanceService.getSubscribedSymbols().contains("AAPL"));
         assertFalse(latestTickers.containsKey("AAPL"));
-        assertTrue(subscribedSymbols.contains("MSFT"));
+        assertTrue(yahooFinanceService.getSubscribedSymbols().contains("MSFT"));
         assertTrue(latestTickers.containsKey("MSFT"));
+        verify(mockWebSocketClient).unsubscribeFromSymbols("AAPL");
+    }
+
+    @Test
+    void onTickerUpdate_afterUnsubscribe_ignored() {
+        yahooFinanceService.subscribeToSymbols("AAPL.US");
+        verify(mockWebSocketClient, timeout(2000)).subscribeToSymbols("AAPL");
+        var tickerCallback = ArgumentCaptor.forClass(Consumer.class);
+        verify(mockWebSocketClient).addTickerCallback(tickerCallback.capture());
+        tickerCallback.getValue().accept(createSampleTicker("AAPL", 150.0f));
+        assertTrue(latestTickers.containsKey("AAPL"));
+
+        yahooFinanceService.unsubscribeFromSymbols("AAPL.US");
+        tickerCallback.getValue().accept(createSampleTicker("AAPL", 151.0f));
+
+        assertFalse(latestTickers.containsKey("AAPL"));
+        assertTrue(yahooFinanceService.getLastUpdateAge("AAPL.US").isEmpty());
+    }
+
+    @Test
+    void unsubscribeFromSymbols_stillHeld_keepStreaming() {
+        yahooFinanceService.subscribeToSymbols("AAPL.US");
+        verify(mockWebSocketClient, timeout(2000)).subscribeToSymbols("AAPL");
+        yahooFinanceService.subscribeToSymbols("AAPL.US");
+
+        yahooFinanceService.unsubscribeFromSymbols("AAPL.US");
+        assertEquals(Set.of("AAPL"), yahooFinanceService.getSubscribedSymbols());
+        yahooFinanceService.unsubscribeFromSymbols("AAPL.US");
+
+        assertEquals(Set.of(), yahooFinanceService.getSubscribedSymbols());
+        verify(mockWebSocketClient, times(1)).subscribeToSymbols("AAPL");
+        verify(mockWebSocketClient, times(1)).unsubscribeFromSymbols("AAPL");
+    }
+
+    @Test
+    void touchSymbols_expireWhenIdle() throws Exception {
+        yahooFinanceService.subscribeToSymbols("MSFT.US");
+        verify(mockWebSocketClient, timeout(2000)).subscribeToSymbols("MSFT");
+        yahooFinanceService.touchSymbols("AAPL.US", "MSFT.US", "QQQ.US");
+        yahooFinanceService.touchSymbols("AAPL.US", "QQQ.US");
+
+        yahooFinanceService.expireIdleSubscriptions();
+        assertEquals(Set.of("AAPL", "MSFT", "QQQ"), yahooFinanceService.getSubscribedSymbols());
+
+        setPrivateField("idleExpirySeconds", -1L);
+        yahooFinanceService.expireIdleSubscriptions();
+
+        assertEquals(Set.of("MSFT"), yahooFinanceService.getSubscribedSymbols());
+        verify(mockWebSocketClient).subscribeToSymbols("MSFT");
+        verify(mockWebSocketClient).subscribeToSymbols("AAPL", "QQQ");
+        verify(mockWebSocketClient).unsubscribeFromSymbols("AAPL", "QQQ");
     }
 
     private YahooTicker createSampleTicker(String id, float price) {
@@ -122,7 +268,7 @@ class YahooFinanceServiceTest {
 
         yahooFinanceService.initialize();
 
-        assertEquals(3, subscribedSymbols.size());
+        assertEquals(Set.of("AAPL", "MSFT", "TSLA"), yahooFinanceService.getSubscribedSymbols());
     }
 
     @Test
@@ -130,7 +276,8 @@ class YahooFinanceServiceTest {
         when(mockFundRepository.findAll()).thenReturn(Arrays.asList());
         yahooFinanceService.initialize();
 
-        assertEquals(0, subscribedSymbols.size());
+        assertEquals(0, yahooFinanceService.getSubscribedSymbols().size());
+        verifyNoInteractions(mockWebSocketClient);
     }
 
     private Fund createFundWithAlgoConfigs(String fundName, String userId, List<String> stockCodes) {
@@ -21,4 +21,27 @@ class YahooProtobufParserTest {
         assertEquals(YahooTicker.QuoteType.EQUITY, ticker.getQuoteType());
         assertEquals(YahooTicker.MarketHours.REGULAR_MARKET, ticker.getMarketHours());
     }
-} 
+
+    @Test
+    void parse_reuseTickerAndInternStrings() {
+        String base64Data = "CgRPUkNMFc0MakMY8Ljth/plKgNOWVEwCDgBRUOG4j9IzOykAWWAPYJAsAGAAtgBBA==";
+        var parser = new YahooProtobufParser();
+
+        var first = parser.parse(base64Data.toCharArray(), 0, base64Data.length());
+        var firstId = first.getId();
+        var framed = ("xx" + base64Data + "yy").toCharArray();
+        var second = parser.parse(framed, 2, base64Data.length());
+
+        assertSame(first, second);
+        assertSame(firstId, second.getId());
+        assertEquals("ORCL", second.getId());
+        assertEquals(1751549587000L, second.getTime());
+    }
+
+    @Test
+    void parse_invalidBase64_null() {
+        var parser = new YahooProtobufParser();
+        assertNull(parser.parse("!!!!".toCharArray(), 0, 4));
+        assertNull(YahooProtobufParser.parseYahooTicker("a b"));
+    }
+}
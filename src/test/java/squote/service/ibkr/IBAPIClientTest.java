@@ -9,10 +9,13 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
 import squote.SquoteConstants;
+import squote.domain.Market;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -55,5 +58,72 @@ class IBAPIClientTest {
         assertThat(response.errorCode()).isEqualTo(-1);
     }
 
+    @Test
+    void cancelOrder_rejectedByIB_returnFailureWithoutWaitingForTimeout() {
+        var orderId = 100;
+        doAnswer(invocation -> {
+            ibApiClient.error(orderId, 10147, "Order not found", "");
+            return null;
+        }).when(mockClient).cancelOrder(anyInt(), any());
+
+        var start = System.currentTimeMillis();
+        var response = ibApiClient.cancelOrder(orderId, "any");
+
+        assertThat(response.errorCode()).isEqualTo(1);
+        assertThat(System.currentTimeMillis() - start).isLessThan(5000);
+    }
+
+    @Test
+    void getStockTodayExecutions_collectExecutionsOfTheRequestId() {
+        doAnswer(invocation -> {
+            int reqId = invocation.getArgument(0);
+            ibApiClient.execDetails(reqId + 1, stockContract("QQQ"), execution("exec-other", 2));
+            ibApiClient.execDetails(reqId, stockContract("QQQ"), execution("exec-1", 1));
+            ibApiClient.execDetails(reqId, stockContract("QQQ"), execution("exec-2", 1));
+            ibApiClient.execDetailsEnd(reqId);
+            return null;
+        }).when(mockClient).reqExecutions(anyInt(), any());
+
+        var executions = ibApiClient.getStockTodayExecutions(Market.US);
+
+        assertThat(executions).containsOnlyKeys("1");
+        assertThat(executions.get("1").getQuantity()).isEqualByComparingTo("20");
+    }
+
+    @Test
+    void getPendingOrders_openOrderEndLost_nextCallSendsNewRequest() {
+        ibApiClient.timeoutSeconds = 1;
+
+        assertThat(ibApiClient.getPendingOrders(Market.US)).isEmpty();
+
+        doAnswer(invocation -> {
+            ibApiClient.openOrderEnd();
+            return null;
+        }).when(mockClient).reqOpenOrders();
+        var start = System.currentTimeMillis();
+        assertThat(ibApiClient.getPendingOrders(Market.US)).isEmpty();
+
+        verify(mockClient, times(2)).reqOpenOrders();
+        assertThat(System.currentTimeMillis() - start).isLessThan(1000);
+    }
+
+    private Contract stockContract(String symbol) {
+        var contract = new Contract();
+        contract.symbol(symbol);
+        contract.secType(Types.SecType.STK);
+        contract.currency("USD");
+        return contract;
+    }
+
+    private com.ib.client.Execution execution(String execId, int orderId) {
+        var execution = new com.ib.client.Execution();
+        execution.execId(execId);
+        execution.orderId(orderId);
+        execution.side("BOT");
+        execution.shares(Decimal.get(10));
+        execution.price(100.0);
+        execution.time("2025-01-01 10:00:00");
+        return execution;
+    }
 }
 
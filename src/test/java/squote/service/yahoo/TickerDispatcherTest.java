@@ -0,0 +1,89 @@
+package squote.service.yahoo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Timeout(10)
+class TickerDispatcherTest {
+
+    @Test
+    void publish_sinkBusy_keepLatestTickOfEachSymbol() throws InterruptedException {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var received = new CopyOnWriteArrayList<String>();
+        var dispatcher = new TickerDispatcher("test", 16, t -> {
+            received.add(t.getId() + "=" + t.getPrice());
+            started.countDown();
+            await(release);
+        });
+
+        dispatcher.publish(new YahooTicker("AAPL", 1, 0));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        dispatcher.publish(new YahooTicker("AAPL", 2, 0));
+        dispatcher.publish(new YahooTicker("MSFT", 10, 0));
+        dispatcher.publish(new YahooTicker("AAPL", 3, 0));
+        assertEquals(new TickerDispatcher.Stats(2, 0, 1, 0), dispatcher.stats());
+
+        release.countDown();
+        waitUntil(() -> dispatcher.stats().dispatched() == 3);
+        assertEquals(List.of("AAPL=1.0", "AAPL=3.0", "MSFT=10.0"), received);
+        dispatcher.close();
+    }
+
+    @Test
+    void publish_queueFull_dropAndCount() throws InterruptedException {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var dispatcher = new TickerDispatcher("test", 1, t -> {
+            started.countDown();
+            await(release);
+        });
+
+        dispatcher.publish(new YahooTicker("AAPL", 1, 0));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        dispatcher.publish(new YahooTicker("MSFT", 1, 0));
+        dispatcher.publish(new YahooTicker("QQQ", 1, 0));
+        assertEquals(1, dispatcher.stats().dropped());
+
+        release.countDown();
+        waitUntil(() -> dispatcher.stats().dispatched() == 2);
+        dispatcher.publish(new YahooTicker("QQQ", 2, 0));     // not stuck as pending after the drop
+        waitUntil(() -> dispatcher.stats().dispatched() == 3);
+        dispatcher.close();
+    }
+
+    @Test
+    void publish_sinkThrows_continueDispatching() throws InterruptedException {
+        var received = new CopyOnWriteArrayList<String>();
+        var dispatcher = new TickerDispatcher("test", 16, t -> {
+            received.add(t.getId());
+            if (t.getId().equals("AAPL")) throw new RuntimeException("test");
+        });
+
+        dispatcher.publish(new YahooTicker("AAPL", 1, 0));
+        waitUntil(() -> received.size() == 1);
+        dispatcher.publish(new YahooTicker("MSFT", 1, 0));
+        waitUntil(() -> received.size() == 2);
+        dispatcher.close();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        while (!condition.getAsBoolean()) Thread.sleep(5);
+    }
+}
@@ -4,6 +4,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Timeout;
 
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -42,6 +43,21 @@ class YahooFinanceWebSocketClientTest {
         assertDoesNotThrow(() -> client.onTickerUpdate(mockTicker));
     }
 
+    @Test
+    @Timeout(10)
+    void onMessage_pricingFrame_callbackWithParsedTicker() throws InterruptedException {
+        var prices = new CopyOnWriteArrayList<String>();
+        client.addTickerCallback(ticker -> prices.add(ticker.getId() + "=" + ticker.getTime()));
+
+        client.onMessage("{\"message\":\"CgRPUkNMFc0MakMY8Ljth/plKgNOWVEwCDgBRUOG4j9IzOykAWWAPYJAsAGAAtgBBA==\",\"type\":\"pricing\"}");
+        client.onMessage("{\"type\":\"pricing\",\"extra\":{\"a\":[1,2]},\"message\":\"CgRPUkNMFc0MakMY8Ljth/plKgNOWVEwCDgBRUOG4j9IzOykAWWAPYJAsAGAAtgBBA==\"}");
+        client.onMessage("{\"type\":\"heartbeat\",\"message\":\"CgRPUkNM\"}");
+        client.onMessage("not json");
+        while (client.dispatchStats().dispatched() + client.dispatchStats().conflated() < 2) Thread.sleep(5);
+
+        assertEquals("ORCL=1751549587000", prices.getLast());
+    }
+
 //    @Test // run manually due to no data on non-trading day
     @Timeout(30)
     void testRealConnectionAndDataReceiving() throws InterruptedException {
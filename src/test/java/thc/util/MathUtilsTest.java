@@ -0,0 +1,47 @@
+package thc.util;
+
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class MathUtilsTest {
+
+    @Test
+    void calStdDev_sameAsDescriptiveStatistics() {
+        var closes = List.of(100.0, 110.0, 0.0, 105.0, 120.0, 118.0);
+        var stats = new DescriptiveStatistics();
+        stats.addValue(10);             // 100 -> 110
+        stats.addValue(15.0 / 105 * 100);   // 105 -> 120
+        stats.addValue(-2.0 / 120 * 100);   // 120 -> 118
+
+        assertThat(MathUtils.calStdDev(closes)).isCloseTo(stats.getStandardDeviation(), within(1e-9));
+        assertThat(MathUtils.calStdDev(List.of())).isNaN();
+        assertThat(MathUtils.calStdDev(List.of(100.0, 110.0))).isZero();
+    }
+
+    @Test
+    void rollingStdDevs_sameAsCalStdDevOfEachWindow() {
+        var random = new Random(1);
+        var closes = new double[300];
+        for (int i = 0; i < closes.length; i++) closes[i] = i == 100 ? 0 : 100 + random.nextGaussian() * 3;
+        int[] ranges = {2, 9, 20, 250};
+
+        var stdDevs = MathUtils.rollingStdDevs(closes, ranges);
+
+        for (int r = 0; r < ranges.length; r++) {
+            for (int i = 0; i < closes.length; i++) {
+                var expected = MathUtils.calStdDev(Arrays.copyOfRange(closes, Math.max(0, i - ranges[r] + 1), i + 1));
+                if (Double.isNaN(expected))
+                    assertThat(stdDevs[r][i]).isNaN();
+                else
+                    assertThat(stdDevs[r][i]).isCloseTo(expected, within(1e-9));
+            }
+        }
+    }
+}